@@ -0,0 +1,191 @@
+package batmudgoalsplugin;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.mythicscape.batclient.interfaces.ClientGUI;
+import com.mythicscape.batclient.interfaces.ParsedResult;
+
+import batmudgoalsplugin.BatMUDGoalsController.DispatchEngine;
+import batmudgoalsplugin.data.BatMUDGoalsPluginData;
+
+/**
+ * Throughput of the controller with each dispatch engine: output of a session
+ * where most lines are combat and chatter interleaved with the tables of
+ * 'train', 'cost train', guild info and 'exp', the same amount of generated
+ * output, and commands typed by the player. Times are per line and per
+ * command.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ControllerBenchmark {
+
+    /** Lines no processor is interested in, a few with their anchors */
+    private static final String[] NOISE = {
+            "Tiger hits you.\n",
+            "You hit tiger hard.\n",
+            "Jogo tells you 'ready to go?'\n",
+            "HP:320/350 SP:102/180 EP:190/190 >\n",
+            "You are in a dense forest. Obvious exits are: north, east and south.\n",
+            "| The map is not available |\n",
+            "Exp: gained from the kill is shared.\n",
+            "May the gods be with you.\n",
+            "Tiger is DEAD, R.I.P.\n",
+            "You get 1100 gold coins.\n" };
+
+    private static final String[] TRAIN_TABLE = {
+            "| Skills available at level  5  | Cur | Rac | Max | Exp         |\n",
+            "| Attack                        |  21 |  85 |  35 |       22015 |\n",
+            "| Looting and burning           |  10 |  90 |  40 |        8120 |\n",
+            "| Camping                       |  50 |  70 |  50 |       (n/a) |\n" };
+
+    private static final String[] COST_TABLE = {
+            ",-------------------------------------------------.\n",
+            "| Cost of training Attack                         |\n",
+            "|-------------------------------------------------|\n",
+            "| Percent     Exp        | Percent     Exp        |\n",
+            "|=================================================|\n",
+            "|   22% =         23816  |   72% =        148210  |\n",
+            "|   23% =         25766  |   73% =        155700  |\n",
+            "`-------------------------------------------------'\n" };
+
+    private static final String[] GUILD_INFO = {
+            "Name: Ranger Guild\n",
+            "Your level: 5\n",
+            "Abilities gained when joining:\n",
+            " May train skill Attack to 10%\n",
+            "Level 5:\n",
+            " May train skill Attack to 35%\n",
+            " May train skill Camping to 50%\n" };
+
+    /** Lines in the output of the session */
+    private static final int SESSION_LINES = 242;
+
+    private static final String[] COMMANDS = { "kill tiger", "say ready", "goal attack", "train", "goal",
+            "cost train attack", "ranger info", "exp", "north", "cast cure light wounds at jogo" };
+
+    private static final int COMMANDS_PER_ROUND = 10;
+
+    @Param({ "SEQUENTIAL", "INDEXED", "COMBINED" })
+    public DispatchEngine engine;
+
+    /**
+     * SESSION for the session below, GENERATED for output of
+     * {@link OutputCorpus}, NEAR_MISSES for its lines which almost match
+     */
+    @Param({ "SESSION", "GENERATED", "NEAR_MISSES" })
+    public String corpus;
+
+    private BatMUDGoalsController controller;
+    private ParsedResult[] output;
+
+    @Setup
+    public void setup() throws IOException {
+        Logger log = Logger.getLogger(getClass().toString());
+        log.setLevel(Level.OFF);
+        controller = new BatMUDGoalsController(log, new BatMUDGoalsPluginData(), silentGUIModel());
+        controller.setDispatchEngine(engine);
+        output = corpus();
+        if (COMMANDS.length != COMMANDS_PER_ROUND) {
+            throw new IllegalStateException("Round has " + COMMANDS.length + " commands");
+        }
+        if (output.length != SESSION_LINES) {
+            throw new IllegalStateException("Session has " + output.length + " lines");
+        }
+    }
+
+    /**
+     * @return model of a client whose GUI ignores the messages printed
+     * @throws IOException
+     */
+    static ClientGUIModel silentGUIModel() throws IOException {
+        ClientGUI gui = (ClientGUI) Proxy.newProxyInstance(ControllerBenchmark.class.getClassLoader(),
+                new Class<?>[] { ClientGUI.class }, (proxy, method, args) -> null);
+        BatMUDGoalsPlugin plugin = new BatMUDGoalsPlugin();
+        plugin.init(null, null, null, null, null, gui);
+        return new ClientGUIModel(plugin);
+    }
+
+    private ParsedResult[] corpus() {
+        switch (corpus) {
+        case "SESSION":
+            return session();
+        case "GENERATED":
+            return parsed(new OutputCorpus(42).lines(SESSION_LINES));
+        case "NEAR_MISSES":
+            OutputCorpus nearMisses = new OutputCorpus(42);
+            for (OutputCorpus.Kind kind : OutputCorpus.Kind.values()) {
+                nearMisses.weight(kind, kind == OutputCorpus.Kind.NEAR_MISS ? 1 : 0);
+            }
+            return parsed(nearMisses.lines(SESSION_LINES));
+        default:
+            throw new IllegalArgumentException("Unknown corpus " + corpus);
+        }
+    }
+
+    private static ParsedResult[] parsed(List<String> lines) {
+        return lines.stream().map(ParsedResult::new).toArray(ParsedResult[]::new);
+    }
+
+    /**
+     * @return output of a session, ten lines of noise around each line of the
+     *         tables
+     */
+    private static ParsedResult[] session() {
+        List<String> tables = new ArrayList<>();
+        tables.addAll(Arrays.asList(TRAIN_TABLE));
+        tables.addAll(Arrays.asList(COST_TABLE));
+        tables.addAll(Arrays.asList(GUILD_INFO));
+        tables.add("You now have 'Attack' at 22% without special bonuses.\n");
+        tables.add("You feel like you just got slightly better in Camping");
+        tables.add("Exp: 120000 Money: 211.10 Bank: 64440.00 Exp pool: 100.0\n");
+        List<ParsedResult> lines = new ArrayList<>();
+        for (String line : tables) {
+            lines.add(new ParsedResult(line));
+            for (String noise : NOISE) {
+                lines.add(new ParsedResult(noise));
+            }
+        }
+        return lines.toArray(new ParsedResult[0]);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SESSION_LINES)
+    public void output(Blackhole blackhole) {
+        for (ParsedResult line : output) {
+            blackhole.consume(controller.trigger(line));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COMMANDS_PER_ROUND)
+    public void commands(Blackhole blackhole) {
+        for (String command : COMMANDS) {
+            blackhole.consume(controller.trigger(command));
+        }
+    }
+}
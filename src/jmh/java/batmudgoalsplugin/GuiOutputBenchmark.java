@@ -0,0 +1,105 @@
+package batmudgoalsplugin;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultStyledDocument;
+import javax.swing.text.SimpleAttributeSet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mythicscape.batclient.interfaces.ClientGUI;
+
+/**
+ * Printing the list of 'goal' with a call of {@link ClientGUI#printText} per
+ * skill against a single call for the whole list. The client's text area is
+ * stood in for by a styled document, whose insertions and the events they
+ * fire are what each call costs the client at least.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GuiOutputBenchmark {
+
+    @Param({ "10", "150", "500" })
+    public int skills;
+
+    private List<String> messages;
+    private ClientGUIModel guiModel;
+    private DefaultStyledDocument document;
+    private int changes;
+
+    @Setup
+    public void setup() throws IOException {
+        messages = new ArrayList<>();
+        for (int i = 0; i < skills; i++) {
+            messages.add("skill number " + i + (i == 0 ? " (*)" : ""));
+        }
+        SimpleAttributeSet attributes = new SimpleAttributeSet();
+        ClientGUI gui = (ClientGUI) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { ClientGUI.class }, (proxy, method, args) -> {
+                    if (method.getName().equals("printText")) {
+                        document.insertString(document.getLength(), (String) args[1], attributes);
+                    }
+                    return null;
+                });
+        BatMUDGoalsPlugin plugin = new BatMUDGoalsPlugin();
+        plugin.init(null, null, null, null, null, gui);
+        guiModel = new ClientGUIModel(plugin);
+    }
+
+    @Setup(Level.Invocation)
+    public void clearDocument() {
+        document = new DefaultStyledDocument();
+        document.addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                changes++;
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                changes++;
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                changes++;
+            }
+        });
+    }
+
+    @Benchmark
+    public int printEachMessage() throws BadLocationException {
+        for (String message : messages) {
+            guiModel.printMessage(message);
+        }
+        return document.getLength() + changes;
+    }
+
+    @Benchmark
+    public int printMessages() throws BadLocationException {
+        guiModel.printMessages(messages);
+        return document.getLength() + changes;
+    }
+}
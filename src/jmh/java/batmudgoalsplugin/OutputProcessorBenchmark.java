@@ -0,0 +1,129 @@
+package batmudgoalsplugin;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import batmudgoalsplugin.data.BatMUDGoalsPluginData;
+
+/**
+ * Time each output processor takes for a line it processes and for a line it
+ * does not. The lines which do not match contain the anchors of the
+ * processor where possible, as such lines get past the dispatch index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OutputProcessorBenchmark {
+
+    @Param({ "CostOfTrainingSkillName", "ExpCommand", "ImproveSkillByUse", "InfoCommandFirstLevel",
+            "InfoCommandLevelNumber", "InfoCommandSkillMax", "PercentCost", "PlayerLevel", "TrainCommand",
+            "TrainedPartially", "TrainedSkill", "CharacterName" })
+    public String processor;
+
+    private AbstractOutputProcessor op;
+    private String matching;
+    private String nonMatching;
+
+    @Setup
+    public void setup() throws IOException {
+        BatMUDGoalsPluginData data = new BatMUDGoalsPluginData();
+        InfoCommandSkillMaxOutputProcessor skillMax = new InfoCommandSkillMaxOutputProcessor(data);
+        skillMax.setGuild("ranger");
+        skillMax.setLevel(1);
+        switch (processor) {
+        case "CostOfTrainingSkillName":
+            op = new CostOfTrainingSkillNameOutputProcessor(new PercentCostOutputProcessor(data));
+            matching = "| Cost of training Attack                         |\n";
+            nonMatching = "| Cost is not shown here |\n";
+            break;
+        case "ExpCommand":
+            op = new ExpCommandOutputProcessor(ControllerBenchmark.silentGUIModel(), data);
+            matching = "Exp: 120000 Money: 211.10 Bank: 64440.00 Exp pool: 100.0\n";
+            nonMatching = "Exp: 120000 Money: lots\n";
+            break;
+        case "ImproveSkillByUse":
+            op = new ImproveSkillByUseOutputProcessor(data);
+            data.setSkillStatus("camping", 10);
+            matching = "You feel like you just got slightly better in Camping";
+            nonMatching = "You feel like you just got hungry.\n";
+            break;
+        case "InfoCommandFirstLevel":
+            op = new InfoCommandFirstLevelProcessor(skillMax);
+            matching = "Abilities gained when joining:\n";
+            nonMatching = "Abilities gained when advancing:\n";
+            break;
+        case "InfoCommandLevelNumber":
+            op = new InfoCommandLevelNumberProcessor(skillMax);
+            matching = "Level 5:\n";
+            nonMatching = "Level of the tiger: high\n";
+            break;
+        case "InfoCommandSkillMax":
+            op = skillMax;
+            matching = " May train skill Attack to 35%\n";
+            nonMatching = "May the gods be with you, 100%\n";
+            break;
+        case "PercentCost":
+            op = new PercentCostOutputProcessor(data);
+            matching = "|   22% =         23816  |   72% =        148210  |\n";
+            nonMatching = "|  1% = many  |\n";
+            break;
+        case "PlayerLevel":
+            op = new PlayerLevelOutputProcessor(data);
+            ((PlayerLevelOutputProcessor) op).setGuild("ranger");
+            matching = "Your level: 5\n";
+            nonMatching = "Your level: unknown\n";
+            break;
+        case "TrainCommand":
+            op = new TrainCommandOutputProcessor(data);
+            matching = "| Attack                        |  21 |  85 |  35 |       22015 |\n";
+            nonMatching = "| Attack  | lots |\n";
+            break;
+        case "TrainedPartially":
+            op = new TrainedPartiallyOutputProcessor(data);
+            matching = "You partially train Attack which cost you 300000 experience.\n";
+            nonMatching = "You partially agree with Jogo.\n";
+            break;
+        case "TrainedSkill":
+            op = new TrainedSkillOutputProcessor(data);
+            matching = "You now have 'Attack' at 22% without special bonuses.\n";
+            nonMatching = "You now have 'nothing' to do.\n";
+            break;
+        case "CharacterName":
+            op = new CharacterNameOutputProcessor(character -> {
+            });
+            matching = "Welcome back, Jogo.\n";
+            nonMatching = "Welcome to the Ranger guild hall.\n";
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown processor " + processor);
+        }
+        if (!op.receive(matching) || op.receive(nonMatching)) {
+            throw new IllegalStateException("Lines of " + processor + " are not what they claim");
+        }
+    }
+
+    @Benchmark
+    public boolean matching() {
+        return op.receive(matching);
+    }
+
+    @Benchmark
+    public boolean nonMatching() {
+        return op.receive(nonMatching);
+    }
+}
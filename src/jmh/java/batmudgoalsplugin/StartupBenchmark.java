@@ -0,0 +1,87 @@
+package batmudgoalsplugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mythicscape.batclient.interfaces.ClientGUI;
+
+import batmudgoalsplugin.data.BatMUDGoalsPluginData;
+import batmudgoalsplugin.data.DataFormat;
+import batmudgoalsplugin.data.PersistenceBenchmark;
+
+/**
+ * Cold start of the plugin: the first {@link BatMUDGoalsPlugin#loadPlugin()}
+ * in a fresh JVM with a full cost library in the data file. The first command
+ * listing the stored skills shows the cost of decoding the cost curves left
+ * out of the start.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+public class StartupBenchmark {
+
+    @Param({ "150" })
+    public int skills;
+
+    private File baseDirectory;
+    private BatMUDGoalsPlugin plugin;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        baseDirectory = Files.createTempDirectory("benchmark").toFile();
+        File dataDirectory = new File(baseDirectory, "conf/batmudgoalsplugin");
+        dataDirectory.mkdirs();
+        BatMUDGoalsPluginData.persistToFile(PersistenceBenchmark.fullLibrary(skills),
+                new File(dataDirectory, "BatMUDGoalsInfo.bin"), DataFormat.BINARY);
+
+        ClientGUI gui = (ClientGUI) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { ClientGUI.class },
+                (proxy, method, args) -> "getBaseDirectory".equals(method.getName()) ? baseDirectory.getPath()
+                        : null);
+        plugin = new BatMUDGoalsPlugin();
+        plugin.init(null, null, null, null, null, gui);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        plugin.clientExit();
+        try (Stream<Path> files = Files.walk(baseDirectory.toPath())) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public BatMUDGoalsPlugin loadPlugin() {
+        plugin.loadPlugin();
+        return plugin;
+    }
+
+    @Benchmark
+    public String loadPluginAndListGoals() {
+        plugin.loadPlugin();
+        return plugin.trigger("goal");
+    }
+}
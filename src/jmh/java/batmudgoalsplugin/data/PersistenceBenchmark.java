@@ -0,0 +1,93 @@
+package batmudgoalsplugin.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Load and save times of the text and binary formats, from the data of a
+ * character who has seen a few skills to a cost library far larger than any
+ * guild has. The sizes of the files are printed when the benchmark starts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PersistenceBenchmark {
+
+    private static final String[] GUILDS = { "ranger", "barbarian", "tarmalen", "tzarakk", "mage", "channellers" };
+
+    @Param({ "TEXT", "BINARY" })
+    public DataFormat format;
+
+    @Param({ "5", "150", "2000" })
+    public int skills;
+
+    private BatMUDGoalsPluginData data;
+    private File file;
+
+    @Setup
+    public void setup() throws IOException {
+        data = fullLibrary(skills);
+        file = File.createTempFile("benchmark", format.name());
+        BatMUDGoalsPluginData.persistToFile(data, file, format);
+        System.out.println();
+        System.out.println(format + " file size with " + skills + " skills: " + file.length() + " bytes");
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    /**
+     * @param skills
+     * @return data with a cost curve, status and skill maxes for each skill
+     */
+    public static BatMUDGoalsPluginData fullLibrary(int skills) {
+        BatMUDGoalsPluginData data = new BatMUDGoalsPluginData();
+        for (int skill = 0; skill < skills; skill++) {
+            String name = "skill number " + skill;
+            for (int percent = 1; percent <= 100; percent++) {
+                data.setSkillCostForLevel(name, percent, 50 + percent * percent * (40 + skill));
+            }
+            data.setSkillStatus(name, skill % 100);
+            String guild = GUILDS[skill % GUILDS.length];
+            for (int level = 1; level <= 35; level += 5) {
+                data.setSkillMaxInfo(guild, name, level, Math.min(100, level * 3));
+            }
+        }
+        for (int i = 0; i < GUILDS.length; i++) {
+            data.setGuildLevel(GUILDS[i], 10 + i);
+        }
+        data.setGoalSkill("skill number 0");
+        data.trainPartially("skill number 0");
+        return data;
+    }
+
+    @Benchmark
+    public BatMUDGoalsPluginData load() {
+        return BatMUDGoalsPluginData.fromFile(file);
+    }
+
+    @Benchmark
+    public long save() {
+        BatMUDGoalsPluginData.persistToFile(data, file, format);
+        return file.length();
+    }
+}
@@ -21,6 +21,13 @@ abstract class AbstractCommandProcessor {
         this.pattern = Pattern.compile(regexp, Pattern.CASE_INSENSITIVE);
     }
 
+    /**
+     * @return name the processor is counted under in 'goal stats'
+     */
+    String getName() {
+        return getClass().getSimpleName();
+    }
+
     /**
      * Extending classes should not need to override this method.
      * 
@@ -60,11 +67,6 @@ abstract class AbstractCommandProcessor {
      * @return normalized skill name
      */
     protected String normalizeSkillName(String originalSkillName) {
-        StringBuilder sb = new StringBuilder();
-        for (String s : originalSkillName.split("\\s+")) {
-            sb.append(s);
-            sb.append(" ");
-        }
-        return sb.toString().trim().toLowerCase();
+        return SkillNames.normalize(originalSkillName);
     }
 }
\ No newline at end of file
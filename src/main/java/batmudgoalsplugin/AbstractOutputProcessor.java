@@ -1,33 +1,114 @@
 package batmudgoalsplugin;
 
+import java.util.regex.MatchResult;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import batmudgoalsplugin.jfr.ProcessorMatchedEvent;
+
 /**
  * Base implementation for command processors.
  */
 abstract class AbstractOutputProcessor {
     private final Pattern pattern;
+    private final String[] anchors;
+    /**
+     * Reused for every line. Processors are driven by one thread at a time, see
+     * {@link BatMUDGoalsController}, so the matcher needs no synchronization.
+     */
+    private final Matcher matcher;
+    private CharSequence input;
 
     /**
      * Extending classes should call this constructor to provide a regular
      * expression which is matched against command output. On matches, the extending
      * class will receive a call to its process method with the {@link Matcher}
+     * <p>
+     * Anchors are literals which occur (case insensitively) in every line the
+     * regular expression can match. {@link BatMUDGoalsController} uses them to
+     * skip the processor for lines which cannot match. A processor without
+     * anchors receives every line.
      *
      * @param regexp
-     * @param plugin optional
+     * @param anchors mandatory literals of regexp, optional
      */
-    public AbstractOutputProcessor(final String regexp) {
+    public AbstractOutputProcessor(final String regexp, final String... anchors) {
         this.pattern = Pattern.compile(regexp, Pattern.CASE_INSENSITIVE);
+        this.anchors = anchors;
+        this.matcher = pattern.matcher("");
+    }
+
+    /**
+     * @return mandatory literals of the regular expression
+     */
+    String[] getAnchors() {
+        return anchors;
+    }
+
+    /**
+     * @return name the processor is counted under in 'goal stats'
+     */
+    String getName() {
+        return getClass().getSimpleName();
     }
 
     /**
-     * Extending classes should not need to override this method.
+     * @return the regular expression of this processor
+     */
+    Pattern getPattern() {
+        return pattern;
+    }
+
+    /**
+     * Extending classes which override {@link #decideProcess(Matcher)} to look
+     * for matches inside the line should override this to return false.
+     *
+     * @return true if the regular expression must match the whole line
+     */
+    boolean matchesWholeLine() {
+        return true;
+    }
+
+    /**
+     * Extending classes should not need to override this method. The line is
+     * matched with a matcher reused across calls, so a line which does not match
+     * allocates nothing.
      *
      * @param input
+     * @return true if the input was processed
      */
-    public final void receive(final String input) {
-        decideProcess(pattern.matcher(input));
+    public final boolean receive(final CharSequence input) {
+        final ProcessorMatchedEvent event = ProcessorMatchedEvent.start();
+        this.input = input;
+        final boolean processed = decideProcess(matcher.reset(input));
+        if (processed && event != null) {
+            commit(event, input);
+        }
+        return processed;
+    }
+
+    /**
+     * Processes a match of this processor's regular expression found by someone
+     * else, e.g. {@link CombinedOutputMatcher}
+     *
+     * @param input line the match was found in
+     * @param m
+     */
+    final void process(final CharSequence input, final MatchResult m) {
+        final ProcessorMatchedEvent event = ProcessorMatchedEvent.start();
+        this.input = input;
+        process(m);
+        if (event != null) {
+            commit(event, input);
+        }
+    }
+
+    private void commit(final ProcessorMatchedEvent event, final CharSequence input) {
+        if (event.shouldCommit()) {
+            event.processor = getClass();
+            event.line = input.toString();
+            event.commit();
+        }
     }
 
     /**
@@ -35,20 +116,36 @@ abstract class AbstractOutputProcessor {
      * to process
      *
      * @param m
+     * @return true if the input was processed
      */
-    protected void decideProcess(final Matcher m) {
+    protected boolean decideProcess(final Matcher m) {
         if (m.matches()) {
             process(m);
+            return true;
         }
+        return false;
     }
 
     /**
      * Extending classes implement the logic what happens when the regexp is matched
-     * in this method.
+     * in this method. The groups of the match are numbered as in the regular
+     * expression of this processor.
+     *
+     * @param m
+     */
+    protected abstract void process(MatchResult m);
+
+    /**
+     * Parses a captured number straight from the line being processed, without
+     * creating a string of the group
      *
      * @param m
+     * @param group number of a group capturing decimal digits
+     * @return value of the group
      */
-    protected abstract void process(Matcher m);
+    protected final int parseInt(final MatchResult m, final int group) {
+        return Integer.parseInt(input, m.start(group), m.end(group), 10);
+    }
 
     /**
      * Removes extra whitespaces and puts to lowercase
@@ -57,11 +154,18 @@ abstract class AbstractOutputProcessor {
      * @return normalized skill name
      */
     protected String normalizeSkillName(final String originalSkillName) {
-        final StringBuilder sb = new StringBuilder();
-        for (final String s : originalSkillName.split("\\s+")) {
-            sb.append(s);
-            sb.append(" ");
-        }
-        return sb.toString().trim().toLowerCase();
+        return SkillNames.normalize(originalSkillName);
+    }
+
+    /**
+     * Normalizes a captured skill name straight from the line being processed,
+     * see {@link #normalizeSkillName(String)}
+     *
+     * @param m
+     * @param group number of a group capturing a skill name
+     * @return normalized skill name
+     */
+    protected final String normalizeSkillName(final MatchResult m, final int group) {
+        return SkillNames.normalize(input, m.start(group), m.end(group));
     }
 }
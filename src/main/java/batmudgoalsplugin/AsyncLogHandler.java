@@ -0,0 +1,319 @@
+package batmudgoalsplugin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * Moves writing of log records off the threads which log them. Records are put
+ * into a bounded queue and a dedicated thread hands them to the target handler,
+ * e.g. a {@link java.util.logging.FileHandler}. When the queue is full the
+ * record is dropped instead of blocking the client, and the number of records
+ * dropped is logged once the queue has been emptied.
+ * <p>
+ * A processor failing on every line would otherwise write a stack trace per
+ * line. A record with an exception identical to one logged less than the
+ * repeat window ago, same level, message and stack trace, is only counted, and
+ * the count is logged when the window has passed.
+ */
+class AsyncLogHandler extends Handler {
+
+    private static final long POLL_MILLIS = 500;
+    private static final long DRAIN_POLL_MILLIS = 1;
+    /** Distinct exceptions whose repeats are counted at a time */
+    private static final int MAX_REPEATS = 256;
+
+    /** Identity of a logged exception */
+    private static final class RepeatKey {
+        private final Level level;
+        private final String message;
+        private final Class<?> thrownClass;
+        private final String thrownMessage;
+        private final StackTraceElement[] stackTrace;
+        private final int hash;
+
+        RepeatKey(LogRecord record) {
+            Throwable thrown = record.getThrown();
+            level = record.getLevel();
+            message = record.getMessage();
+            thrownClass = thrown.getClass();
+            thrownMessage = thrown.getMessage();
+            stackTrace = thrown.getStackTrace();
+            hash = Objects.hash(level, message, thrownClass, thrownMessage) * 31 + Arrays.hashCode(stackTrace);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof RepeatKey)) {
+                return false;
+            }
+            RepeatKey other = (RepeatKey) obj;
+            return hash == other.hash && level.equals(other.level) && Objects.equals(message, other.message)
+                    && thrownClass == other.thrownClass && Objects.equals(thrownMessage, other.thrownMessage)
+                    && Arrays.equals(stackTrace, other.stackTrace);
+        }
+    }
+
+    /** Repeats of an exception within the window started by its first record */
+    private static final class Repeats {
+        private final LogRecord first;
+        private final long startNanos;
+        private int count;
+
+        Repeats(LogRecord first, long startNanos) {
+            this.first = first;
+            this.startNanos = startNanos;
+        }
+    }
+
+    private final Handler target;
+    private final BlockingQueue<LogRecord> queue;
+    private final long repeatWindowNanos;
+    private final LongSupplier nanoClock;
+    /** Guarded by itself */
+    private final Map<RepeatKey, Repeats> repeats = new HashMap<>();
+    private final Thread writer;
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong suppressed = new AtomicLong();
+    /** Records dropped which have been reported, used by the writer only */
+    private long droppedReported;
+    private volatile boolean running = true;
+
+    /**
+     * Starts the writer thread
+     *
+     * @param target            handler the records are written with, closed
+     *                          with this handler
+     * @param capacity          number of records queued at most
+     * @param repeatWindowNanos repeats of an exception within this time are
+     *                          only counted
+     * @param nanoClock         time of the repeat windows
+     */
+    AsyncLogHandler(Handler target, int capacity, long repeatWindowNanos, LongSupplier nanoClock) {
+        this.target = target;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.repeatWindowNanos = repeatWindowNanos;
+        this.nanoClock = nanoClock;
+        this.writer = new Thread(this::write, "BatMUDGoalsPlugin log");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (!running || !isLoggable(record)) {
+            return;
+        }
+        if (record.getThrown() != null && isRepeat(record)) {
+            suppressed.incrementAndGet();
+            return;
+        }
+        // The caller is inferred from the stack, which must be done before
+        // the record leaves the thread that logged it
+        record.getSourceMethodName();
+        enqueue(record);
+    }
+
+    private boolean isRepeat(LogRecord record) {
+        RepeatKey key = new RepeatKey(record);
+        long now = nanoClock.getAsLong();
+        synchronized (repeats) {
+            Repeats earlier = repeats.get(key);
+            if (earlier != null && now - earlier.startNanos < repeatWindowNanos) {
+                earlier.count++;
+                return true;
+            }
+            if (earlier != null) {
+                if (earlier.count > 0) {
+                    enqueue(summary(earlier));
+                }
+                repeats.remove(key);
+            }
+            if (repeats.size() < MAX_REPEATS) {
+                repeats.put(key, new Repeats(record, now));
+            }
+            return false;
+        }
+    }
+
+    private void enqueue(LogRecord record) {
+        if (queue.offer(record)) {
+            queued.incrementAndGet();
+        } else {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private LogRecord summary(Repeats repeat) {
+        LogRecord summary = new LogRecord(repeat.first.getLevel(), String.format(
+                "Previous message repeated %d times: %s", repeat.count, repeat.first.getMessage()));
+        summary.setLoggerName(repeat.first.getLoggerName());
+        summary.setSourceClassName(repeat.first.getSourceClassName());
+        summary.setSourceMethodName(repeat.first.getSourceMethodName());
+        return summary;
+    }
+
+    /**
+     * Queues the counts of the repeats whose window has passed
+     *
+     * @param all true to queue the counts of every window
+     */
+    private void summarizeRepeats(boolean all) {
+        List<LogRecord> summaries = new ArrayList<>();
+        long now = nanoClock.getAsLong();
+        synchronized (repeats) {
+            for (Iterator<Repeats> i = repeats.values().iterator(); i.hasNext();) {
+                Repeats repeat = i.next();
+                if (all || now - repeat.startNanos >= repeatWindowNanos) {
+                    if (repeat.count > 0) {
+                        summaries.add(summary(repeat));
+                    }
+                    i.remove();
+                }
+            }
+        }
+        summaries.forEach(this::enqueue);
+    }
+
+    private void write() {
+        while (true) {
+            LogRecord record;
+            try {
+                record = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                record = null;
+            }
+            if (record != null) {
+                publishToTarget(record);
+            } else if (!running) {
+                for (LogRecord rest; (rest = queue.poll()) != null;) {
+                    publishToTarget(rest);
+                }
+                reportDropped();
+                return;
+            } else {
+                summarizeRepeats(false);
+            }
+            reportDropped();
+        }
+    }
+
+    private void publishToTarget(LogRecord record) {
+        try {
+            writeToTarget(record);
+        } finally {
+            written.incrementAndGet();
+        }
+    }
+
+    /**
+     * Writes a record without counting it as written, for records which were
+     * never queued
+     *
+     * @param record
+     */
+    private void writeToTarget(LogRecord record) {
+        try {
+            target.publish(record);
+        } catch (RuntimeException e) {
+            reportError(null, e, ErrorManager.WRITE_FAILURE);
+        }
+    }
+
+    private void reportDropped() {
+        long count = dropped.get();
+        if (count != droppedReported && queue.isEmpty()) {
+            LogRecord report = new LogRecord(Level.WARNING, String.format(
+                    "%d log records dropped, the log queue was full", count - droppedReported));
+            report.setLoggerName(getClass().getName());
+            droppedReported = count;
+            writeToTarget(report);
+        }
+    }
+
+    /**
+     * Waits until the records queued so far have been written
+     *
+     * @param timeout
+     * @param unit
+     * @return false if the timeout elapsed first
+     */
+    boolean awaitWritten(long timeout, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (written.get() < queued.get()) {
+            if (System.nanoTime() - deadline > 0 || !writer.isAlive()) {
+                return false;
+            }
+            try {
+                Thread.sleep(DRAIN_POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the records queued so far, waiting for at most a second
+     */
+    @Override
+    public void flush() {
+        awaitWritten(1, TimeUnit.SECONDS);
+        target.flush();
+    }
+
+    /**
+     * Stops accepting records, writes the ones queued and the counts of the
+     * repeats, and closes the target
+     */
+    @Override
+    public void close() {
+        if (!running) {
+            return;
+        }
+        summarizeRepeats(true);
+        running = false;
+        writer.interrupt();
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        target.close();
+    }
+
+    /**
+     * @return number of records dropped because the queue was full
+     */
+    long getDroppedRecords() {
+        return dropped.get();
+    }
+
+    /**
+     * @return number of repeats of exceptions which were only counted
+     */
+    long getSuppressedRecords() {
+        return suppressed.get();
+    }
+}
@@ -0,0 +1,225 @@
+package batmudgoalsplugin;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Moves processing of output lines off the client's output thread. The output
+ * thread only enqueues lines into a bounded {@link OutputLineRingBuffer} and a
+ * dedicated consumer thread hands them, in order, to the line processor. When
+ * the buffer is full the line is dropped instead of blocking the client. Once
+ * the consumer has stopped, lines are processed on the thread submitting them.
+ */
+class AsyncOutputPipeline {
+
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final OutputLineRingBuffer buffer;
+    private final Consumer<String> lineProcessor;
+    private final Thread consumer;
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    /** Threads in {@link #awaitDrained}, unparked once their lines are processed */
+    private final Queue<DrainWaiter> drainWaiters = new ConcurrentLinkedQueue<>();
+    private volatile boolean running = true;
+    /** Set by the consumer once it takes no more lines from the buffer */
+    private volatile boolean closed;
+    private volatile boolean waiting;
+
+    /**
+     * Starts the consumer thread
+     *
+     * @param capacity      power of two
+     * @param lineProcessor called on the consumer thread for each line
+     */
+    AsyncOutputPipeline(int capacity, Consumer<String> lineProcessor) {
+        this.buffer = new OutputLineRingBuffer(capacity);
+        this.lineProcessor = lineProcessor;
+        this.consumer = new Thread(this::consume, "BatMUDGoalsPlugin output");
+        this.consumer.setDaemon(true);
+        this.consumer.start();
+    }
+
+    /**
+     * Called by the client's output thread only. After shutdown the line is
+     * processed right away, once the lines queued before it have been.
+     *
+     * @param line
+     * @return false if the line was dropped
+     */
+    boolean submit(String line) {
+        if (closed) {
+            processAfterConsumer(line);
+            return true;
+        }
+        if (!buffer.offer(line)) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        queued.incrementAndGet();
+        if (closed) {
+            // The consumer may have stopped without seeing the line
+            processAfterConsumer(null);
+        } else if (waiting) {
+            LockSupport.unpark(consumer);
+        }
+        return true;
+    }
+
+    /**
+     * Waits for the consumer to stop, takes over the lines it left in the
+     * buffer and processes the line, if any, after them
+     *
+     * @param line
+     */
+    private void processAfterConsumer(String line) {
+        boolean interrupted = false;
+        while (consumer.isAlive()) {
+            try {
+                consumer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        // The consumer has stopped, so this is the only thread polling
+        for (String queuedLine = buffer.poll(); queuedLine != null; queuedLine = buffer.poll()) {
+            process(queuedLine);
+        }
+        if (line != null) {
+            lineProcessor.accept(line);
+        }
+    }
+
+    private void consume() {
+        try {
+            while (true) {
+                String line = buffer.poll();
+                if (line == null) {
+                    if (!running) {
+                        closed = true;
+                        // Lines offered before submit saw the pipeline closed
+                        for (line = buffer.poll(); line != null; line = buffer.poll()) {
+                            process(line);
+                        }
+                        return;
+                    }
+                    waiting = true;
+                    if (buffer.isEmpty() && running) {
+                        LockSupport.parkNanos(this, PARK_NANOS);
+                    }
+                    waiting = false;
+                    continue;
+                }
+                process(line);
+                if (!drainWaiters.isEmpty()) {
+                    unparkDrainWaiters(processed.get());
+                }
+            }
+        } finally {
+            unparkDrainWaiters(Long.MAX_VALUE);
+        }
+    }
+
+    private void process(String line) {
+        try {
+            lineProcessor.accept(line);
+        } finally {
+            processed.incrementAndGet();
+        }
+    }
+
+    /**
+     * @param processedLines lines processed so far
+     */
+    private void unparkDrainWaiters(long processedLines) {
+        for (DrainWaiter waiter : drainWaiters) {
+            if (waiter.target <= processedLines) {
+                LockSupport.unpark(waiter.thread);
+            }
+        }
+    }
+
+    /**
+     * Waits until the lines queued before the call have been processed. Lines
+     * queued meanwhile are not waited for, so a steady output does not keep
+     * the caller waiting.
+     *
+     * @param timeout
+     * @param unit
+     * @return false if the timeout elapsed first
+     */
+    boolean awaitDrained(long timeout, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        DrainWaiter waiter = new DrainWaiter(Thread.currentThread(), queued.get());
+        drainWaiters.add(waiter);
+        try {
+            // Registered before looking, so the unpark of the consumer is not missed
+            while (processed.get() < waiter.target) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0 || !consumer.isAlive()) {
+                    return false;
+                }
+                LockSupport.parkNanos(this, remaining);
+            }
+            return true;
+        } finally {
+            drainWaiters.remove(waiter);
+        }
+    }
+
+    /**
+     * Stops queueing lines, processes the lines still queued and stops the
+     * consumer thread. Lines submitted afterwards are processed by submit.
+     *
+     * @param timeout
+     * @param unit
+     * @return false if the queue could not be drained in time
+     * @throws InterruptedException
+     */
+    boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        running = false;
+        LockSupport.unpark(consumer);
+        consumer.join(Math.max(1, unit.toMillis(timeout)));
+        return !consumer.isAlive();
+    }
+
+    /**
+     * @return number of lines accepted into the queue
+     */
+    long getQueuedLines() {
+        return queued.get();
+    }
+
+    /**
+     * @return number of lines dropped because the queue was full
+     */
+    long getDroppedLines() {
+        return dropped.get();
+    }
+
+    /**
+     * @return number of lines processed by the consumer thread
+     */
+    long getProcessedLines() {
+        return processed.get();
+    }
+
+    /** Thread waiting until the given number of lines has been processed */
+    private static final class DrainWaiter {
+        private final Thread thread;
+        private final long target;
+
+        private DrainWaiter(Thread thread, long target) {
+            this.thread = thread;
+            this.target = target;
+        }
+    }
+}
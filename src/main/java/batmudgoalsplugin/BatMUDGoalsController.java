@@ -1,16 +1,23 @@
 package batmudgoalsplugin;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.swing.SwingUtilities;
+
 import com.mythicscape.batclient.interfaces.BatClientPluginCommandTrigger;
 import com.mythicscape.batclient.interfaces.BatClientPluginTrigger;
 import com.mythicscape.batclient.interfaces.ParsedResult;
 
 import batmudgoalsplugin.data.BatMUDGoalsPluginData;
+import batmudgoalsplugin.jfr.LineDispatchedEvent;
 
 /**
  * Plugin for BatClient. Player can set a goal of improving a skill in her
@@ -22,44 +29,380 @@ import batmudgoalsplugin.data.BatMUDGoalsPluginData;
 public class BatMUDGoalsController
         implements BatClientPluginCommandTrigger, BatClientPluginTrigger {
 
+    /**
+     * Ways of handing output lines to the output processors
+     */
+    public enum DispatchEngine {
+        /** Every processor matches every line on its own */
+        SEQUENTIAL,
+        /** Processors receive only lines containing their anchors */
+        INDEXED,
+        /** All processors are matched at once with a combined regular expression */
+        COMBINED
+    }
+
+    private static final long SESSION_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(60);
+    private static final long DRAIN_TIMEOUT_MILLIS = 1000;
+    /**
+     * Longest a command waits for the output before it. A full queue of lines
+     * is processed within tens of milliseconds, so this is only reached if a
+     * processor is stuck; the command is then processed before the lines.
+     */
+    private static final long COMMAND_DRAIN_TIMEOUT_MILLIS = 100;
+    /** Longest a command waits for the data of a character logging in */
+    private static final long HOLD_TIMEOUT_MILLIS = 1000;
+
     private final Logger logger;
-    private final BatMUDGoalsPluginData data;
-    private Collection<AbstractCommandProcessor> commandProcessors;
-    private Collection<AbstractOutputProcessor> outputProcessors;
+    /** Volatile for the goal window to look at its version without the lock */
+    private volatile BatMUDGoalsPluginData data;
+    /** Keeps the goal progress version growing when the data is switched */
+    private volatile long progressVersionOffset;
+    private AbstractCommandProcessor[] commandProcessors;
+    private AbstractOutputProcessor[] outputProcessors;
+    /** Counters of the processors, in the same order */
+    private ProcessingStats.Counters[] commandCounters;
+    private ProcessingStats.Counters[] outputCounters;
+    private ProcessingStats.Counters combinedCounters;
+    private ExpCommandOutputProcessor expCommandOutputProcessor;
+    private OutputDispatchIndex dispatchIndex;
+    private CombinedOutputMatcher combinedMatcher;
+    private DispatchEngine dispatchEngine = DispatchEngine.INDEXED;
+    private ParsingSessions parsingSessions;
     private final ClientGUIModel clientGUIModel;
+    private final LongSupplier nanoClock;
+    private final ProcessingStats stats;
+    /** Opened with 'goal window', used on the event dispatch thread only */
+    private GoalProgressWindow goalWindow;
+    /** Lines processed, to pick the lines whose processors are timed */
+    private long processedLines;
+    /** Guards the processors and the data model against concurrent triggers */
+    private final Object processingLock = new Object();
+    private volatile AsyncOutputPipeline asyncPipeline;
+    private ICharacterNameListener characterListener = character -> {
+    };
+    private IOutputMatchListener matchListener;
+    /** Character recognised from the line being processed, null if none */
+    private String recognisedCharacter;
+    /** Lines held until the data is switched, null if not held */
+    private List<String> heldLines;
 
     public BatMUDGoalsController(final Logger logger, final BatMUDGoalsPluginData data, final ClientGUIModel clientGUIModel)
             throws SecurityException, IOException {
+        this(logger, data, clientGUIModel, System::nanoTime);
+    }
+
+    BatMUDGoalsController(final Logger logger, final BatMUDGoalsPluginData data, final ClientGUIModel clientGUIModel,
+            final LongSupplier nanoClock) {
         this.logger = logger;
         this.data = data;
         this.clientGUIModel = clientGUIModel;
+        this.nanoClock = nanoClock;
+        this.stats = new ProcessingStats(nanoClock);
 
         initializeCommandProcessors();
     }
 
     private void initializeCommandProcessors() {
         logger.info("Initalizing command processors");
-        final PlayerLevelOutputProcessor playerLevelOutputProcessor = new PlayerLevelOutputProcessor(data);
+        // Processors look the data up on every line, so it can be switched
+        // without creating them again
+        final Supplier<BatMUDGoalsPluginData> currentData = () -> data;
+        final PlayerLevelOutputProcessor playerLevelOutputProcessor = new PlayerLevelOutputProcessor(currentData);
         final InfoCommandSkillMaxOutputProcessor infoCommandSkillMaxOutputProcessor = new InfoCommandSkillMaxOutputProcessor(
-                data);
-        final PercentCostOutputProcessor percentCostOutputProcessor = new PercentCostOutputProcessor(data);
+                currentData);
+        final PercentCostOutputProcessor percentCostOutputProcessor = new PercentCostOutputProcessor(currentData);
+        final TrainCommandOutputProcessor trainCommandOutputProcessor = new TrainCommandOutputProcessor(currentData);
+        final CostOfTrainingSkillNameOutputProcessor costOfTrainingSkillNameOutputProcessor = new CostOfTrainingSkillNameOutputProcessor(
+                percentCostOutputProcessor);
+        final InfoCommandFirstLevelProcessor infoCommandFirstLevelProcessor = new InfoCommandFirstLevelProcessor(
+                infoCommandSkillMaxOutputProcessor);
+        final InfoCommandLevelNumberProcessor infoCommandLevelNumberProcessor = new InfoCommandLevelNumberProcessor(
+                infoCommandSkillMaxOutputProcessor);
+
+        expCommandOutputProcessor = new ExpCommandOutputProcessor(clientGUIModel, currentData);
 
-        commandProcessors = Arrays.asList(
-                new GuildCommandProcessor(playerLevelOutputProcessor, infoCommandSkillMaxOutputProcessor),
-                new GoalCommandWithoutParametersProcessor(clientGUIModel, data),
-                new GoalCommandProcessor(clientGUIModel, data));
+        final List<AbstractCommandProcessor> commands = Arrays.asList(
+                new StatsCommandProcessor(clientGUIModel, this),
+                new GoalWindowCommandProcessor(this::toggleGoalWindow),
+                new SessionCommandProcessor("(?:.*;)*\\s*cost\\s+(?:train|study)\\s+[^;]+(?:;.*)?",
+                        ParsingSession.COST, this::startSession),
+                new SessionCommandProcessor("(?:.*;)*\\s*(?:train|study)\\s*(?:;.*)?",
+                        ParsingSession.TRAIN, this::startSession),
+                new GuildCommandProcessor(playerLevelOutputProcessor, infoCommandSkillMaxOutputProcessor,
+                        guild -> startSession(ParsingSession.GUILD_INFO)),
+                new GoalCommandWithoutParametersProcessor(clientGUIModel, currentData),
+                new GoalCommandProcessor(clientGUIModel, currentData));
+        commandProcessors = commands.toArray(new AbstractCommandProcessor[0]);
 
-        outputProcessors = Arrays.asList(new TrainCommandOutputProcessor(data),
+        final List<AbstractOutputProcessor> processors = Arrays.asList(trainCommandOutputProcessor,
                 percentCostOutputProcessor,
-                new TrainedSkillOutputProcessor(data),
-                new CostOfTrainingSkillNameOutputProcessor(percentCostOutputProcessor),
-                new ExpCommandOutputProcessor(clientGUIModel, data),
+                new TrainedSkillOutputProcessor(currentData),
+                costOfTrainingSkillNameOutputProcessor,
+                expCommandOutputProcessor,
                 playerLevelOutputProcessor,
-                new InfoCommandFirstLevelProcessor(infoCommandSkillMaxOutputProcessor),
-                new InfoCommandLevelNumberProcessor(infoCommandSkillMaxOutputProcessor),
+                infoCommandFirstLevelProcessor,
+                infoCommandLevelNumberProcessor,
                 infoCommandSkillMaxOutputProcessor,
-                new ImproveSkillByUseOutputProcessor(data),
-                new TrainedPartiallyOutputProcessor(data));
+                new ImproveSkillByUseOutputProcessor(currentData),
+                new TrainedPartiallyOutputProcessor(currentData),
+                new CharacterNameOutputProcessor(character -> recognisedCharacter = character));
+        outputProcessors = processors.toArray(new AbstractOutputProcessor[0]);
+        dispatchIndex = new OutputDispatchIndex(processors);
+        combinedMatcher = new CombinedOutputMatcher(processors);
+        commandCounters = commands.stream().map(command -> stats.processor(command.getName()))
+                .toArray(ProcessingStats.Counters[]::new);
+        outputCounters = processors.stream().map(processor -> stats.processor(processor.getName()))
+                .toArray(ProcessingStats.Counters[]::new);
+        combinedCounters = stats.processor(CombinedOutputMatcher.class.getSimpleName());
+
+        // Processors not scoped to a session receive output all the time
+        parsingSessions = new ParsingSessions(processors, SESSION_TIMEOUT_NANOS);
+        parsingSessions.scope(ParsingSession.TRAIN, trainCommandOutputProcessor);
+        parsingSessions.scope(ParsingSession.COST, costOfTrainingSkillNameOutputProcessor,
+                percentCostOutputProcessor);
+        parsingSessions.scope(ParsingSession.GUILD_INFO, playerLevelOutputProcessor, infoCommandFirstLevelProcessor,
+                infoCommandLevelNumberProcessor, infoCommandSkillMaxOutputProcessor);
+    }
+
+    private void startSession(final ParsingSession session) {
+        parsingSessions.start(session, nanoClock.getAsLong());
+    }
+
+    /**
+     * Selects how output lines are handed to the output processors
+     *
+     * @param dispatchEngine
+     */
+    public void setDispatchEngine(final DispatchEngine dispatchEngine) {
+        this.dispatchEngine = dispatchEngine;
+    }
+
+    public DispatchEngine getDispatchEngine() {
+        return dispatchEngine;
+    }
+
+    /**
+     * Opt-in mode where output lines are only queued on the client's output
+     * thread and processed, in order, on a dedicated thread. Lines are dropped
+     * when the queue is full.
+     *
+     * @param capacity size of the queue, a power of two
+     */
+    public void startAsyncProcessing(final int capacity) {
+        if (asyncPipeline == null) {
+            logger.info("Starting asynchronous output processing");
+            asyncPipeline = new AsyncOutputPipeline(capacity, this::processOutput);
+        }
+    }
+
+    /**
+     * Processes the lines still queued and returns to synchronous processing.
+     *
+     * @throws InterruptedException
+     */
+    public void stopAsyncProcessing() throws InterruptedException {
+        final AsyncOutputPipeline pipeline = asyncPipeline;
+        if (pipeline != null) {
+            if (!pipeline.shutdown(DRAIN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                logger.warning("Output queue was not drained in time");
+            }
+            logger.info(String.format("Asynchronous output processing stopped, %d lines queued, %d dropped",
+                    pipeline.getQueuedLines(), pipeline.getDroppedLines()));
+            asyncPipeline = null;
+        }
+    }
+
+    /**
+     * @return number of lines queued for asynchronous processing
+     */
+    public long getQueuedLines() {
+        final AsyncOutputPipeline pipeline = asyncPipeline;
+        return pipeline == null ? 0 : pipeline.getQueuedLines();
+    }
+
+    /**
+     * @return number of lines dropped because the queue was full
+     */
+    public long getDroppedLines() {
+        final AsyncOutputPipeline pipeline = asyncPipeline;
+        return pipeline == null ? 0 : pipeline.getDroppedLines();
+    }
+
+    /**
+     * @return output processors in dispatch order
+     */
+    List<AbstractOutputProcessor> getOutputProcessors() {
+        return Arrays.asList(outputProcessors);
+    }
+
+    /**
+     * @return counters of the processors, see {@link StatsCommandProcessor}
+     */
+    ProcessingStats getStats() {
+        return stats;
+    }
+
+    /**
+     * @return progress towards the goal, taken between two processed lines
+     */
+    GoalProgress getGoalProgress() {
+        synchronized (processingLock) {
+            return expCommandOutputProcessor.getGoalProgress();
+        }
+    }
+
+    /**
+     * Tells whether the goal progress may have changed without taking the
+     * lock. Grows by every change to the data, by every change of the exp and
+     * when the data is switched.
+     *
+     * @return version of the goal progress, may be called on any thread
+     */
+    long getGoalProgressVersion() {
+        return progressVersionOffset + data.getVersion() + expCommandOutputProcessor.getExpChanges();
+    }
+
+    /**
+     * Opens the goal window on the event dispatch thread, or hides or shows it
+     * again if open
+     */
+    private void toggleGoalWindow() {
+        SwingUtilities.invokeLater(() -> {
+            if (goalWindow == null || goalWindow.isClosed()) {
+                goalWindow = new GoalProgressWindow(clientGUIModel, this::getGoalProgress,
+                        this::getGoalProgressVersion, GoalProgressWindow.REFRESH_MILLIS);
+            } else {
+                goalWindow.toggle();
+            }
+        });
+    }
+
+    /**
+     * @return 'exp' commands answered from the evaluated goal state and those
+     *         for which it was evaluated
+     */
+    long[] getExpCacheCounts() {
+        synchronized (processingLock) {
+            return new long[] { expCommandOutputProcessor.getCacheHits(), expCommandOutputProcessor.getCacheMisses() };
+        }
+    }
+
+    /**
+     * Copies the data between two processed lines or commands, e.g. to save it
+     * on another thread.
+     *
+     * @param beforeCopy run just before the copy is taken, while no line or
+     *                   command is being processed
+     * @return copy of the data
+     */
+    public BatMUDGoalsPluginData copyData(final Runnable beforeCopy) {
+        synchronized (processingLock) {
+            beforeCopy.run();
+            return data.copy();
+        }
+    }
+
+    /**
+     * Told about the character logged in once the line it was recognised from
+     * has been processed, while no other line or command is being processed.
+     *
+     * @param characterListener
+     */
+    public void setCharacterListener(final ICharacterNameListener characterListener) {
+        this.characterListener = characterListener;
+    }
+
+    /**
+     * Told about every output processor which processes a line. Meant for
+     * tools measuring the processors, as it is called while the line is being
+     * processed.
+     *
+     * @param matchListener null for none
+     */
+    void setMatchListener(final IOutputMatchListener matchListener) {
+        this.matchListener = matchListener;
+    }
+
+    /**
+     * Replaces the data the processors work on, e.g. when another character
+     * logs in. Lines and commands are processed either with the old data or
+     * with the new one, never partly with both.
+     *
+     * @param data
+     */
+    public void switchData(final BatMUDGoalsPluginData data) {
+        switchData(data, () -> {
+        });
+    }
+
+    /**
+     * Replaces the data the processors work on. Only the reference is
+     * replaced, so this takes no longer than a line does.
+     *
+     * @param data
+     * @param onSwitch run together with the switch, while no line or command
+     *                 is being processed
+     */
+    public void switchData(final BatMUDGoalsPluginData data, final Runnable onSwitch) {
+        synchronized (processingLock) {
+            progressVersionOffset = getGoalProgressVersion() + 1 - data.getVersion();
+            this.data = data;
+            onSwitch.run();
+            releaseOutput();
+        }
+    }
+
+    /**
+     * Holds the output lines until the data is switched or the output is
+     * released, e.g. while the data of a character logging in is loaded, so
+     * that none of them changes the data of the previous character. Commands
+     * wait for the held lines meanwhile.
+     */
+    public void holdOutput() {
+        synchronized (processingLock) {
+            if (heldLines == null) {
+                heldLines = new ArrayList<>();
+            }
+        }
+    }
+
+    /**
+     * Processes the lines held by {@link #holdOutput()} with the data in use,
+     * in the order they were output. Done by {@link #switchData(BatMUDGoalsPluginData)}.
+     */
+    public void releaseOutput() {
+        synchronized (processingLock) {
+            if (heldLines != null) {
+                final List<String> lines = heldLines;
+                heldLines = null;
+                for (final String line : lines) {
+                    // Held again from the next login on
+                    processOutput(line);
+                }
+                processingLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Waits for the lines held to be processed, called with the processing
+     * lock held. Loading a profile takes milliseconds; if it takes longer, the
+     * command is processed with the previous data rather than left hanging.
+     */
+    private void awaitOutputReleased() {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(HOLD_TIMEOUT_MILLIS);
+        try {
+            while (heldLines != null) {
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    logger.warning("Output is held, command processed before " + heldLines.size() + " lines");
+                    return;
+                }
+                TimeUnit.NANOSECONDS.timedWait(processingLock, remaining);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     /*
@@ -69,16 +412,30 @@ public class BatMUDGoalsController
      */
     @Override
     public String trigger(final String input) {
-        try {
-            for (final AbstractCommandProcessor cp : commandProcessors) {
-                if (cp.receive(input)) {
-                    return "";
+        final AsyncOutputPipeline pipeline = asyncPipeline;
+        if (pipeline != null) {
+            // Commands must see the state left by the output before them
+            pipeline.awaitDrained(COMMAND_DRAIN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        synchronized (processingLock) {
+            awaitOutputReleased();
+            final boolean measure = stats.isEnabled();
+            final long start = measure ? stats.now() : 0;
+            final long allocated = measure ? stats.allocatedBytes() : 0;
+            boolean consumed = false;
+            try {
+                parsingSessions.commandIssued();
+                for (int i = 0; i < commandProcessors.length && !consumed; i++) {
+                    consumed = receive(commandProcessors[i], commandCounters[i], input, measure);
                 }
+            } catch (final Throwable t) {
+                logger.log(Level.SEVERE, t.getMessage(), t);
             }
-        } catch (final Throwable t) {
-            logger.log(Level.SEVERE, t.getMessage(), t);
+            if (measure) {
+                stats.commands().record(consumed, stats.now() - start, stats.allocatedBytes() - allocated);
+            }
+            return consumed ? "" : null;
         }
-        return null;
     }
 
     /*
@@ -89,15 +446,136 @@ public class BatMUDGoalsController
      */
     @Override
     public ParsedResult trigger(final ParsedResult input) {
-        try {
-            final String originalText = input.getOriginalText();
-            for (final AbstractOutputProcessor op : outputProcessors) {
-                op.receive(originalText);
-            }
-        } catch (final Throwable t) {
-            logger.log(Level.SEVERE, t.getMessage(), t);
+        final AsyncOutputPipeline pipeline = asyncPipeline;
+        if (pipeline != null) {
+            pipeline.submit(input.getOriginalText());
+        } else {
+            processOutput(input.getOriginalText());
         }
 
         return input; // return input to be processed by the client
     }
+
+    private void processOutput(final String originalText) {
+        synchronized (processingLock) {
+            if (heldLines != null) {
+                heldLines.add(originalText);
+                return;
+            }
+            final boolean measure = stats.isEnabled();
+            final boolean sample = measure && (++processedLines & (ProcessingStats.SAMPLE_INTERVAL - 1)) == 0;
+            final long allocated = measure ? stats.allocatedBytes() : 0;
+            long matched = 0;
+            final long now = nanoClock.getAsLong();
+            final LineDispatchedEvent event = LineDispatchedEvent.start();
+            try {
+                matched = dispatch(originalText, parsingSessions.enabledProcessors(now), measure, sample);
+                parsingSessions.processed(originalText, matched, now);
+                if (matchListener != null) {
+                    for (long m = matched; m != 0; m &= m - 1) {
+                        matchListener.matched(outputProcessors[Long.numberOfTrailingZeros(m)], originalText);
+                    }
+                }
+                if (recognisedCharacter != null) {
+                    final String character = recognisedCharacter;
+                    recognisedCharacter = null;
+                    characterListener.setCharacter(character);
+                }
+            } catch (final Throwable t) {
+                logger.log(Level.SEVERE, t.getMessage(), t);
+            }
+            if (event != null && event.shouldCommit()) {
+                event.engine = dispatchEngine.name();
+                event.length = originalText.length();
+                event.matched = Long.bitCount(matched);
+                event.commit();
+            }
+            if (measure) {
+                stats.output().record(matched != 0, stats.now() - now, stats.allocatedBytes() - allocated);
+            }
+        }
+    }
+
+    /**
+     * Hands the line to the enabled output processors
+     *
+     * @param line
+     * @param enabled bit mask of enabled processors
+     * @param measure true to count the lines of the processors
+     * @param sample  true to time the processors as well
+     * @return bit mask of processors which matched the line
+     */
+    private long dispatch(final String line, final long enabled, final boolean measure, final boolean sample) {
+        long matched = 0;
+        if (measure) {
+            // Counted before any processor runs, so alike for every engine
+            for (long offered = enabled; offered != 0; offered &= offered - 1) {
+                outputCounters[Long.numberOfTrailingZeros(offered)].offer();
+            }
+        }
+        switch (dispatchEngine) {
+        case SEQUENTIAL:
+            for (int i = 0; i < outputProcessors.length; i++) {
+                if ((enabled & (1L << i)) != 0 && receive(i, line, measure, sample)) {
+                    matched |= 1L << i;
+                }
+            }
+            break;
+        case COMBINED:
+            // The processors are matched in one go, so are measured together
+            final long start = sample ? stats.now() : 0;
+            final long allocated = sample ? stats.allocatedBytes() : 0;
+            final int i = combinedMatcher.dispatch(line, enabled);
+            if (i >= 0) {
+                matched = (1L << i) & enabled;
+            }
+            if (sample) {
+                combinedCounters.record(matched != 0, stats.now() - start, stats.allocatedBytes() - allocated);
+            } else if (measure) {
+                combinedCounters.count(matched != 0);
+            }
+            if (measure && matched != 0) {
+                outputCounters[i].countReceived(true);
+            }
+            break;
+        default:
+            // Only processors whose anchors occur in the line may match it
+            long candidates = dispatchIndex.candidates(line) & enabled;
+            while (candidates != 0) {
+                final int candidate = Long.numberOfTrailingZeros(candidates);
+                if (receive(candidate, line, measure, sample)) {
+                    matched |= 1L << candidate;
+                }
+                candidates &= candidates - 1;
+            }
+        }
+        return matched;
+    }
+
+    private boolean receive(final int processor, final String line, final boolean measure, final boolean sample) {
+        if (sample) {
+            final long allocated = stats.allocatedBytes();
+            final long start = stats.now();
+            final boolean match = outputProcessors[processor].receive(line);
+            outputCounters[processor].recordReceived(match, stats.now() - start, stats.allocatedBytes() - allocated);
+            return match;
+        }
+        final boolean match = outputProcessors[processor].receive(line);
+        if (measure) {
+            outputCounters[processor].countReceived(match);
+        }
+        return match;
+    }
+
+    private boolean receive(final AbstractCommandProcessor processor, final ProcessingStats.Counters counters,
+            final String input, final boolean measure) {
+        if (!measure) {
+            return processor.receive(input);
+        }
+        final long allocated = stats.allocatedBytes();
+        final long start = stats.now();
+        final boolean consumed = processor.receive(input);
+        counters.record(consumed, stats.now() - start, stats.allocatedBytes() - allocated);
+        return consumed;
+    }
 }
@@ -2,6 +2,7 @@ package batmudgoalsplugin;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.FileHandler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -14,6 +15,8 @@ import com.mythicscape.batclient.interfaces.BatClientPluginUtil;
 import com.mythicscape.batclient.interfaces.ParsedResult;
 
 import batmudgoalsplugin.data.BatMUDGoalsPluginData;
+import batmudgoalsplugin.data.CostLibrary;
+import batmudgoalsplugin.data.DataFormat;
 
 /**
  * Plugin for BatClient. Player can set a goal of improving a skill in her
@@ -23,8 +26,33 @@ import batmudgoalsplugin.data.BatMUDGoalsPluginData;
 public class BatMUDGoalsPlugin extends BatClientPlugin
         implements BatClientPluginCommandTrigger, BatClientPluginTrigger, BatClientPluginUtil {
 
+    /** System property which turns on processing of output on its own thread */
+    private static final String ASYNC_PROPERTY = "batmudgoalsplugin.async";
+    private static final int ASYNC_QUEUE_CAPACITY = 4096;
+    /** System property selecting the format of the stored data, 'binary' or 'text' */
+    private static final String FORMAT_PROPERTY = "batmudgoalsplugin.format";
+    /** Skill costs shared by all the characters */
+    private static final String COST_LIBRARY_FILE_NAME = "BatMUDGoalsCosts.lib";
+    /** Number of characters whose data is kept in memory */
+    private static final int RESIDENT_PROFILES = 4;
+    private static final long SNAPSHOT_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    /** Snapshot is taken once changed data has been left alone this long */
+    private static final long SNAPSHOT_IDLE_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final long SNAPSHOT_POLL_MILLIS = TimeUnit.SECONDS.toMillis(5);
+    private static final long SNAPSHOT_SHUTDOWN_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    /** Log files in the system temporary directory, the current one is 0 */
+    private static final String LOG_FILE_PATTERN = "%t/batmudgoalsplugin%g.log";
+    private static final int LOG_FILE_LIMIT_BYTES = 1024 * 1024;
+    private static final int LOG_FILE_COUNT = 3;
+    private static final int LOG_QUEUE_CAPACITY = 1024;
+    /** Repeats of an exception logged within this time are only counted */
+    private static final long LOG_REPEAT_WINDOW_NANOS = TimeUnit.MINUTES.toNanos(1);
+
     private final Logger logger;
-    private BatMUDGoalsPluginData data;
+    private final AsyncLogHandler logHandler;
+    private ProfileManager profiles;
+    private CostLibrary costLibrary;
+    private SnapshotScheduler snapshotScheduler;
     private final ClientGUIModel clientGUIModel;
 
     private BatMUDGoalsController model;
@@ -37,9 +65,10 @@ public class BatMUDGoalsPlugin extends BatClientPlugin
      */
     public BatMUDGoalsPlugin() throws SecurityException, IOException {
         logger = Logger.getLogger(getClass().toString());
-        FileHandler handler = new FileHandler("%t/batmudgoalsplugin.log");
+        FileHandler handler = new FileHandler(LOG_FILE_PATTERN, LOG_FILE_LIMIT_BYTES, LOG_FILE_COUNT, true);
         handler.setFormatter(new SimpleFormatter());
-        logger.addHandler(handler);
+        logHandler = new AsyncLogHandler(handler, LOG_QUEUE_CAPACITY, LOG_REPEAT_WINDOW_NANOS, System::nanoTime);
+        logger.addHandler(logHandler);
         clientGUIModel = new ClientGUIModel(this);
     }
 
@@ -78,8 +107,19 @@ public class BatMUDGoalsPlugin extends BatClientPlugin
     public void loadPlugin() {
         try {
             logger.info("loading plugin");
-            data = BatMUDGoalsPluginData.fromFile(createPersistenceFile());
-            model = new BatMUDGoalsController(logger, data, clientGUIModel);
+            File directory = new File(clientGUIModel.baseDirectory() + "/conf/batmudgoalsplugin");
+            directory.mkdirs();
+            costLibrary = openCostLibrary(new File(directory, COST_LIBRARY_FILE_NAME));
+            profiles = new ProfileManager(logger, directory, dataFormat(), costLibrary, RESIDENT_PROFILES,
+                    this::compactJournal);
+            model = new BatMUDGoalsController(logger,
+                    profiles.switchTo(ProfileManager.DEFAULT_PROFILE).getData(), clientGUIModel);
+            model.setCharacterListener(this::switchCharacter);
+            snapshotScheduler = new SnapshotScheduler(logger, () -> profiles.current().getData().getVersion(),
+                    this::saveSnapshot, SNAPSHOT_INTERVAL_MILLIS, SNAPSHOT_IDLE_MILLIS, SNAPSHOT_POLL_MILLIS);
+            if (Boolean.getBoolean(ASYNC_PROPERTY)) {
+                model.startAsyncProcessing(ASYNC_QUEUE_CAPACITY);
+            }
         } catch (Throwable t) {
             logger.log(Level.SEVERE, t.getMessage(), t);
         }
@@ -93,27 +133,116 @@ public class BatMUDGoalsPlugin extends BatClientPlugin
     @Override
     public void clientExit() {
         try {
-            BatMUDGoalsPluginData.persistToFile(data, createPersistenceFile());
+            model.stopAsyncProcessing();
+            if (!snapshotScheduler.shutdown(SNAPSHOT_SHUTDOWN_MILLIS, TimeUnit.MILLISECONDS)) {
+                logger.warning("Snapshot was not saved in time");
+            }
+            profiles.close();
+            if (costLibrary != null) {
+                costLibrary.close();
+            }
         } catch (Throwable t) {
             logger.log(Level.SEVERE, t.getMessage(), t);
+        } finally {
+            logger.removeHandler(logHandler);
+            logHandler.close();
+        }
+    }
+
+    /**
+     * A cost library which cannot be read must not keep the plugin from
+     * loading, the costs are then kept with the data of each character
+     *
+     * @param file
+     * @return library, null if it cannot be opened
+     */
+    private CostLibrary openCostLibrary(File file) {
+        try {
+            return CostLibrary.open(file);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Cannot open cost library " + file + ", costs are kept with each character", e);
+            return null;
+        }
+    }
+
+    /**
+     * Called by the controller when a character logs in, while no output is
+     * being processed. A profile in memory is switched to at once. Otherwise
+     * the profile is loaded on the snapshot thread, so the output is not held
+     * up by reading and saving profiles; the output is held until then, so
+     * that none of it changes the data of the previous character.
+     *
+     * @param character
+     */
+    private void switchCharacter(String character) {
+        ProfileManager.Profile profile = profiles.switchToResident(character);
+        if (profile != null) {
+            model.switchData(profile.getData());
+            return;
+        }
+        model.holdOutput();
+        if (!snapshotScheduler.execute(() -> loadCharacter(character))) {
+            // Shutting down, the output is not held up for long
+            loadCharacter(character);
         }
     }
 
     /**
-     * If file exists opens the file, otherwise a new one is created
+     * Loads the profile of the character and switches to it, called on the
+     * snapshot thread while the output is held, or while shutting down
      *
-     * @return {@link File} used to store plugin's state
+     * @param character
+     */
+    private void loadCharacter(String character) {
+        try {
+            ProfileManager.Profile profile = profiles.get(character);
+            model.switchData(profile.getData(), () -> profiles.setCurrent(profile));
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.SEVERE, "Cannot load profile '" + character + "'", e);
+            model.releaseOutput();
+            return;
+        }
+        profiles.evict();
+    }
+
+    /**
+     * Saves a copy of the data of the character in use, called on the snapshot
+     * thread. The copy is taken between two processed lines, and the journal is
+     * marked for rotation at the same point, so that the records rotated out
+     * are exactly the ones in the copy. Only the copy and the mark wait for the
+     * output; the journal is rotated and the copy is written while output keeps
+     * being processed.
+     *
+     * @return version of the data saved
      * @throws IOException
      */
-    private File createPersistenceFile() throws IOException {
-        logger.info("Locating persistence file");
-        File file = new File(clientGUIModel.baseDirectory() + "/conf/batmudgoalsplugin/BatMUDGoalsInfo.data");
-        if (!file.exists()) {
-            logger.info("Creating new file");
-            File dir = file.getParentFile();
-            dir.mkdirs();
-            file.createNewFile();
+    private long saveSnapshot() throws IOException {
+        ProfileManager.Profile[] profile = new ProfileManager.Profile[1];
+        BatMUDGoalsPluginData snapshot;
+        try {
+            snapshot = model.copyData(() -> {
+                profile[0] = profiles.current();
+                profile[0].startJournalRotation();
+            });
+        } finally {
+            if (profile[0] != null) {
+                profile[0].finishJournalRotation();
+            }
         }
-        return file;
+        profile[0].saveSnapshot(snapshot);
+        return snapshot.getVersion();
+    }
+
+    private void compactJournal() {
+        // Called on every change until the snapshot rotates the journal,
+        // requests are merged
+        snapshotScheduler.requestSnapshot();
+    }
+
+    /**
+     * @return format selected with the system property, binary by default
+     */
+    private DataFormat dataFormat() {
+        return "text".equalsIgnoreCase(System.getProperty(FORMAT_PROPERTY)) ? DataFormat.TEXT : DataFormat.BINARY;
     }
 }
@@ -0,0 +1,24 @@
+package batmudgoalsplugin;
+
+import java.util.Locale;
+import java.util.regex.MatchResult;
+
+/**
+ * Recognises the character logged in from the greeting of the game, e.g.
+ * <code>Welcome back, Jogo.</code> The name is passed on in lower case.
+ */
+class CharacterNameOutputProcessor extends AbstractOutputProcessor {
+
+    private final ICharacterNameListener listener;
+
+    public CharacterNameOutputProcessor(ICharacterNameListener listener) {
+        super("Welcome (?:back|to BatMUD),?\\s+(\\w+)[.!]?\\s*",
+                "Welcome");
+        this.listener = listener;
+    }
+
+    @Override
+    protected void process(MatchResult m) {
+        listener.setCharacter(m.group(1).toLowerCase(Locale.ROOT));
+    }
+}
@@ -1,9 +1,17 @@
 package batmudgoalsplugin;
 
+import java.util.List;
+
+import com.mythicscape.batclient.interfaces.BatWindow;
 import com.mythicscape.batclient.interfaces.ClientGUI;
 
+import batmudgoalsplugin.jfr.GuiPrintEvent;
+
 public class ClientGUIModel {
 
+    private static final String WINDOW = "generic";
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
     private ClientGUI gui;
     private final BatMUDGoalsPlugin plugin;
 
@@ -25,13 +33,60 @@ public class ClientGUIModel {
         return getGui().getBaseDirectory();
     }
 
+    /**
+     * Creates a window of the client, call on the event dispatch thread
+     *
+     * @param title
+     * @param x
+     * @param y
+     * @param width
+     * @param height
+     * @return window, not shown yet
+     */
+    protected BatWindow createWindow(String title, int x, int y, int width, int height) {
+        return getGui().createBatWindow(title, x, y, width, height);
+    }
+
     /**
      * Prints message to the batclient text input area
      * 
      * @param message
      */
     protected void printMessage(String message) {
-        getGui().printText("generic", String.format("%s%n", message));
+        printText(message + LINE_SEPARATOR);
+    }
+
+    /**
+     * Prints messages to the batclient text input area, each on a line of its
+     * own, with a single insertion to the text area. Output of more than one
+     * line should be printed with this, as every insertion is laid out and
+     * painted by itself.
+     *
+     * @param messages
+     */
+    protected void printMessages(List<String> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        int length = 0;
+        for (String message : messages) {
+            length += message.length() + LINE_SEPARATOR.length();
+        }
+        StringBuilder text = new StringBuilder(length);
+        for (String message : messages) {
+            text.append(message).append(LINE_SEPARATOR);
+        }
+        printText(text.toString());
+    }
+
+    private void printText(String text) {
+        GuiPrintEvent event = GuiPrintEvent.start();
+        getGui().printText(WINDOW, text);
+        if (event != null && event.shouldCommit()) {
+            event.window = WINDOW;
+            event.length = text.length();
+            event.commit();
+        }
     }
 
 }
@@ -0,0 +1,187 @@
+package batmudgoalsplugin;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.MatchResult;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Matches a line against the regular expressions of all output processors in
+ * one pass. The expressions are compiled into a single alternation, each
+ * processor's expression wrapped in a capturing group of its own, so the group
+ * which took part in the match tells which processor matched. The processor
+ * then receives the capture groups of that single match.
+ * <p>
+ * java.util.regex has no DFA mode, so this is one backtracking pass over the
+ * alternation rather than a true DFA. The alternation stops at the first
+ * processor that matches, which assumes that no line is matched by two
+ * processors. Only the processors enabled for the line are part of it: an
+ * alternation is compiled for each combination of enabled processors when it
+ * is first needed, so the expressions of processors scoped to a session which
+ * is not active cost nothing. There are only as many combinations as there
+ * are combinations of active sessions.
+ * <p>
+ * Processors which look for matches inside the line, see
+ * {@link AbstractOutputProcessor#matchesWholeLine()}, are left out of the
+ * alternation: wrapped to match the whole line, their expressions would be
+ * retried at every position of every line. They receive the lines the
+ * alternation does not match and find their matches on their own.
+ */
+final class CombinedOutputMatcher {
+
+    /** Alternation of the expressions of some of the processors */
+    private static final class Alternation {
+        private final long processors;
+        /** Group of each processor in the alternation, -1 if not in it */
+        private final int[] branchGroups;
+        private final int[] groupCounts;
+        private final Matcher matcher;
+        private final GroupOffsetMatchResult result;
+
+        Alternation(AbstractOutputProcessor[] all, long processors) {
+            this.processors = processors;
+            this.branchGroups = new int[all.length];
+            this.groupCounts = new int[all.length];
+            StringBuilder regexp = new StringBuilder();
+            int group = 1;
+            for (int i = 0; i < all.length; i++) {
+                branchGroups[i] = -1;
+                if ((processors & (1L << i)) == 0) {
+                    continue;
+                }
+                if (regexp.length() > 0) {
+                    regexp.append('|');
+                }
+                regexp.append('(').append(all[i].getPattern().pattern()).append(')');
+                branchGroups[i] = group;
+                groupCounts[i] = all[i].getPattern().matcher("").groupCount();
+                group += 1 + groupCounts[i];
+            }
+            // An empty alternation would match the empty line
+            this.matcher = Pattern.compile(regexp.length() == 0 ? "(?!)" : regexp.toString(),
+                    Pattern.CASE_INSENSITIVE).matcher("");
+            this.result = new GroupOffsetMatchResult(matcher);
+        }
+    }
+
+    private final AbstractOutputProcessor[] processors;
+    /** Processors which match whole lines */
+    private final long wholeLine;
+    /** Indexes of the processors left out of the alternations */
+    private final int[] finders;
+    /** Alternations compiled so far, few enough to search one by one */
+    private Alternation[] alternations = new Alternation[0];
+
+    /**
+     * @param processors in dispatch order
+     */
+    CombinedOutputMatcher(List<? extends AbstractOutputProcessor> processors) {
+        this.processors = processors.toArray(new AbstractOutputProcessor[0]);
+        long wholeLine = 0;
+        int finderCount = 0;
+        int[] finders = new int[this.processors.length];
+        for (int i = 0; i < this.processors.length; i++) {
+            if (this.processors[i].matchesWholeLine()) {
+                wholeLine |= 1L << i;
+            } else {
+                finders[finderCount++] = i;
+            }
+        }
+        this.wholeLine = wholeLine;
+        this.finders = Arrays.copyOf(finders, finderCount);
+    }
+
+    /**
+     * Matches the line once and lets the matching processor, if any, process it.
+     *
+     * @param line
+     * @param enabled bit mask of processors allowed to process the line
+     * @return index of the matching processor or -1 if none matched
+     */
+    int dispatch(String line, long enabled) {
+        Alternation alternation = alternation(enabled & wholeLine);
+        if (alternation.matcher.reset(line).matches()) {
+            for (int i = 0; i < processors.length; i++) {
+                int group = alternation.branchGroups[i];
+                if (group >= 0 && alternation.matcher.start(group) >= 0) {
+                    processors[i].process(line, alternation.result.at(group, alternation.groupCounts[i]));
+                    return i;
+                }
+            }
+        }
+        for (int i : finders) {
+            if ((enabled & (1L << i)) != 0 && processors[i].receive(line)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private Alternation alternation(long enabled) {
+        for (Alternation alternation : alternations) {
+            if (alternation.processors == enabled) {
+                return alternation;
+            }
+        }
+        Alternation alternation = new Alternation(processors, enabled);
+        alternations = Arrays.copyOf(alternations, alternations.length + 1);
+        alternations[alternations.length - 1] = alternation;
+        return alternation;
+    }
+
+    /**
+     * View of the combined match which numbers groups as the processor's own
+     * regular expression does
+     */
+    private static final class GroupOffsetMatchResult implements MatchResult {
+        private final Matcher matcher;
+        private int offset;
+        private int groupCount;
+
+        GroupOffsetMatchResult(Matcher matcher) {
+            this.matcher = matcher;
+        }
+
+        GroupOffsetMatchResult at(int branchGroup, int groupCount) {
+            this.offset = branchGroup;
+            this.groupCount = groupCount;
+            return this;
+        }
+
+        @Override
+        public int start() {
+            return matcher.start(offset);
+        }
+
+        @Override
+        public int start(int group) {
+            return matcher.start(offset + group);
+        }
+
+        @Override
+        public int end() {
+            return matcher.end(offset);
+        }
+
+        @Override
+        public int end(int group) {
+            return matcher.end(offset + group);
+        }
+
+        @Override
+        public String group() {
+            return matcher.group(offset);
+        }
+
+        @Override
+        public String group(int group) {
+            return matcher.group(offset + group);
+        }
+
+        @Override
+        public int groupCount() {
+            return groupCount;
+        }
+    }
+}
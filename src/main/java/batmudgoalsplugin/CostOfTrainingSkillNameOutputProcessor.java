@@ -1,6 +1,6 @@
 package batmudgoalsplugin;
 
-import java.util.regex.Matcher;
+import java.util.regex.MatchResult;
 
 /**
  * Processes output from 'cost train <skill>' command. Stores the skill name
@@ -22,13 +22,14 @@ class CostOfTrainingSkillNameOutputProcessor extends AbstractOutputProcessor {
     public CostOfTrainingSkillNameOutputProcessor(
             PercentCostOutputProcessor op) {
         super(
-                "\\|\\s+Cost\\s+of\\s+(?:training|studying)\\s+([^\\|]+)\\s+\\|\\s*");
+                "\\|\\s+Cost\\s+of\\s+(?:training|studying)\\s+([^\\|]+)\\s+\\|\\s*",
+                "|", "Cost");
         this.op = op;
     }
 
     @Override
-    protected void process(Matcher m) {
-        String skill = m.group(1).toLowerCase().trim();
+    protected void process(MatchResult m) {
+        String skill = normalizeSkillName(m, 1);
         op.setSkill(skill);
     }
 }
@@ -1,12 +1,14 @@
 package batmudgoalsplugin;
 
 import java.util.Collection;
-import java.util.Set;
-import java.util.regex.Matcher;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Supplier;
+import java.util.regex.MatchResult;
 import java.util.stream.Collectors;
 
 import batmudgoalsplugin.data.BatMUDGoalsPluginData;
-import batmudgoalsplugin.data.SkillMaxInfo;
 
 /**
  * Processes output from 'exp' command.
@@ -18,12 +20,90 @@ import batmudgoalsplugin.data.SkillMaxInfo;
  */
 class ExpCommandOutputProcessor extends AbstractOutputProcessor {
     private final ClientGUIModel guiModel;
+    private final Supplier<BatMUDGoalsPluginData> dataSource;
+    /** Data the goal state and the exp belong to */
     private BatMUDGoalsPluginData data;
+    private GoalState goalState;
+    /** Exp of the player in the last 'exp' */
+    private int exp = GoalProgress.UNKNOWN;
+    /** Grows when the exp changes, read without the lock by the goal window */
+    private volatile long expChanges;
+    private long cacheHits;
+    private long cacheMisses;
+
+    /**
+     * Goal evaluated against one version of the data. Either a message which
+     * does not depend on the exp of the player, or the messages to choose from by
+     * comparing the exp to the needed exp. The progress is the same without the
+     * exp.
+     */
+    private static final class GoalState {
+        final long version;
+        final String message;
+        final int neededExp;
+        final String needMorePrefix;
+        final String enoughMessage;
+        final GoalProgress progress;
+
+        GoalState(long version, String message, GoalProgress progress) {
+            this(version, message, 0, null, null, progress);
+        }
+
+        GoalState(long version, int neededExp, String needMorePrefix, String enoughMessage,
+                GoalProgress progress) {
+            this(version, null, neededExp, needMorePrefix, enoughMessage, progress);
+        }
+
+        private GoalState(long version, String message, int neededExp, String needMorePrefix,
+                String enoughMessage, GoalProgress progress) {
+            this.version = version;
+            this.message = message;
+            this.neededExp = neededExp;
+            this.needMorePrefix = needMorePrefix;
+            this.enoughMessage = enoughMessage;
+            this.progress = progress;
+        }
+    }
 
     public ExpCommandOutputProcessor(ClientGUIModel guiModel, BatMUDGoalsPluginData data) {
-        super("Exp: (\\d+) Money: (\\d+)\\.?(\\d*) Bank: (\\d+)\\.?(\\d*) Exp pool: (\\d+)\\.?(\\d*)\\s*");
+        this(guiModel, () -> data);
+    }
+
+    /**
+     * @param guiModel
+     * @param data     of the character logged in, looked up on every line
+     */
+    public ExpCommandOutputProcessor(ClientGUIModel guiModel, Supplier<BatMUDGoalsPluginData> data) {
+        super("Exp: (\\d+) Money: (\\d+)\\.?(\\d*) Bank: (\\d+)\\.?(\\d*) Exp pool: (\\d+)\\.?(\\d*)\\s*",
+                "Exp: ", " Money: ");
         this.guiModel = guiModel;
-        this.data = data;
+        this.dataSource = data;
+    }
+
+    /**
+     * Forgets the goal state and the exp of another character
+     */
+    private void useCurrentData() {
+        BatMUDGoalsPluginData current = dataSource.get();
+        if (current != data) {
+            data = current;
+            goalState = null;
+            setExp(GoalProgress.UNKNOWN);
+        }
+    }
+
+    private void setExp(int exp) {
+        if (exp != this.exp) {
+            this.exp = exp;
+            expChanges++;
+        }
+    }
+
+    /**
+     * @return number of times the exp has changed, may be called on any thread
+     */
+    long getExpChanges() {
+        return expChanges;
     }
 
     private String concatGuildNames(Collection<String> guilds) {
@@ -31,70 +111,133 @@ class ExpCommandOutputProcessor extends AbstractOutputProcessor {
     }
 
     @Override
-    protected void process(Matcher m) {
+    protected void process(MatchResult m) {
+        useCurrentData();
+        setExp(parseInt(m, 1));
         if (data.isGoalSet()) {
-            if (data.isGoalSkillMaxed()) {
-                guiModel.printMessage(String.format("Goal %s: full", data.getGoalSkill()));
+            GoalState state = goalState();
+            if (state.message != null) {
+                guiModel.printMessage(state.message);
             } else {
-                Collection<SkillMaxInfo> skillmaxinfo = selectGreaterThanGoalPercent(data.getSkillMaxes(),
-                        data.getGoalPercent());
-
-                if (skillmaxinfo.isEmpty()) {
-                    guiModel.printMessage(String.format("None of your guilds offer more %s", data.getGoalSkill()));
+                if (exp < state.neededExp) {
+                    guiModel.printMessage(state.needMorePrefix + (state.neededExp - exp));
                 } else {
-                    Collection<SkillMaxInfo> available = selectAvailableOnThisLevel(skillmaxinfo);
-                    if (available.isEmpty()) {
-                        guiModel.printMessage(String.format("Goal %s: needs level", data.getGoalSkill()));
-                    } else {
-                        int neededExp = data.getImproveGoalSkillCost();
-                        int currentExp = Integer.parseInt(m.group(1));
-                        if (currentExp < neededExp) {
-                            guiModel.printMessage(
-                                    String.format("Goal %s: %d You need: %d", data.getGoalSkill(), neededExp,
-                                            neededExp - currentExp));
-                        } else {
-                            guiModel.printMessage(
-                                    String.format("Goal %s: %d You have enough to advance in: %s", data.getGoalSkill(),
-                                            neededExp, concatGuildNames(selectGuildNames(available))));
-                        }
-                    }
+                    guiModel.printMessage(state.enoughMessage);
                 }
+            }
+        }
+    }
+
+    /**
+     * @return state of the goal, evaluated again only if the data has changed
+     */
+    private GoalState goalState() {
+        long version = data.getVersion();
+        if (goalState != null && goalState.version == version) {
+            cacheHits++;
+            return goalState;
+        }
+        cacheMisses++;
+        goalState = evaluateGoal(version);
+        return goalState;
+    }
+
+    private GoalState evaluateGoal(long version) {
+        String skill = data.getGoalSkill();
+        if (data.isGoalSkillMaxed()) {
+            return new GoalState(version, String.format("Goal %s: full", skill),
+                    progress(skill, 100, GoalProgress.UNKNOWN, Collections.emptyList(), "Full"));
+        }
+        int percent = data.getGoalPercent() - 1;
+        Collection<String> offering = selectGuildsOffering(data.getGoalPercent());
+
+        if (offering.isEmpty()) {
+            return new GoalState(version, String.format("None of your guilds offer more %s", skill),
+                    progress(skill, percent, GoalProgress.UNKNOWN, Collections.emptyList(),
+                            "None of your guilds offer more"));
+        }
+        Collection<String> available = selectAvailableOnThisLevel(offering, data.getGoalPercent());
+        if (available.isEmpty()) {
+            return new GoalState(version, String.format("Goal %s: needs level", skill),
+                    progress(skill, percent, GoalProgress.UNKNOWN, Collections.emptyList(), "Needs level"));
+        }
+        int neededExp = data.getImproveGoalSkillCost();
+        return new GoalState(version, neededExp,
+                String.format("Goal %s: %d You need: ", skill, neededExp),
+                String.format("Goal %s: %d You have enough to advance in: %s", skill, neededExp,
+                        concatGuildNames(available)),
+                progress(skill, percent, neededExp, available, null));
+    }
+
+    private static GoalProgress progress(String skill, int percent, int neededExp, Collection<String> guilds,
+            String status) {
+        List<String> sorted = guilds.stream().map(String::toLowerCase).sorted().collect(Collectors.toList());
+        return new GoalProgress(skill, percent, neededExp, GoalProgress.UNKNOWN, sorted, status);
+    }
 
+    /**
+     * Evaluates the goal like 'exp' does, reusing the evaluation of 'exp' if
+     * the data has not changed since, without counting it as a hit of the
+     * cache
+     *
+     * @return progress towards the goal with the exp of the last 'exp'
+     */
+    GoalProgress getGoalProgress() {
+        useCurrentData();
+        if (!data.isGoalSet()) {
+            return GoalProgress.NO_GOAL.withExp(exp);
+        }
+        long version = data.getVersion();
+        try {
+            if (goalState == null || goalState.version != version) {
+                goalState = evaluateGoal(version);
             }
+            return goalState.progress.withExp(exp);
+        } catch (NoSuchElementException e) {
+            // Percent or costs of the skill not read yet
+            return new GoalProgress(data.getGoalSkill(), GoalProgress.UNKNOWN, GoalProgress.UNKNOWN, exp,
+                    Collections.emptyList(), e.getMessage());
         }
     }
 
-    private Collection<String> selectGuildNames(Collection<SkillMaxInfo> available) {
-        return available.stream()
-                .map(s -> s.guild)
-                .collect(Collectors.toSet());
+    /**
+     * @return number of 'exp' commands answered from the evaluated goal state
+     */
+    long getCacheHits() {
+        return cacheHits;
+    }
+
+    /**
+     * @return number of 'exp' commands for which the goal was evaluated
+     */
+    long getCacheMisses() {
+        return cacheMisses;
     }
 
     /**
-     * Select SkillMaxInfo where level is lower than current level of player in that
-     * guild
+     * Select guilds where the player's current level offers goal skill up to
+     * goalPercent
      * 
-     * @param skillmaxinfo
+     * @param guilds
+     * @param goalPercent
      * @return
      */
-    private Collection<SkillMaxInfo> selectAvailableOnThisLevel(Collection<SkillMaxInfo> skillmaxinfo) {
-        return skillmaxinfo.stream()
-                .filter(s -> s.level <= data.getGuildLevel(s.guild))
+    private Collection<String> selectAvailableOnThisLevel(Collection<String> guilds, int goalPercent) {
+        return guilds.stream()
+                .filter(guild -> data.getLevelForSkillMax(guild, data.getGoalSkill(), goalPercent) <= data
+                        .getGuildLevel(guild))
                 .collect(Collectors.toList());
     }
 
     /**
-     * Select SkillMaxInfo instances from skillMaxes where skill = goal skill and
-     * skill max is greater or equal than goalPercent
+     * Select guilds which offer goal skill up to goalPercent on some level
      * 
-     * @param skillMaxes
      * @param goalPercent
      * @return
      */
-    private Collection<SkillMaxInfo> selectGreaterThanGoalPercent(Set<SkillMaxInfo> skillMaxes, int goalPercent) {
-        return skillMaxes.stream()
-                .filter(s -> data.isGoalSkill(s.skill))
-                .filter(s -> s.max >= goalPercent)
+    private Collection<String> selectGuildsOffering(int goalPercent) {
+        return data.getGuildsTeaching(data.getGoalSkill()).stream()
+                .filter(guild -> data.getLevelForSkillMax(guild, data.getGoalSkill(), goalPercent) >= 0)
                 .collect(Collectors.toList());
     }
 }
\ No newline at end of file
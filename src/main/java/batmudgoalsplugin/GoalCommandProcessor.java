@@ -1,5 +1,6 @@
 package batmudgoalsplugin;
 
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 
 import batmudgoalsplugin.data.BatMUDGoalsPluginData;
@@ -11,9 +12,17 @@ import batmudgoalsplugin.data.BatMUDGoalsPluginData;
 class GoalCommandProcessor extends AbstractCommandProcessor {
 
     private final ClientGUIModel guiModel;
-    private final BatMUDGoalsPluginData data;
+    private final Supplier<BatMUDGoalsPluginData> data;
 
     public GoalCommandProcessor(ClientGUIModel guiModel, BatMUDGoalsPluginData data) {
+        this(guiModel, data == null ? null : () -> data);
+    }
+
+    /**
+     * @param guiModel
+     * @param data     of the character logged in, looked up on every command
+     */
+    public GoalCommandProcessor(ClientGUIModel guiModel, Supplier<BatMUDGoalsPluginData> data) {
         super("goal\\s*(.+)\\s*");
         this.data = data;
         if (guiModel == null) {
@@ -30,6 +39,7 @@ class GoalCommandProcessor extends AbstractCommandProcessor {
         // If a skill is given as goal parameter, normalize skill name and
         // set goal
         String skillName = normalizeSkillName(m.group(1));
+        BatMUDGoalsPluginData data = this.data.get();
         if (!data.isSkillInCostLibrary(skillName)) {
             guiModel.printMessage(String.format("%s not in library", skillName));
         } else {
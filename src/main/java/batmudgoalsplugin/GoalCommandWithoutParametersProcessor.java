@@ -1,7 +1,9 @@
 package batmudgoalsplugin;
 
 import java.util.Collection;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
+import java.util.stream.Collectors;
 
 import batmudgoalsplugin.data.BatMUDGoalsPluginData;
 
@@ -11,10 +13,19 @@ import batmudgoalsplugin.data.BatMUDGoalsPluginData;
  */
 class GoalCommandWithoutParametersProcessor extends AbstractCommandProcessor {
     private final ClientGUIModel guiModel;
-    private final BatMUDGoalsPluginData data;
+    private final Supplier<BatMUDGoalsPluginData> data;
 
     public GoalCommandWithoutParametersProcessor(ClientGUIModel guiModel,
             BatMUDGoalsPluginData data) {
+        this(guiModel, () -> data);
+    }
+
+    /**
+     * @param guiModel
+     * @param data     of the character logged in, looked up on every command
+     */
+    public GoalCommandWithoutParametersProcessor(ClientGUIModel guiModel,
+            Supplier<BatMUDGoalsPluginData> data) {
         super("\\s*goal\\s*");
         this.guiModel = guiModel;
         this.data = data;
@@ -22,14 +33,14 @@ class GoalCommandWithoutParametersProcessor extends AbstractCommandProcessor {
 
     @Override
     protected boolean process(Matcher m) {
-
+        BatMUDGoalsPluginData data = this.data.get();
         Collection<String> storedSkills = data.getStoredSkills();
         if (storedSkills.isEmpty()) {
             guiModel.printMessage("No data.");
         } else {
-            storedSkills
-                    .forEach(skillName -> guiModel.printMessage(String.format("%s%s", skillName,
-                            data.isGoalSkill(skillName) ? " (*)" : "")));
+            guiModel.printMessages(storedSkills.stream()
+                    .map(skillName -> data.isGoalSkill(skillName) ? skillName + " (*)" : skillName)
+                    .collect(Collectors.toList()));
 
         }
         return true;
@@ -0,0 +1,101 @@
+package batmudgoalsplugin;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Progress towards the goal skill, as shown in {@link GoalProgressWindow}.
+ * Taken between two processed lines, so it never changes afterwards.
+ */
+final class GoalProgress {
+
+    /** Value of the numbers which are not known */
+    static final int UNKNOWN = -1;
+    static final GoalProgress NO_GOAL = new GoalProgress(null, UNKNOWN, UNKNOWN, UNKNOWN,
+            Collections.emptyList(), "No goal");
+
+    private final String skill;
+    private final int percent;
+    private final int neededExp;
+    private final int exp;
+    private final List<String> guilds;
+    private final String status;
+
+    /**
+     * @param skill     goal skill, null if none
+     * @param percent   current percent of the skill
+     * @param neededExp exp needed for the next percent, {@link #UNKNOWN} if the
+     *                  skill cannot be trained now
+     * @param exp       exp of the player in the last 'exp'
+     * @param guilds    which can train the next percent now, sorted
+     * @param status    why the skill cannot be trained now, null if it can
+     */
+    GoalProgress(String skill, int percent, int neededExp, int exp, List<String> guilds, String status) {
+        this.skill = skill;
+        this.percent = percent;
+        this.neededExp = neededExp;
+        this.exp = exp;
+        this.guilds = Collections.unmodifiableList(guilds);
+        this.status = status;
+    }
+
+    /**
+     * @param exp of the player in the last 'exp'
+     * @return this progress with the exp
+     */
+    GoalProgress withExp(int exp) {
+        return exp == this.exp ? this : new GoalProgress(skill, percent, neededExp, exp, guilds, status);
+    }
+
+    String getSkill() {
+        return skill;
+    }
+
+    int getPercent() {
+        return percent;
+    }
+
+    int getNeededExp() {
+        return neededExp;
+    }
+
+    int getExp() {
+        return exp;
+    }
+
+    /**
+     * @return exp still needed for the next percent, 0 if the player has
+     *         enough, {@link #UNKNOWN} if not known
+     */
+    int getMissingExp() {
+        if (neededExp == UNKNOWN || exp == UNKNOWN) {
+            return UNKNOWN;
+        }
+        return Math.max(0, neededExp - exp);
+    }
+
+    List<String> getGuilds() {
+        return guilds;
+    }
+
+    String getStatus() {
+        return status;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(skill, percent, neededExp, exp, guilds, status);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof GoalProgress)) {
+            return false;
+        }
+        GoalProgress other = (GoalProgress) obj;
+        return percent == other.percent && neededExp == other.neededExp && exp == other.exp
+                && Objects.equals(skill, other.skill) && guilds.equals(other.guilds)
+                && Objects.equals(status, other.status);
+    }
+}
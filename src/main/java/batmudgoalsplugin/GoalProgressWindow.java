@@ -0,0 +1,186 @@
+package batmudgoalsplugin;
+
+import java.awt.GridLayout;
+import java.util.concurrent.ExecutionException;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+import javax.swing.event.InternalFrameAdapter;
+import javax.swing.event.InternalFrameEvent;
+
+import com.mythicscape.batclient.interfaces.BatWindow;
+
+/**
+ * Window of the client showing the progress towards the goal skill. The
+ * progress is not pushed to the window on every change: a Swing timer asks for
+ * it a few times a second and the labels are set only if it differs from what
+ * is shown. However fast the data changes, e.g. while skills improve by use in
+ * a fight, the window is laid out and painted at most once per tick.
+ * <p>
+ * The progress is taken on a worker thread, as it waits for the line being
+ * processed, and the event dispatch thread must not. A tick takes it only if
+ * its version, which is read without waiting, differs from the one shown.
+ * Every method must be called on the event dispatch thread.
+ */
+class GoalProgressWindow {
+
+    /** Time between looks at the progress, renders happen at most this often */
+    static final int REFRESH_MILLIS = 250;
+    private static final String TITLE = "Goal";
+    private static final String[] ROWS = { "Goal", "Percent", "Exp needed", "Exp missing", "Guilds" };
+
+    private final BatWindow window;
+    private final Supplier<GoalProgress> progress;
+    private final LongSupplier version;
+    private final JLabel[] values = new JLabel[ROWS.length];
+    private final Timer timer;
+    private GoalProgress shown;
+    /** Version of the progress shown, none before the first take */
+    private long shownVersion;
+    private boolean anyShown;
+    private long renders;
+    /** True while the progress is being taken, ticks in the meantime are skipped */
+    private boolean taking;
+    private boolean closed;
+
+    /**
+     * Creates the window and shows it
+     *
+     * @param guiModel      to create the window with
+     * @param progress      taken on a worker thread on ticks its version has
+     *                      changed
+     * @param version       of the progress, changes whenever it may have
+     * @param refreshMillis time between ticks
+     */
+    GoalProgressWindow(ClientGUIModel guiModel, Supplier<GoalProgress> progress, LongSupplier version,
+            int refreshMillis) {
+        this.progress = progress;
+        this.version = version;
+        JPanel panel = new JPanel(new GridLayout(ROWS.length, 2, 8, 2));
+        for (int i = 0; i < ROWS.length; i++) {
+            panel.add(new JLabel(ROWS[i]));
+            values[i] = new JLabel();
+            panel.add(values[i]);
+        }
+        window = guiModel.createWindow(TITLE, 10, 10, 320, 140);
+        window.newTab(TITLE, panel);
+        window.addInternalFrameListener(new InternalFrameAdapter() {
+            @Override
+            public void internalFrameClosed(InternalFrameEvent e) {
+                close();
+            }
+        });
+        timer = new Timer(refreshMillis, e -> refresh());
+        timer.setCoalesce(true);
+        window.setVisible(true);
+        refresh();
+        timer.start();
+    }
+
+    /**
+     * Shows the window if hidden, hides it if shown
+     */
+    void toggle() {
+        window.setVisible(!window.isVisible());
+        if (window.isVisible()) {
+            refresh();
+        }
+    }
+
+    /**
+     * Takes the progress on a worker thread and shows it if its version has
+     * changed, called on each tick
+     */
+    void refresh() {
+        if (closed || taking || !window.isVisible()) {
+            return;
+        }
+        // Read before the take, so a change during it is taken on the next tick
+        final long taken = version.getAsLong();
+        if (anyShown && taken == shownVersion) {
+            return;
+        }
+        taking = true;
+        new SwingWorker<GoalProgress, Void>() {
+            @Override
+            protected GoalProgress doInBackground() {
+                return progress.get();
+            }
+
+            @Override
+            protected void done() {
+                taking = false;
+                try {
+                    show(get());
+                    shownVersion = taken;
+                    anyShown = true;
+                } catch (InterruptedException | ExecutionException e) {
+                    // Shown on the next tick
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Renders the progress if it differs from the one shown
+     *
+     * @param current
+     */
+    void show(GoalProgress current) {
+        if (closed || current.equals(shown)) {
+            return;
+        }
+        render(current);
+        shown = current;
+        renders++;
+    }
+
+    private void render(GoalProgress progress) {
+        values[0].setText(progress.getSkill() == null ? "-" : progress.getSkill());
+        values[1].setText(number(progress.getPercent(), "%"));
+        values[2].setText(progress.getStatus() != null ? progress.getStatus() : number(progress.getNeededExp(), ""));
+        values[3].setText(number(progress.getMissingExp(), ""));
+        values[4].setText(progress.getGuilds().isEmpty() ? "-" : String.join(", ", progress.getGuilds()));
+    }
+
+    private static String number(int value, String unit) {
+        return value == GoalProgress.UNKNOWN ? "?" : value + unit;
+    }
+
+    /**
+     * Stops the timer and closes the window
+     */
+    void close() {
+        if (!closed) {
+            closed = true;
+            timer.stop();
+            window.close();
+        }
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * @return number of times the progress has been rendered
+     */
+    long getRenders() {
+        return renders;
+    }
+
+    /**
+     * @return texts of the values shown, in the order of the rows
+     */
+    String[] getValues() {
+        String[] texts = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            texts[i] = values[i].getText();
+        }
+        return texts;
+    }
+}
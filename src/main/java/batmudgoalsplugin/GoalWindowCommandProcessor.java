@@ -0,0 +1,26 @@
+package batmudgoalsplugin;
+
+import java.util.regex.Matcher;
+
+/**
+ * Catches 'goal window', which opens the window showing the progress towards
+ * the goal, or hides and shows it again once open
+ */
+class GoalWindowCommandProcessor extends AbstractCommandProcessor {
+
+    private final Runnable toggle;
+
+    /**
+     * @param toggle called for the command, on the thread of the command
+     */
+    public GoalWindowCommandProcessor(Runnable toggle) {
+        super("\\s*goal\\s+window\\s*");
+        this.toggle = toggle;
+    }
+
+    @Override
+    protected boolean process(Matcher m) {
+        toggle.run();
+        return true;
+    }
+}
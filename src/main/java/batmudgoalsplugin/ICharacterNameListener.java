@@ -0,0 +1,12 @@
+package batmudgoalsplugin;
+
+/**
+ * Implementing classes want to be notified that the character logged in has
+ * been recognised from the output
+ */
+@FunctionalInterface
+interface ICharacterNameListener {
+
+    public abstract void setCharacter(String character);
+
+}
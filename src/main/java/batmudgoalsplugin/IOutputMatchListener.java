@@ -0,0 +1,12 @@
+package batmudgoalsplugin;
+
+/**
+ * Implementing classes want to be notified of the output processors which
+ * processed a line, e.g. to count matches
+ */
+@FunctionalInterface
+interface IOutputMatchListener {
+
+    public abstract void matched(AbstractOutputProcessor processor, String line);
+
+}
@@ -0,0 +1,13 @@
+package batmudgoalsplugin;
+
+/**
+ * Implementing classes want to be notified that an
+ * {@link AbstractCommandProcessor} has caught a command which starts a
+ * {@link ParsingSession}
+ */
+@FunctionalInterface
+interface IParsingSessionListener {
+
+    public abstract void startSession(ParsingSession session);
+
+}
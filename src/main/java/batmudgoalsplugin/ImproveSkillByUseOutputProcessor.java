@@ -1,21 +1,31 @@
 package batmudgoalsplugin;
 
-import java.util.regex.Matcher;
+import java.util.function.Supplier;
+import java.util.regex.MatchResult;
 
 import batmudgoalsplugin.data.BatMUDGoalsPluginData;
 
 public class ImproveSkillByUseOutputProcessor extends AbstractOutputProcessor {
 
-    private final BatMUDGoalsPluginData data;
+    private final Supplier<BatMUDGoalsPluginData> data;
 
     public ImproveSkillByUseOutputProcessor(BatMUDGoalsPluginData data) {
-        super("You feel like you just got slightly better in (.+)");
+        this(() -> data);
+    }
+
+    /**
+     * @param data of the character logged in, looked up on every line
+     */
+    public ImproveSkillByUseOutputProcessor(Supplier<BatMUDGoalsPluginData> data) {
+        super("You feel like you just got slightly better in (.+)",
+                "You feel like you just got slightly better in ");
         this.data = data;
     }
 
     @Override
-    protected void process(Matcher m) {
-        String skillName = normalizeSkillName(m.group(1));
+    protected void process(MatchResult m) {
+        String skillName = normalizeSkillName(m, 1);
+        BatMUDGoalsPluginData data = this.data.get();
         data.setSkillStatus(skillName,
                 data.getCurrentSkillStatus(skillName) + 1);
     }
@@ -1,6 +1,6 @@
 package batmudgoalsplugin;
 
-import java.util.regex.Matcher;
+import java.util.regex.MatchResult;
 
 /**
  * Processes output from guildname info command - e.g. 'barbarian info'. First
@@ -12,12 +12,13 @@ class InfoCommandFirstLevelProcessor extends AbstractOutputProcessor {
 
     public InfoCommandFirstLevelProcessor(
             InfoCommandSkillMaxOutputProcessor op) {
-        super("Abilities gained when joining:\\s*");
+        super("Abilities gained when joining:\\s*",
+                "Abilities gained when joining:");
         this.op = op;
     }
 
     @Override
-    protected void process(Matcher m) {
+    protected void process(MatchResult m) {
         op.setLevel(1);
     }
 }
\ No newline at end of file
@@ -1,6 +1,6 @@
 package batmudgoalsplugin;
 
-import java.util.regex.Matcher;
+import java.util.regex.MatchResult;
 
 /**
  * Processes output from guildname info command - e.g. 'ranger info'. Skill
@@ -12,12 +12,13 @@ class InfoCommandLevelNumberProcessor extends AbstractOutputProcessor {
 
     public InfoCommandLevelNumberProcessor(
             InfoCommandSkillMaxOutputProcessor op) {
-        super("\\s*Level\\s+(\\d+):\\s*");
+        super("\\s*Level\\s+(\\d+):\\s*",
+                "Level", ":");
         this.op = op;
     }
 
     @Override
-    protected void process(Matcher m) {
-        op.setLevel(Integer.parseInt(m.group(1)));
+    protected void process(MatchResult m) {
+        op.setLevel(parseInt(m, 1));
     }
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package batmudgoalsplugin;
 
-import java.util.regex.Matcher;
+import java.util.function.Supplier;
+import java.util.regex.MatchResult;
 
 import batmudgoalsplugin.data.BatMUDGoalsPluginData;
 
@@ -12,13 +13,21 @@ import batmudgoalsplugin.data.BatMUDGoalsPluginData;
 class InfoCommandSkillMaxOutputProcessor extends AbstractOutputProcessor
         implements IGuildNameListener {
 
-    private final BatMUDGoalsPluginData data;
+    private final Supplier<BatMUDGoalsPluginData> data;
     private int level;
     private String guild;
 
     public InfoCommandSkillMaxOutputProcessor(BatMUDGoalsPluginData data) {
+        this(() -> data);
+    }
+
+    /**
+     * @param data of the character logged in, looked up on every line
+     */
+    public InfoCommandSkillMaxOutputProcessor(Supplier<BatMUDGoalsPluginData> data) {
         super(
-                "\\s*May\\s+(?:train\\s+skill|study\\s+spell)\\s+(.+)\\s+to\\s+(\\d+)%\\s*");
+                "\\s*May\\s+(?:train\\s+skill|study\\s+spell)\\s+(.+)\\s+to\\s+(\\d+)%\\s*",
+                "May", "%");
         this.data = data;
     }
 
@@ -37,10 +46,10 @@ class InfoCommandSkillMaxOutputProcessor extends AbstractOutputProcessor
     }
 
     @Override
-    protected void process(Matcher m) {
-        String skillName = normalizeSkillName(m.group(1));
-        int skillMax = Integer.parseInt(m.group(2));
-        data.setSkillMaxInfo(guild, skillName, level,
+    protected void process(MatchResult m) {
+        String skillName = normalizeSkillName(m, 1);
+        int skillMax = parseInt(m, 2);
+        data.get().setSkillMaxInfo(guild, skillName, level,
                 skillMax);
     }
 }
\ No newline at end of file
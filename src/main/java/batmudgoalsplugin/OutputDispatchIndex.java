@@ -0,0 +1,136 @@
+package batmudgoalsplugin;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Prefilter for output processors. Collects the anchors of all the processors
+ * into a single Aho-Corasick automaton, so a line of output is scanned once to
+ * find out which processors could possibly match it. Processors whose anchors
+ * do not all occur in the line are never handed the line.
+ * <p>
+ * Matching is case insensitive for US-ASCII, like the processors' regular
+ * expressions. Anchors must be US-ASCII, any other character in the scanned
+ * line resets the automaton.
+ */
+final class OutputDispatchIndex {
+
+    private static final int ALPHABET = 128;
+
+    private final int[] transitions;
+    private final long[] foundAnchors;
+    private final long[] requiredAnchors;
+
+    /**
+     * @param processors at most 64 processors, in dispatch order
+     */
+    OutputDispatchIndex(List<? extends AbstractOutputProcessor> processors) {
+        if (processors.size() > Long.SIZE) {
+            throw new IllegalArgumentException("At most 64 output processors are supported");
+        }
+        List<String> literals = new ArrayList<>();
+        requiredAnchors = new long[processors.size()];
+        for (int i = 0; i < processors.size(); i++) {
+            for (String anchor : processors.get(i).getAnchors()) {
+                String literal = toLowerCase(anchor);
+                int id = literals.indexOf(literal);
+                if (id < 0) {
+                    id = literals.size();
+                    literals.add(literal);
+                }
+                requiredAnchors[i] |= 1L << id;
+            }
+        }
+        if (literals.size() > Long.SIZE) {
+            throw new IllegalArgumentException("At most 64 distinct anchors are supported");
+        }
+
+        int states = 1;
+        for (String literal : literals) {
+            states += literal.length();
+        }
+        int[] trie = new int[states * ALPHABET];
+        long[] output = new long[states];
+        int used = 1;
+        for (int id = 0; id < literals.size(); id++) {
+            int state = 0;
+            for (char c : literals.get(id).toCharArray()) {
+                int next = trie[state * ALPHABET + c];
+                if (next == 0) {
+                    next = used++;
+                    trie[state * ALPHABET + c] = next;
+                }
+                state = next;
+            }
+            output[state] |= 1L << id;
+        }
+
+        // Breadth first construction of the failure links, turning the trie into
+        // a complete transition table
+        int[] failure = new int[used];
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < ALPHABET; c++) {
+            if (trie[c] != 0) {
+                queue.add(trie[c]);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            output[state] |= output[failure[state]];
+            for (int c = 0; c < ALPHABET; c++) {
+                int next = trie[state * ALPHABET + c];
+                if (next != 0) {
+                    failure[next] = trie[failure[state] * ALPHABET + c];
+                    queue.add(next);
+                } else {
+                    trie[state * ALPHABET + c] = trie[failure[state] * ALPHABET + c];
+                }
+            }
+        }
+        transitions = Arrays.copyOf(trie, used * ALPHABET);
+        foundAnchors = Arrays.copyOf(output, used);
+    }
+
+    private static String toLowerCase(String anchor) {
+        char[] chars = anchor.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            if (chars[i] >= ALPHABET) {
+                throw new IllegalArgumentException("Anchor is not US-ASCII: " + anchor);
+            }
+            chars[i] = lowerCase(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    private static char lowerCase(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    /**
+     * Scans the line once
+     *
+     * @param line
+     * @return bit mask of processors, bit n set if processor n may match the
+     *         line
+     */
+    long candidates(CharSequence line) {
+        long found = 0;
+        int state = 0;
+        for (int i = 0, length = line.length(); i < length; i++) {
+            char c = line.charAt(i);
+            state = c < ALPHABET ? transitions[state * ALPHABET + lowerCase(c)] : 0;
+            found |= foundAnchors[state];
+        }
+
+        long candidates = 0;
+        for (int i = 0; i < requiredAnchors.length; i++) {
+            if ((found & requiredAnchors[i]) == requiredAnchors[i]) {
+                candidates |= 1L << i;
+            }
+        }
+        return candidates;
+    }
+}
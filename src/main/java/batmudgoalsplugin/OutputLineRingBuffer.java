@@ -0,0 +1,65 @@
+package batmudgoalsplugin;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded lock-free queue of output lines for exactly one producer thread and
+ * one consumer thread.
+ */
+final class OutputLineRingBuffer {
+
+    private final String[] lines;
+    private final int mask;
+    /** Index of the next line to poll, written by the consumer only */
+    private final AtomicLong head = new AtomicLong();
+    /** Index of the next free slot, written by the producer only */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * @param capacity power of two
+     */
+    OutputLineRingBuffer(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.lines = new String[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Called by the producer thread only.
+     *
+     * @param line
+     * @return false if the buffer is full
+     */
+    boolean offer(String line) {
+        long t = tail.get();
+        if (t - head.get() == lines.length) {
+            return false;
+        }
+        lines[(int) t & mask] = line;
+        tail.set(t + 1);
+        return true;
+    }
+
+    /**
+     * Called by the consumer thread only.
+     *
+     * @return the oldest line or null if the buffer is empty
+     */
+    String poll() {
+        long h = head.get();
+        if (h == tail.get()) {
+            return null;
+        }
+        int index = (int) h & mask;
+        String line = lines[index];
+        lines[index] = null;
+        head.lazySet(h + 1);
+        return line;
+    }
+
+    boolean isEmpty() {
+        return head.get() == tail.get();
+    }
+}
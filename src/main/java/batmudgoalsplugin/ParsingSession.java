@@ -0,0 +1,36 @@
+package batmudgoalsplugin;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Output blocks which only appear after the player has issued a certain
+ * command. Output processors scoped to a session only receive output while the
+ * session is active.
+ */
+enum ParsingSession {
+    /**
+     * Output of guildname info command, e.g. 'ranger info'. It has no end
+     * marker, so the session ends with the next command.
+     */
+    GUILD_INFO(null),
+    /** Output of 'cost train <skill>' and 'cost study <spell>' commands */
+    COST("\\s*`.*\\s*"),
+    /** Output of 'train' and 'study' commands */
+    TRAIN("\\s*`.*\\s*");
+
+    private final Pattern terminator;
+
+    private ParsingSession(String terminator) {
+        this.terminator = terminator == null ? null : Pattern.compile(terminator);
+    }
+
+    /**
+     * @return matcher of the lines ending the output block of the session, to
+     *         be reset for each line, or null if the session ends with the next
+     *         command
+     */
+    Matcher newTerminatorMatcher() {
+        return terminator == null ? null : terminator.matcher("");
+    }
+}
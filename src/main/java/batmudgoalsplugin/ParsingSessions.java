@@ -0,0 +1,143 @@
+package batmudgoalsplugin;
+
+import java.util.List;
+import java.util.regex.Matcher;
+
+/**
+ * Keeps track of active {@link ParsingSession}s and of the output processors
+ * they enable. Processors not scoped to any session are always enabled. A
+ * session ends when its terminator line has been processed, or for a session
+ * without one when the next command is issued, or when none of its processors
+ * has matched a line during the timeout.
+ */
+class ParsingSessions {
+
+    private static final ParsingSession[] SESSIONS = ParsingSession.values();
+
+    private final List<? extends AbstractOutputProcessor> processors;
+    private final long timeoutNanos;
+    private final long[] sessionProcessors = new long[SESSIONS.length];
+    private final long[] deadlines = new long[SESSIONS.length];
+    /** Reused for every line, as the processors reuse theirs */
+    private final Matcher[] terminators = new Matcher[SESSIONS.length];
+    private long alwaysEnabled;
+    private long enabled;
+
+    /**
+     * @param processors   output processors in dispatch order
+     * @param timeoutNanos idle time after which a session ends
+     */
+    ParsingSessions(List<? extends AbstractOutputProcessor> processors, long timeoutNanos) {
+        if (processors.size() > Long.SIZE) {
+            throw new IllegalArgumentException("At most 64 output processors are supported");
+        }
+        this.processors = processors;
+        this.timeoutNanos = timeoutNanos;
+        this.alwaysEnabled = processors.size() == Long.SIZE ? -1L : (1L << processors.size()) - 1;
+        this.enabled = alwaysEnabled;
+        for (ParsingSession session : SESSIONS) {
+            terminators[session.ordinal()] = session.newTerminatorMatcher();
+        }
+    }
+
+    /**
+     * Limits processors to receive output only while the session is active
+     *
+     * @param session
+     * @param scoped
+     */
+    void scope(ParsingSession session, AbstractOutputProcessor... scoped) {
+        for (AbstractOutputProcessor processor : scoped) {
+            int index = indexOf(processor);
+            sessionProcessors[session.ordinal()] |= 1L << index;
+            alwaysEnabled &= ~(1L << index);
+        }
+        enabled = alwaysEnabled;
+    }
+
+    private int indexOf(AbstractOutputProcessor processor) {
+        for (int i = 0; i < processors.size(); i++) {
+            if (processors.get(i) == processor) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown output processor " + processor);
+    }
+
+    /**
+     * @param session
+     * @param now     current time in nanoseconds
+     */
+    void start(ParsingSession session, long now) {
+        deadlines[session.ordinal()] = now + timeoutNanos;
+        enabled |= sessionProcessors[session.ordinal()];
+    }
+
+    /**
+     * @param session
+     * @return true if session is active
+     */
+    boolean isActive(ParsingSession session) {
+        long scoped = sessionProcessors[session.ordinal()];
+        return scoped != 0 && (enabled & scoped) == scoped;
+    }
+
+    /**
+     * Ends sessions which have timed out.
+     *
+     * @param now current time in nanoseconds
+     * @return bit mask of processors enabled for the next line
+     */
+    long enabledProcessors(long now) {
+        if (enabled != alwaysEnabled) {
+            for (ParsingSession session : SESSIONS) {
+                if (isActive(session) && now - deadlines[session.ordinal()] > 0) {
+                    end(session);
+                }
+            }
+        }
+        return enabled;
+    }
+
+    /**
+     * Ends sessions which have no terminator line, called before each command
+     */
+    void commandIssued() {
+        if (enabled == alwaysEnabled) {
+            return;
+        }
+        for (ParsingSession session : SESSIONS) {
+            if (terminators[session.ordinal()] == null && isActive(session)) {
+                end(session);
+            }
+        }
+    }
+
+    /**
+     * Extends sessions whose processors matched the line and ends sessions
+     * terminated by it.
+     *
+     * @param line
+     * @param matched bit mask of processors which matched the line
+     * @param now     current time in nanoseconds
+     */
+    void processed(String line, long matched, long now) {
+        if (enabled == alwaysEnabled) {
+            return;
+        }
+        for (ParsingSession session : SESSIONS) {
+            if (isActive(session)) {
+                final Matcher terminator = terminators[session.ordinal()];
+                if (terminator != null && terminator.reset(line).matches()) {
+                    end(session);
+                } else if ((matched & sessionProcessors[session.ordinal()]) != 0) {
+                    deadlines[session.ordinal()] = now + timeoutNanos;
+                }
+            }
+        }
+    }
+
+    private void end(ParsingSession session) {
+        enabled &= ~sessionProcessors[session.ordinal()];
+    }
+}
@@ -1,5 +1,7 @@
 package batmudgoalsplugin;
 
+import java.util.function.Supplier;
+import java.util.regex.MatchResult;
 import java.util.regex.Matcher;
 
 import batmudgoalsplugin.data.BatMUDGoalsPluginData;
@@ -10,11 +12,19 @@ import batmudgoalsplugin.data.BatMUDGoalsPluginData;
  */
 class PercentCostOutputProcessor extends AbstractOutputProcessor {
 
-    private final BatMUDGoalsPluginData data;
+    private final Supplier<BatMUDGoalsPluginData> data;
     private String skill;
 
     public PercentCostOutputProcessor(BatMUDGoalsPluginData data) {
-        super("\\|\\s+(\\d+)%\\s+=\\s+(\\d+)");
+        this(() -> data);
+    }
+
+    /**
+     * @param data of the character logged in, looked up on every line
+     */
+    public PercentCostOutputProcessor(Supplier<BatMUDGoalsPluginData> data) {
+        super("\\|\\s+(\\d+)%\\s+=\\s+(\\d+)",
+                "|", "%", "=");
         this.data = data;
     }
 
@@ -23,20 +33,28 @@ class PercentCostOutputProcessor extends AbstractOutputProcessor {
     }
 
     @Override
-    protected void decideProcess(Matcher m) {
-        processAllMatchesOnALine(m);
+    boolean matchesWholeLine() {
+        return false;
+    }
+
+    @Override
+    protected boolean decideProcess(Matcher m) {
+        return processAllMatchesOnALine(m);
     }
 
-    private void processAllMatchesOnALine(Matcher matcher) {
+    private boolean processAllMatchesOnALine(Matcher matcher) {
+        boolean found = false;
         while (matcher.find()) {
             process(matcher);
+            found = true;
         }
+        return found;
     }
 
     @Override
-    protected void process(Matcher m) {
-        int skillLevel = Integer.parseInt(m.group(1));
-        int skillCost = Integer.parseInt(m.group(2));
-        data.setSkillCostForLevel(skill, skillLevel, skillCost);
+    protected void process(MatchResult m) {
+        int skillLevel = parseInt(m, 1);
+        int skillCost = parseInt(m, 2);
+        data.get().setSkillCostForLevel(skill, skillLevel, skillCost);
     }
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package batmudgoalsplugin;
 
-import java.util.regex.Matcher;
+import java.util.function.Supplier;
+import java.util.regex.MatchResult;
 
 import batmudgoalsplugin.data.BatMUDGoalsPluginData;
 
@@ -11,12 +12,20 @@ import batmudgoalsplugin.data.BatMUDGoalsPluginData;
 class PlayerLevelOutputProcessor extends AbstractOutputProcessor implements
         IGuildNameListener {
 
-    private final BatMUDGoalsPluginData data;
+    private final Supplier<BatMUDGoalsPluginData> data;
 
     private String guild;
 
     public PlayerLevelOutputProcessor(BatMUDGoalsPluginData data) {
-        super("Your level:\\s+(\\d+)\\s*");
+        this(() -> data);
+    }
+
+    /**
+     * @param data of the character logged in, looked up on every line
+     */
+    public PlayerLevelOutputProcessor(Supplier<BatMUDGoalsPluginData> data) {
+        super("Your level:\\s+(\\d+)\\s*",
+                "Your level:");
         this.data = data;
     }
 
@@ -31,8 +40,8 @@ class PlayerLevelOutputProcessor extends AbstractOutputProcessor implements
     }
 
     @Override
-    protected void process(Matcher m) {
-        int level = Integer.parseInt(m.group(1));
-        data.setGuildLevel(guild, level);
+    protected void process(MatchResult m) {
+        int level = parseInt(m, 1);
+        data.get().setGuildLevel(guild, level);
     }
 }
\ No newline at end of file
@@ -0,0 +1,301 @@
+package batmudgoalsplugin;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Counters and latency histograms of the processors, collected by
+ * {@link BatMUDGoalsController} while enabled. Counters are {@link LongAdder}s,
+ * so the client's output thread and the thread of the asynchronous pipeline
+ * do not contend on them. Latencies go to buckets of powers of two
+ * nanoseconds, so recording one is an increment and percentiles are exact to
+ * a factor of two.
+ * <p>
+ * Every line and command is counted and timed as a whole. Reading the clock
+ * and the allocation counter of the thread around each processor would cost
+ * more than most processors do, so the processors are timed only on one line
+ * out of {@link #SAMPLE_INTERVAL} and their totals are estimated from those.
+ * Allocations are measured where the JVM counts them.
+ */
+final class ProcessingStats {
+
+    /** Bucket i counts latencies below 2^i nanoseconds, the last one the rest */
+    static final int BUCKETS = 40;
+    /** Processors are timed on one line out of this many, a power of two */
+    static final int SAMPLE_INTERVAL = 16;
+
+    /** Counters of one processor, or of the controller as a whole */
+    static final class Counters {
+        private final String name;
+        private final LongAdder seen = new LongAdder();
+        /** Lines seen which the processor looked at */
+        private final LongAdder received = new LongAdder();
+        private final LongAdder matched = new LongAdder();
+        private final LongAdder samples = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAdder allocated = new LongAdder();
+        private final LongAdder[] histogram = new LongAdder[BUCKETS];
+
+        Counters(String name) {
+            this.name = name;
+            for (int i = 0; i < BUCKETS; i++) {
+                histogram[i] = new LongAdder();
+            }
+        }
+
+        /**
+         * Counts and times a line or command
+         */
+        void record(boolean match, long elapsedNanos, long allocatedBytes) {
+            count(match);
+            sample(elapsedNanos, allocatedBytes);
+        }
+
+        /**
+         * Counts a line or command which is not timed
+         */
+        void count(boolean match) {
+            seen.increment();
+            countReceived(match);
+        }
+
+        /**
+         * Counts a line handed out while the processor was enabled, whether it
+         * got to look at it or not, so that every dispatch engine counts the
+         * same lines as seen
+         */
+        void offer() {
+            seen.increment();
+        }
+
+        /**
+         * Counts and times a line already counted with {@link #offer()}
+         */
+        void recordReceived(boolean match, long elapsedNanos, long allocatedBytes) {
+            countReceived(match);
+            sample(elapsedNanos, allocatedBytes);
+        }
+
+        /**
+         * Counts a line already counted with {@link #offer()} which the
+         * processor looked at
+         */
+        void countReceived(boolean match) {
+            received.increment();
+            if (match) {
+                matched.increment();
+            }
+        }
+
+        private void sample(long elapsedNanos, long allocatedBytes) {
+            samples.increment();
+            nanos.add(elapsedNanos);
+            allocated.add(allocatedBytes);
+            histogram[bucket(elapsedNanos)].increment();
+        }
+
+        String getName() {
+            return name;
+        }
+
+        long getSeen() {
+            return seen.sum();
+        }
+
+        long getMatched() {
+            return matched.sum();
+        }
+
+        /**
+         * @return time taken, estimated from the samples
+         */
+        long getNanos() {
+            return estimate(nanos.sum());
+        }
+
+        /**
+         * @return bytes allocated, estimated from the samples
+         */
+        long getAllocatedBytes() {
+            return estimate(allocated.sum());
+        }
+
+        private long estimate(long sampled) {
+            long sampleCount = samples.sum();
+            // Lines not looked at take no time
+            return sampleCount == 0 ? 0 : (long) ((double) sampled * received.sum() / sampleCount);
+        }
+
+        /**
+         * @param percentile between 0 and 100
+         * @return upper bound of the bucket holding the percentile, 0 if nothing
+         *         has been recorded
+         */
+        long percentileNanos(double percentile) {
+            long[] counts = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = histogram[i].sum();
+                total += counts[i];
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(percentile / 100 * total);
+            long cumulative = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                cumulative += counts[i];
+                if (cumulative >= Math.max(1, rank)) {
+                    return 1L << i;
+                }
+            }
+            return 1L << (BUCKETS - 1);
+        }
+
+        void reset() {
+            seen.reset();
+            received.reset();
+            matched.reset();
+            samples.reset();
+            nanos.reset();
+            allocated.reset();
+            for (LongAdder bucket : histogram) {
+                bucket.reset();
+            }
+        }
+    }
+
+    private final LongSupplier nanoClock;
+    private final com.sun.management.ThreadMXBean threads;
+    private volatile boolean enabled;
+    /** Start of the current period of measuring, guarded by this */
+    private long startNanos;
+    /** Length of the earlier periods of measuring, guarded by this */
+    private long measuredNanos;
+    /** Lines of output handed to the controller, processed or not */
+    private final Counters output = new Counters("Output lines");
+    private final Counters commands = new Counters("Commands");
+    /** By name of processor */
+    private final Map<String, Counters> processors = new ConcurrentHashMap<>();
+    private final List<Counters> order = new ArrayList<>();
+
+    ProcessingStats(LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+        this.threads = allocationCounter();
+        this.startNanos = nanoClock.getAsLong();
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        try {
+            if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+                        .getThreadMXBean();
+                if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+                    return threads;
+                }
+            }
+        } catch (LinkageError | SecurityException e) {
+            // Allocations are not measured
+        }
+        return null;
+    }
+
+    static int bucket(long nanos) {
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(Math.max(0, nanos)));
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Nothing is measured while disabled, which is the default, as reading the
+     * clock and the allocation counter on every line has a cost of its own
+     *
+     * @param enabled
+     */
+    synchronized void setEnabled(boolean enabled) {
+        if (enabled == this.enabled) {
+            return;
+        }
+        if (enabled) {
+            startNanos = nanoClock.getAsLong();
+        } else {
+            measuredNanos += nanoClock.getAsLong() - startNanos;
+        }
+        this.enabled = enabled;
+    }
+
+    boolean isMeasuringAllocations() {
+        return threads != null;
+    }
+
+    /**
+     * @return time of the clock of the stats
+     */
+    long now() {
+        return nanoClock.getAsLong();
+    }
+
+    /**
+     * @return bytes allocated by the current thread so far, 0 if not measured
+     */
+    long allocatedBytes() {
+        return threads == null ? 0 : threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    Counters output() {
+        return output;
+    }
+
+    Counters commands() {
+        return commands;
+    }
+
+    /**
+     * @param name of the processor, see
+     *             {@link AbstractOutputProcessor#getName()}
+     * @return counters of the processor
+     */
+    Counters processor(String name) {
+        Counters counters = processors.get(name);
+        if (counters == null) {
+            synchronized (order) {
+                counters = processors.computeIfAbsent(name, Counters::new);
+                if (!order.contains(counters)) {
+                    order.add(counters);
+                }
+            }
+        }
+        return counters;
+    }
+
+    /**
+     * @return counters of the processors in the order they were first seen
+     */
+    List<Counters> processors() {
+        synchronized (order) {
+            return new ArrayList<>(order);
+        }
+    }
+
+    /**
+     * @return nanoseconds measured since the stats were reset
+     */
+    synchronized long elapsedNanos() {
+        return measuredNanos + (enabled ? nanoClock.getAsLong() - startNanos : 0);
+    }
+
+    synchronized void reset() {
+        output.reset();
+        commands.reset();
+        processors().forEach(Counters::reset);
+        startNanos = nanoClock.getAsLong();
+        measuredNanos = 0;
+    }
+}
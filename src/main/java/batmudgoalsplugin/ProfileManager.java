@@ -0,0 +1,389 @@
+package batmudgoalsplugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import batmudgoalsplugin.data.BatMUDGoalsPluginData;
+import batmudgoalsplugin.data.CostLibrary;
+import batmudgoalsplugin.data.DataFormat;
+import batmudgoalsplugin.data.MutationJournal;
+
+/**
+ * Keeps the data of each character in its own directory under
+ * <code>profiles</code>. The data in the plugin's directory is used until a
+ * character is recognised; the first character recognised starts from a copy
+ * of it, as it was kept by versions without profiles.
+ * <p>
+ * Profiles are loaded when their character is first seen. At most
+ * <code>capacity</code> of them are kept in memory, so switching back and forth
+ * between a few alts does not read any files. The profile used least recently
+ * is saved and dropped to make room.
+ */
+class ProfileManager {
+
+    private static final String PROFILES_DIRECTORY = "profiles";
+    private static final String TEXT_FILE_NAME = "BatMUDGoalsInfo.data";
+    private static final String BINARY_FILE_NAME = "BatMUDGoalsInfo.bin";
+    private static final String JOURNAL_FILE_NAME = "BatMUDGoalsInfo.journal";
+    /** Changes of the snapshot being saved, replayed first if it never got saved */
+    private static final String ROTATED_JOURNAL_FILE_NAME = "BatMUDGoalsInfo.journal.old";
+    private static final long JOURNAL_FLUSH_MILLIS = 1000;
+    /** Journal is compacted into the data file after this many changes */
+    private static final int JOURNAL_COMPACTION_RECORDS = 10000;
+    /** Name of the profile used until a character is recognised */
+    static final String DEFAULT_PROFILE = "";
+
+    /** Data of one character with its files */
+    static final class Profile {
+        private final String character;
+        private final File directory;
+        private final DataFormat format;
+        private final BatMUDGoalsPluginData data;
+        private final MutationJournal journal;
+        /** Version of the data last saved, guarded by this */
+        private long savedVersion = -1;
+
+        private Profile(String character, File directory, DataFormat format, BatMUDGoalsPluginData data,
+                MutationJournal journal) {
+            this.character = character;
+            this.directory = directory;
+            this.format = format;
+            this.data = data;
+            this.journal = journal;
+        }
+
+        String getCharacter() {
+            return character;
+        }
+
+        BatMUDGoalsPluginData getData() {
+            return data;
+        }
+
+        /**
+         * Marks the changes made so far to be moved aside, see
+         * {@link MutationJournal#startRotation()}. Call while no output is being
+         * processed, together with copying the data.
+         */
+        void startJournalRotation() {
+            journal.startRotation();
+        }
+
+        /**
+         * Moves the changes marked by {@link #startJournalRotation()} aside.
+         * Output can be processed meanwhile.
+         *
+         * @throws IOException
+         */
+        void finishJournalRotation() throws IOException {
+            journal.finishRotation(file(directory, ROTATED_JOURNAL_FILE_NAME));
+        }
+
+        /**
+         * Saves a copy of the data taken with {@link #startJournalRotation()}
+         *
+         * @param snapshot
+         * @throws IOException
+         */
+        synchronized void saveSnapshot(BatMUDGoalsPluginData snapshot) throws IOException {
+            if (snapshot.getVersion() < savedVersion) {
+                // Saved in full while the copy was being made
+                return;
+            }
+            snapshot.moveCostsToLibrary();
+            BatMUDGoalsPluginData.persistToFile(snapshot, createPersistenceFile(directory, format), format);
+            Files.deleteIfExists(file(directory, ROTATED_JOURNAL_FILE_NAME).toPath());
+            savedVersion = snapshot.getVersion();
+        }
+
+        /**
+         * Saves the data in full, after which the changes in the journal are
+         * not needed any more. Call while no output is being processed.
+         *
+         * @throws IOException
+         */
+        synchronized void save() throws IOException {
+            data.moveCostsToLibrary();
+            BatMUDGoalsPluginData.persistToFile(data, createPersistenceFile(directory, format), format);
+            Files.deleteIfExists(file(directory, ROTATED_JOURNAL_FILE_NAME).toPath());
+            journal.truncate();
+            savedVersion = data.getVersion();
+        }
+
+        void close() throws IOException {
+            journal.close();
+        }
+    }
+
+    private final Logger logger;
+    private final File directory;
+    private final DataFormat format;
+    private final CostLibrary costLibrary;
+    private final int capacity;
+    private final Runnable compactionHandler;
+    /** Profiles in memory by character, in order of use */
+    private final LinkedHashMap<String, Profile> resident = new LinkedHashMap<>(16, 0.75f, true);
+    private volatile Profile current;
+    /** Profile being saved to make room, guarded by this */
+    private Profile evicting;
+
+    /**
+     * @param logger
+     * @param directory         of the plugin's files
+     * @param format            of the data files
+     * @param costLibrary       shared by the profiles
+     * @param capacity          number of profiles kept in memory, at least 1
+     * @param compactionHandler called when a journal grows long
+     */
+    ProfileManager(Logger logger, File directory, DataFormat format, CostLibrary costLibrary, int capacity,
+            Runnable compactionHandler) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        }
+        this.logger = logger;
+        this.directory = directory;
+        this.format = format;
+        this.costLibrary = costLibrary;
+        this.capacity = capacity;
+        this.compactionHandler = compactionHandler;
+    }
+
+    /**
+     * @return profile in use
+     */
+    Profile current() {
+        return current;
+    }
+
+    /**
+     * @return characters whose profiles are in memory, least recently used
+     *         first
+     */
+    synchronized List<String> residentCharacters() {
+        return new ArrayList<>(resident.keySet());
+    }
+
+    /**
+     * Makes the profile of the character the one in use, loading it if needed.
+     * Call while no output is being processed.
+     *
+     * @param character name in lower case, {@link #DEFAULT_PROFILE} for the
+     *                  profile used before a character is recognised
+     * @return profile of the character
+     * @throws IOException
+     */
+    Profile switchTo(String character) throws IOException {
+        Profile profile = get(character);
+        setCurrent(profile);
+        evict();
+        return profile;
+    }
+
+    /**
+     * Loads the profile of the character if it is not in memory, without
+     * making it the one in use. Output can be processed meanwhile.
+     *
+     * @param character name in lower case, {@link #DEFAULT_PROFILE} for the
+     *                  profile used before a character is recognised
+     * @return profile of the character
+     * @throws IOException
+     */
+    synchronized Profile get(String character) throws IOException {
+        while (evicting != null && evicting.getCharacter().equals(character)) {
+            // Loaded again once saved
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while profile '" + character + "' was saved");
+            }
+        }
+        Profile profile = resident.get(character);
+        if (profile == null) {
+            profile = load(character);
+            resident.put(character, profile);
+        }
+        return profile;
+    }
+
+    /**
+     * Makes the profile of the character the one in use if it is in memory.
+     * Reads no files, so it can be called while output is being processed. Call
+     * while no output is being processed, together with switching the data the
+     * output is processed with.
+     *
+     * @param character name in lower case
+     * @return profile of the character, null if it has to be loaded with
+     *         {@link #get(String)}
+     */
+    synchronized Profile switchToResident(String character) {
+        Profile profile = resident.get(character);
+        if (profile == null || profile == evicting) {
+            return null;
+        }
+        current = profile;
+        return profile;
+    }
+
+    /**
+     * Makes the profile the one in use. Call while no output is being
+     * processed, together with switching the data the output is processed
+     * with.
+     *
+     * @param profile from {@link #get(String)}
+     */
+    void setCurrent(Profile profile) {
+        current = profile;
+    }
+
+    private Profile load(String character) throws IOException {
+        File profileDirectory = profileDirectory(character);
+        BatMUDGoalsPluginData data;
+        if (character.equals(DEFAULT_PROFILE) || profileDirectory.exists()) {
+            logger.info("Loading profile '" + character + "'");
+            data = loadData(profileDirectory);
+        } else if (!profileDirectory.getParentFile().exists()) {
+            logger.info("Creating profile '" + character + "' from the data kept before profiles");
+            Profile kept = resident.get(DEFAULT_PROFILE);
+            data = kept != null ? kept.getData().copy() : loadData(directory);
+        } else {
+            logger.info("Creating profile '" + character + "'");
+            data = new BatMUDGoalsPluginData();
+        }
+        profileDirectory.mkdirs();
+        File journalFile = file(profileDirectory, JOURNAL_FILE_NAME);
+        MutationJournal journal = MutationJournal.open(journalFile, JOURNAL_FLUSH_MILLIS,
+                JOURNAL_COMPACTION_RECORDS, compactionHandler);
+        data.setMutationListener(journal);
+        data.setCostLibrary(costLibrary);
+        return new Profile(character, profileDirectory, format, data, journal);
+    }
+
+    private BatMUDGoalsPluginData loadData(File profileDirectory) throws IOException {
+        File dataFile = locateDataToLoad(profileDirectory);
+        return BatMUDGoalsPluginData.fromFile(dataFile,
+                (offset, problem) -> logger.warning("At byte " + offset + " of " + problem),
+                file(profileDirectory, ROTATED_JOURNAL_FILE_NAME), file(profileDirectory, JOURNAL_FILE_NAME));
+    }
+
+    /**
+     * Saves and drops the profiles used least recently until at most capacity
+     * remain. The profile in use is kept, so output can be processed meanwhile.
+     * Profiles are saved without holding the manager, so the profiles in memory
+     * can be switched to meanwhile; the one being saved is loaded again.
+     */
+    void evict() {
+        for (;;) {
+            Profile profile;
+            synchronized (this) {
+                profile = leastRecentlySpare();
+                if (profile == null) {
+                    return;
+                }
+                evicting = profile;
+            }
+            logger.info("Saving profile '" + profile.getCharacter() + "' to make room");
+            try {
+                profile.save();
+                profile.close();
+                synchronized (this) {
+                    resident.remove(profile.getCharacter());
+                }
+            } catch (IOException | RuntimeException e) {
+                // Kept in memory, saved again on exit
+                logger.log(Level.SEVERE, "Cannot save profile '" + profile.getCharacter() + "'", e);
+                return;
+            } finally {
+                synchronized (this) {
+                    evicting = null;
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return profile used least recently other than the one in use, null if
+     *         no more than capacity are in memory
+     */
+    private Profile leastRecentlySpare() {
+        if (resident.size() <= capacity) {
+            return null;
+        }
+        for (Profile profile : resident.values()) {
+            if (profile != current) {
+                return profile;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Saves all the profiles in memory and closes their journals
+     */
+    synchronized void close() {
+        for (Profile profile : resident.values()) {
+            try {
+                profile.save();
+                profile.close();
+            } catch (IOException | RuntimeException e) {
+                logger.log(Level.SEVERE, "Cannot save profile '" + profile.getCharacter() + "'", e);
+            }
+        }
+        resident.clear();
+    }
+
+    private File profileDirectory(String character) {
+        if (character.equals(DEFAULT_PROFILE)) {
+            return directory;
+        }
+        return new File(new File(directory, PROFILES_DIRECTORY), character.replaceAll("[^\\p{Alnum}_]", "_"));
+    }
+
+    private static File file(File directory, String name) {
+        return new File(directory, name);
+    }
+
+    private static File persistenceFile(File directory, DataFormat format) {
+        return file(directory, format == DataFormat.BINARY ? BINARY_FILE_NAME : TEXT_FILE_NAME);
+    }
+
+    /**
+     * Finds the file to load the state from. When binary format is used and
+     * there is no binary file yet, the text file of earlier versions is loaded.
+     * The state is then stored in binary, leaving the text file as it was.
+     *
+     * @return {@link File} to load plugin's state from
+     * @throws IOException
+     */
+    private File locateDataToLoad(File profileDirectory) throws IOException {
+        if (format == DataFormat.BINARY && !persistenceFile(profileDirectory, format).exists()
+                && persistenceFile(profileDirectory, DataFormat.TEXT).exists()) {
+            logger.info("Migrating text data to binary format");
+            return persistenceFile(profileDirectory, DataFormat.TEXT);
+        }
+        return createPersistenceFile(profileDirectory, format);
+    }
+
+    /**
+     * If file exists opens the file, otherwise a new one is created
+     *
+     * @return {@link File} used to store plugin's state
+     * @throws IOException
+     */
+    private static File createPersistenceFile(File directory, DataFormat format) throws IOException {
+        File file = persistenceFile(directory, format);
+        if (!file.exists()) {
+            directory.mkdirs();
+            file.createNewFile();
+        }
+        return file;
+    }
+}
@@ -0,0 +1,31 @@
+package batmudgoalsplugin;
+
+import java.util.regex.Matcher;
+
+/**
+ * Catches commands whose output is parsed in a {@link ParsingSession}, e.g.
+ * 'cost train attack' or 'study', and starts the session. The command is always
+ * forwarded to the client.
+ */
+class SessionCommandProcessor extends AbstractCommandProcessor {
+
+    private final ParsingSession session;
+    private final IParsingSessionListener listener;
+
+    public SessionCommandProcessor(String regexp, ParsingSession session, IParsingSessionListener listener) {
+        super(regexp);
+        this.session = session;
+        this.listener = listener;
+    }
+
+    @Override
+    String getName() {
+        return super.getName() + " " + session;
+    }
+
+    @Override
+    protected boolean process(Matcher m) {
+        listener.startSession(session);
+        return false; // Always forward the command to client
+    }
+}
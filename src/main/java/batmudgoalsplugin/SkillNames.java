@@ -0,0 +1,101 @@
+package batmudgoalsplugin;
+
+/**
+ * Normalizes skill names as they appear in the output of BatMUD and in the
+ * commands of the player: whitespace runs are collapsed to a single space,
+ * leading and trailing whitespace removed and the name put to lowercase.
+ * <p>
+ * Normalized names are interned, so the same skill is always the same
+ * {@link String} instance. The normalized names of recently seen raw texts are
+ * kept in a small direct mapped cache, which is looked up straight from the
+ * characters of the raw text without allocating.
+ */
+final class SkillNames {
+
+    private static final int CACHE_SIZE = 256;
+
+    /** Immutable, so entries can be published to other threads without locks */
+    private static final class Entry {
+        final String raw;
+        final String normalized;
+
+        Entry(String raw, String normalized) {
+            this.raw = raw;
+            this.normalized = normalized;
+        }
+    }
+
+    private static final Entry[] cache = new Entry[CACHE_SIZE];
+
+    private SkillNames() {
+    }
+
+    /**
+     * @param raw
+     * @return normalized, interned skill name
+     */
+    static String normalize(CharSequence raw) {
+        return normalize(raw, 0, raw.length());
+    }
+
+    /**
+     * @param text  text containing the raw skill name
+     * @param start index of the first character of the raw skill name
+     * @param end   index after the last character of the raw skill name
+     * @return normalized, interned skill name
+     */
+    static String normalize(CharSequence text, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + text.charAt(i);
+        }
+        int slot = (hash ^ (hash >>> 16)) & (CACHE_SIZE - 1);
+        Entry entry = cache[slot];
+        if (entry != null && contentEquals(entry.raw, text, start, end)) {
+            return entry.normalized;
+        }
+
+        String normalized = collapse(text, start, end).intern();
+        cache[slot] = new Entry(text.subSequence(start, end).toString(), normalized);
+        return normalized;
+    }
+
+    private static boolean contentEquals(String raw, CharSequence text, int start, int end) {
+        if (raw.length() != end - start) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (raw.charAt(i - start) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String collapse(CharSequence text, int start, int end) {
+        char[] chars = new char[end - start];
+        int length = 0;
+        boolean space = false;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (isWhitespace(c)) {
+                space = length > 0;
+            } else {
+                if (space) {
+                    chars[length++] = ' ';
+                    space = false;
+                }
+                chars[length++] = Character.toLowerCase(c);
+            }
+        }
+        return new String(chars, 0, length);
+    }
+
+    /**
+     * @param c
+     * @return true if c is whitespace as \s of regular expressions
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+}
@@ -0,0 +1,157 @@
+package batmudgoalsplugin;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Saves snapshots of the plugin data on a background thread. The version of
+ * the data is polled, and a snapshot is taken when the data has changed since
+ * the last one and either the snapshot interval has passed or the data has been
+ * left unchanged for the idle delay, e.g. at the end of a round of training.
+ * Snapshots can also be requested, e.g. when the journal grows long.
+ */
+class SnapshotScheduler {
+
+    /** Takes and saves a snapshot */
+    interface ISnapshotter {
+        /**
+         * @return version of the data saved
+         * @throws Exception
+         */
+        long snapshot() throws Exception;
+    }
+
+    private final Logger logger;
+    private final LongSupplier version;
+    private final ISnapshotter snapshotter;
+    private final long intervalNanos;
+    private final long idleNanos;
+    private final ScheduledExecutorService executor;
+    private final AtomicBoolean requested = new AtomicBoolean();
+
+    // Only touched on the executor thread
+    private long savedVersion;
+    private long seenVersion;
+    private long lastSnapshot = System.nanoTime();
+    private long lastChange = lastSnapshot;
+    private volatile long snapshots;
+
+    /**
+     * @param logger
+     * @param version        version of the data, see
+     *                       {@link batmudgoalsplugin.data.BatMUDGoalsPluginData#getVersion()}
+     * @param snapshotter
+     * @param intervalMillis longest time a change waits for a snapshot
+     * @param idleMillis     time without changes after which a snapshot is
+     *                       taken
+     * @param pollMillis     how often the version is polled
+     */
+    SnapshotScheduler(Logger logger, LongSupplier version, ISnapshotter snapshotter, long intervalMillis,
+            long idleMillis, long pollMillis) {
+        this.logger = logger;
+        this.version = version;
+        this.snapshotter = snapshotter;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMillis);
+        savedVersion = seenVersion = version.getAsLong();
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "BatMUDGoalsPlugin snapshot");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::poll, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Takes a snapshot on the background thread as soon as possible. Returns
+     * immediately, requests made before the snapshot starts are merged.
+     */
+    void requestSnapshot() {
+        if (requested.compareAndSet(false, true)) {
+            try {
+                executor.execute(() -> {
+                    requested.set(false);
+                    snapshot();
+                });
+            } catch (RuntimeException e) {
+                // Shut down, the data is saved in full on exit
+                requested.set(false);
+            }
+        }
+    }
+
+    /**
+     * Runs the task on the background thread, after the snapshot being saved,
+     * e.g. to load a profile without holding up the output
+     *
+     * @param task
+     * @return false if shut down and the task was not run
+     */
+    boolean execute(Runnable task) {
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    logger.log(Level.SEVERE, t.getMessage(), t);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    private void poll() {
+        long now = System.nanoTime();
+        long current = version.getAsLong();
+        if (current != seenVersion) {
+            seenVersion = current;
+            lastChange = now;
+        }
+        if (current != savedVersion && (now - lastSnapshot >= intervalNanos
+                || lastChange - lastSnapshot > 0 && now - lastChange >= idleNanos)) {
+            snapshot();
+        }
+    }
+
+    private void snapshot() {
+        try {
+            savedVersion = snapshotter.snapshot();
+            snapshots++;
+        } catch (Throwable t) {
+            logger.log(Level.SEVERE, "Cannot save a snapshot: " + t.getMessage(), t);
+        } finally {
+            // After a failure, the next try waits for another change or the
+            // next interval
+            lastSnapshot = System.nanoTime();
+        }
+    }
+
+    /**
+     * @return number of snapshots saved
+     */
+    long getSnapshotCount() {
+        return snapshots;
+    }
+
+    /**
+     * Stops taking snapshots, waiting for one being saved
+     *
+     * @param timeout
+     * @param unit
+     * @return false if the snapshot being saved did not finish in time
+     * @throws InterruptedException
+     */
+    boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        executor.shutdown();
+        return executor.awaitTermination(timeout, unit);
+    }
+}
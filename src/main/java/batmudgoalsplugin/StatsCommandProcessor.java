@@ -0,0 +1,78 @@
+package batmudgoalsplugin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+
+/**
+ * Catches 'goal stats' and prints how much time the processors have taken,
+ * to tell whether the plugin slows the client down. 'goal stats off' stops
+ * measuring, 'goal stats on' starts again and 'goal stats reset' clears the
+ * counters.
+ */
+class StatsCommandProcessor extends AbstractCommandProcessor {
+
+    private final ClientGUIModel guiModel;
+    private final BatMUDGoalsController controller;
+
+    public StatsCommandProcessor(ClientGUIModel guiModel, BatMUDGoalsController controller) {
+        super("\\s*goal\\s+stats(?:\\s+(on|off|reset))?\\s*");
+        this.guiModel = guiModel;
+        this.controller = controller;
+    }
+
+    @Override
+    protected boolean process(Matcher m) {
+        ProcessingStats stats = controller.getStats();
+        String action = m.group(1) == null ? "" : m.group(1).toLowerCase();
+        switch (action) {
+        case "on":
+            stats.setEnabled(true);
+            guiModel.printMessage("Stats on");
+            break;
+        case "off":
+            stats.setEnabled(false);
+            guiModel.printMessage("Stats off");
+            break;
+        case "reset":
+            stats.reset();
+            guiModel.printMessage("Stats reset");
+            break;
+        default:
+            print(stats);
+        }
+        return true;
+    }
+
+    private void print(ProcessingStats stats) {
+        List<String> lines = new ArrayList<>();
+        if (!stats.isEnabled()) {
+            lines.add("Stats are off, turn them on with 'goal stats on'");
+        }
+        lines.add(String.format("%-40s %9s %8s %9s %8s %9s", "Processor", "Seen", "Matched",
+                "Total ms", "p99 us", "Alloc KB"));
+        for (ProcessingStats.Counters counters : stats.processors()) {
+            lines.add(row(counters));
+        }
+        lines.add(row(stats.commands()));
+        lines.add(row(stats.output()));
+
+        double seconds = stats.elapsedNanos() / 1e9;
+        lines.add(String.format("%.1f lines/s over %.0f s", seconds > 0
+                ? stats.output().getSeen() / seconds : 0.0, seconds));
+        long[] cache = controller.getExpCacheCounts();
+        lines.add(String.format("Exp goal cache: %d hits, %d misses", cache[0], cache[1]));
+        lines.add(String.format("Output queue: %d queued, %d dropped", controller.getQueuedLines(),
+                controller.getDroppedLines()));
+        if (!stats.isMeasuringAllocations()) {
+            lines.add("Allocations are not measured on this JVM");
+        }
+        guiModel.printMessages(lines);
+    }
+
+    private static String row(ProcessingStats.Counters counters) {
+        return String.format("%-40s %9d %8d %9.1f %8.1f %9d", counters.getName(), counters.getSeen(),
+                counters.getMatched(), counters.getNanos() / 1e6, counters.percentileNanos(99) / 1e3,
+                counters.getAllocatedBytes() / 1024);
+    }
+}
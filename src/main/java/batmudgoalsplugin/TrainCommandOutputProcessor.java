@@ -1,6 +1,7 @@
 package batmudgoalsplugin;
 
-import java.util.regex.Matcher;
+import java.util.function.Supplier;
+import java.util.regex.MatchResult;
 
 import batmudgoalsplugin.data.BatMUDGoalsPluginData;
 
@@ -15,24 +16,32 @@ import batmudgoalsplugin.data.BatMUDGoalsPluginData;
  * | Paranoia                      |   1 | 101 | 100 |          25 |</code>
  */
 class TrainCommandOutputProcessor extends AbstractOutputProcessor {
-    private final BatMUDGoalsPluginData data;
+    private final Supplier<BatMUDGoalsPluginData> data;
 
     public TrainCommandOutputProcessor(BatMUDGoalsPluginData data) {
+        this(() -> data);
+    }
+
+    /**
+     * @param data of the character logged in, looked up on every line
+     */
+    public TrainCommandOutputProcessor(Supplier<BatMUDGoalsPluginData> data) {
         super(
-                "\\|\\s+([^\\|]+)\\|\\s+(\\d+)\\s+\\|\\s+(\\d+)\\s+\\|\\s+(\\d+)\\s+\\|\\s+(\\d+|\\(n/a\\))\\s+\\|\\s*(?:\\(partially (?:trained|studied)\\))?\\s*");
+                "\\|\\s+([^\\|]+)\\|\\s+(\\d+)\\s+\\|\\s+(\\d+)\\s+\\|\\s+(\\d+)\\s+\\|\\s+(\\d+|\\(n/a\\))\\s+\\|\\s*(?:\\(partially (?:trained|studied)\\))?\\s*",
+                "|");
         this.data = data;
     }
 
     @Override
-    protected void process(Matcher m) {
-        data.setSkillStatus(readSkillName(m), readSkillStatus(m));
+    protected void process(MatchResult m) {
+        data.get().setSkillStatus(readSkillName(m), readSkillStatus(m));
     }
 
-    private int readSkillStatus(Matcher m) {
-        return Integer.parseInt(m.group(2));
+    private int readSkillStatus(MatchResult m) {
+        return parseInt(m, 2);
     }
 
-    private String readSkillName(Matcher m) {
-        return normalizeSkillName(m.group(1));
+    private String readSkillName(MatchResult m) {
+        return normalizeSkillName(m, 1);
     }
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package batmudgoalsplugin;
 
-import java.util.regex.Matcher;
+import java.util.function.Supplier;
+import java.util.regex.MatchResult;
 
 import batmudgoalsplugin.data.BatMUDGoalsPluginData;
 
@@ -10,16 +11,24 @@ import batmudgoalsplugin.data.BatMUDGoalsPluginData;
  */
 class TrainedPartiallyOutputProcessor extends AbstractOutputProcessor {
 
-    private final BatMUDGoalsPluginData data;
+    private final Supplier<BatMUDGoalsPluginData> data;
 
     public TrainedPartiallyOutputProcessor(BatMUDGoalsPluginData data) {
+        this(() -> data);
+    }
+
+    /**
+     * @param data of the character logged in, looked up on every line
+     */
+    public TrainedPartiallyOutputProcessor(Supplier<BatMUDGoalsPluginData> data) {
         super(
-                "You partially (?:train|study) ([\\w\\s]+) which cost you 300000 experience.\\s*");
+                "You partially (?:train|study) ([\\w\\s]+) which cost you 300000 experience.\\s*",
+                "You partially ", " which cost you 300000 experience");
         this.data = data;
     }
 
     @Override
-    protected void process(Matcher m) {
-        data.trainPartially(normalizeSkillName(m.group(1)));
+    protected void process(MatchResult m) {
+        data.get().trainPartially(normalizeSkillName(m, 1));
     }
 }
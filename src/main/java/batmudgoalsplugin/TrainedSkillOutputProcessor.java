@@ -1,6 +1,7 @@
 package batmudgoalsplugin;
 
-import java.util.regex.Matcher;
+import java.util.function.Supplier;
+import java.util.regex.MatchResult;
 
 import batmudgoalsplugin.data.BatMUDGoalsPluginData;
 
@@ -15,17 +16,26 @@ import batmudgoalsplugin.data.BatMUDGoalsPluginData;
  * </code>
  */
 class TrainedSkillOutputProcessor extends AbstractOutputProcessor {
-    private final BatMUDGoalsPluginData data;
+    private final Supplier<BatMUDGoalsPluginData> data;
 
     public TrainedSkillOutputProcessor(BatMUDGoalsPluginData data) {
-        super("You now have '([^']+)' at (\\d+)% without special bonuses.\\s*");
+        this(() -> data);
+    }
+
+    /**
+     * @param data of the character logged in, looked up on every line
+     */
+    public TrainedSkillOutputProcessor(Supplier<BatMUDGoalsPluginData> data) {
+        super("You now have '([^']+)' at (\\d+)% without special bonuses.\\s*",
+                "You now have '", "% without special bonuses");
         this.data = data;
     }
 
     @Override
-    protected void process(Matcher m) {
-        String skillName = normalizeSkillName(m.group(1));
-        data.setSkillStatus(skillName, Integer.parseInt(m.group(2).trim()));
+    protected void process(MatchResult m) {
+        String skillName = normalizeSkillName(m, 1);
+        BatMUDGoalsPluginData data = this.data.get();
+        data.setSkillStatus(skillName, parseInt(m, 2));
         data.clearPartialTrains(skillName);
     }
 
@@ -1,178 +1,326 @@
 package batmudgoalsplugin.data;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
+import batmudgoalsplugin.jfr.DataMutationEvent;
+import batmudgoalsplugin.jfr.PersistenceEvent;
+
 public class BatMUDGoalsPluginData {
 
-    private static final String BEGIN_PARTIAL_TRAINS_MARKER = ">Partial trains";
-    private static final String END_PARTIAL_TRAINS_MARKER = "<Partial trains";
-    private static final String BEGIN_GUILD_LEVELS_MARKER = ">Guild levels";
-    private static final String END_GUILD_LEVELS_MARKER = "<Guild levels";
-    private static final String BEGIN_GOAL_SKILL_MARKER = ">Goal skill";
-    private static final String END_GOAL_SKILL_MARKER = "<Goal skill";
-    private static final String BEGIN_SKILL_MAXES_MARKER = ">Skill maxes";
-    private static final String END_SKILL_MAXES_MARKER = "<Skill maxes";
-    private static final String BEGIN_SKILL_STATUSES_MARKER = ">Skill statuses";
-    private static final String END_SKILL_STATUSES_MARKER = "<Skill statuses";
-    private static final String END_SKILL_COSTS_MARKER = "<Skill costs";
-    private static final String BEGIN_SKILL_COSTS_MARKER = ">Skill costs";
-
-    private Map<String, Map<Integer, Integer>> skillCosts;
-    private Map<String, Integer> skillStatuses;
-    private Set<SkillMaxInfo> skillMaxes;
-    private String goalSkill;
-    private Map<String, Integer> guildLevels;
-    private Map<String, Integer> partialTrains;
+    private static final int NONE = SymbolTable.NONE;
+    private static final ILoadProblemListener IGNORE_PROBLEMS = (offset, problem) -> {
+    };
+
+    /*
+     * Skills and guilds are stored by their ids in the symbol tables. The public
+     * methods translate names to ids and back.
+     */
+    private final SymbolTable skills;
+    private final SymbolTable guilds;
+    /** Costs of percents by skill id, null if skill is not in cost library */
+    private SkillCostTable[] skillCosts = new SkillCostTable[0];
+    /** Percents by skill id, NONE if not known */
+    private int[] skillStatuses = new int[0];
+    private SkillMaxIndex skillMaxes;
+    private int goalSkill = NONE;
+    /** Levels by guild id, NONE if not known */
+    private int[] guildLevels = new int[0];
+    /** Number of partial trains by skill id */
+    private int[] partialTrains = new int[0];
+    private volatile long version;
+    private IMutationListener mutationListener;
+    private CostLibrary costLibrary;
+    /*
+     * Sections of a binary file not decoded yet, see #deferSections. Every
+     * access to the skill costs or skill maxes decodes them first.
+     */
+    private BinaryDataFormat.Section pendingSkillCosts;
+    private BinaryDataFormat.Section pendingSkillMaxes;
+    /*
+     * Sections which could not be decoded. The costs or maxes start empty, and
+     * the section is written back as it was until they are changed.
+     */
+    private BinaryDataFormat.Section undecodedSkillCosts;
+    private BinaryDataFormat.Section undecodedSkillMaxes;
 
     public BatMUDGoalsPluginData() {
+        skills = new SymbolTable();
+        guilds = new SymbolTable();
+        skillMaxes = new SkillMaxIndex();
     }
 
-    private static void skipReaderTo(BufferedReader reader, String marker) throws IOException {
-        while(!marker.equals(reader.readLine()));
+    private BatMUDGoalsPluginData(BatMUDGoalsPluginData other) {
+        skills = other.skills.copy();
+        guilds = other.guilds.copy();
+        skillMaxes = other.skillMaxes.copy();
+        skillCosts = new SkillCostTable[other.skillCosts.length];
+        for (int skill = 0; skill < skillCosts.length; skill++) {
+            skillCosts[skill] = other.skillCosts[skill] == null ? null : other.skillCosts[skill].copy();
+        }
+        skillStatuses = other.skillStatuses.clone();
+        goalSkill = other.goalSkill;
+        guildLevels = other.guildLevels.clone();
+        partialTrains = other.partialTrains.clone();
+        version = other.version;
+        costLibrary = other.costLibrary;
+        // The sections are not modified by decoding, both can decode them
+        pendingSkillCosts = other.pendingSkillCosts;
+        pendingSkillMaxes = other.pendingSkillMaxes;
+        undecodedSkillCosts = other.undecodedSkillCosts;
+        undecodedSkillMaxes = other.undecodedSkillMaxes;
     }
 
+    /**
+     * Copies the data, e.g. to save it while this one keeps changing. The copy
+     * has the same version and no mutation listener.
+     *
+     * @return deep copy of the data
+     */
+    public BatMUDGoalsPluginData copy() {
+        return new BatMUDGoalsPluginData(this);
+    }
+
+    /**
+     * The version grows by every change to the data, or to the shared cost
+     * library, so anything computed from the data can be kept until the version
+     * changes.
+     *
+     * @return version of the data
+     */
+    public long getVersion() {
+        return costLibrary == null ? version : version + costLibrary.getGeneration();
+    }
+
+    /**
+     * Reads the data in either of the formats, see {@link DataFormat#of(File)}.
+     * Skill names are interned, like the names parsed from the output of the
+     * game, so lookups usually find the key by identity. An empty file gives
+     * empty data.
+     *
+     * @param file
+     * @return data read from file
+     */
     public static BatMUDGoalsPluginData fromFile(File file) {
-        BatMUDGoalsPluginData data = new BatMUDGoalsPluginData();
-        String line;
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            skipReaderTo(reader, BEGIN_SKILL_COSTS_MARKER);
-            while (!END_SKILL_COSTS_MARKER.equals((line = reader.readLine()))) {
-                String skill = line.substring(1);
-                while(!"<".equals((line = reader.readLine()))) {
-                    String[] parts = line.split(",");
-                    data.setSkillCostForLevel(skill, Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+        return fromFile(file, IGNORE_PROBLEMS);
+    }
+
+    /**
+     * Reads the data like {@link #fromFile(File)}. Parts of a text file which
+     * cannot be read are skipped and reported to the listener.
+     *
+     * @param file
+     * @param listener
+     * @return data read from file
+     */
+    public static BatMUDGoalsPluginData fromFile(File file, ILoadProblemListener listener) {
+        PersistenceEvent event = PersistenceEvent.start();
+        DataFormat format = null;
+        try {
+            if (file.length() == 0) {
+                return new BatMUDGoalsPluginData();
+            }
+            format = DataFormat.of(file);
+            try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+                if (format == DataFormat.BINARY) {
+                    return BinaryDataFormat.read(in);
                 }
+                return TextDataFormat.read(in, listener);
             }
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot deserialize Batmud goals data!", e);
+        } finally {
+            commit(event, PersistenceEvent.LOAD, file, format);
+        }
+    }
 
-            skipReaderTo(reader, BEGIN_SKILL_STATUSES_MARKER);
-            while(!END_SKILL_STATUSES_MARKER.equals((line = reader.readLine()))) {
-                String[] parts = line.split(",");
-                data.setSkillStatus(parts[0], Integer.parseInt(parts[1]));
-            }
+    /**
+     * Reads the data saved in full and replays the journals of the changes made
+     * after it was saved
+     *
+     * @param file
+     * @param journals see {@link MutationJournal}, replayed in the given order,
+     *                 may be missing
+     * @return data read from the files
+     */
+    public static BatMUDGoalsPluginData fromFile(File file, File... journals) {
+        return fromFile(file, IGNORE_PROBLEMS, journals);
+    }
 
-            skipReaderTo(reader, BEGIN_SKILL_MAXES_MARKER);
-            while(!END_SKILL_MAXES_MARKER.equals((line = reader.readLine()))) {
-                String[] parts = line.split(",");
-                data.setSkillMaxInfo(parts[0], parts[3], Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
-            }
-            skipReaderTo(reader, BEGIN_GOAL_SKILL_MARKER);
-            while(!END_GOAL_SKILL_MARKER.equals((line = reader.readLine()))) {
-                data.setGoalSkill(line);
+    /**
+     * @param file
+     * @param listener told about the parts of a text file which cannot be read
+     *                 and about records ending the replay of a journal early,
+     *                 each problem starts with the file it is in
+     * @param journals see {@link MutationJournal}, replayed in the given order,
+     *                 may be missing
+     * @return data read from the files
+     */
+    public static BatMUDGoalsPluginData fromFile(File file, ILoadProblemListener listener, File... journals) {
+        BatMUDGoalsPluginData data = fromFile(file, (offset, problem) -> listener.problemAt(offset,
+                file + ": " + problem));
+        try {
+            for (File journal : journals) {
+                MutationJournal.replay(journal, data,
+                        (offset, problem) -> listener.problemAt(offset, journal + ": " + problem));
             }
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot replay Batmud goals journal!", e);
+        }
+        return data;
+    }
 
-            skipReaderTo(reader, BEGIN_GUILD_LEVELS_MARKER);
-            while(!END_GUILD_LEVELS_MARKER.equals((line = reader.readLine()))) {
-                String[] parts = line.split(",");
-                data.setGuildLevel(parts[0], Integer.parseInt(parts[1]));
-            }
+    /**
+     * Writes the data in the text format
+     *
+     * @param data
+     * @param file
+     */
+    public static void persistToFile(BatMUDGoalsPluginData data, File file) {
+        persistToFile(data, file, DataFormat.TEXT);
+    }
 
-            skipReaderTo(reader, BEGIN_PARTIAL_TRAINS_MARKER);
-            while(!END_PARTIAL_TRAINS_MARKER.equals((line = reader.readLine()))) {
-                String[] parts = line.split(",");
-                for(int i = 0; i < Integer.parseInt(parts[1]); i++) {
-                    data.trainPartially(parts[0]);
+    /**
+     * @param data
+     * @param file
+     * @param format
+     */
+    public static void persistToFile(BatMUDGoalsPluginData data, File file, DataFormat format) {
+        PersistenceEvent event = PersistenceEvent.start();
+        // Written aside and moved over the file, so a crash leaves either the old
+        // or the new file in place
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                if (format == DataFormat.BINARY) {
+                    BufferedOutputStream buffered = new BufferedOutputStream(out);
+                    BinaryDataFormat.write(data, buffered);
+                    buffered.flush();
+                } else {
+                    TextDataFormat.write(data, out);
                 }
+                out.getFD().sync();
+            }
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
             }
-
         } catch (IOException e) {
-            throw new RuntimeException("Cannot deserialize Batmud goals data!");}
-        return data;
+            temp.delete();
+            throw new RuntimeException("Cannot serialize the Batmud goals data!", e);
+        } finally {
+            commit(event, PersistenceEvent.SAVE, file, format);
+        }
     }
 
-    public static void persistToFile(BatMUDGoalsPluginData data, File file) {
-        try (PrintWriter writer = new PrintWriter(file)) {
-            writer.println(BEGIN_SKILL_COSTS_MARKER);
-            data.getSkillCosts().forEach(
-                                         (skill, costs) -> {
-                                             writer.println(">" + skill);
-                                             costs.forEach((level, cost) -> {
-                                                     writer.println(level + "," + cost);
-                                                 });
-                                             writer.println("<");
-                                             });
-            writer.println(END_SKILL_COSTS_MARKER);
-
-            writer.println(BEGIN_SKILL_STATUSES_MARKER);
-            data.getSkillStatuses().forEach((skill, level) -> {
-                    writer.println(skill + "," + level);
-                });
-            writer.println(END_SKILL_STATUSES_MARKER);
-
-            writer.println(BEGIN_SKILL_MAXES_MARKER);
-            data.getSkillMaxes().forEach(skillmax -> {
-                    writer.println(skillmax.guild + "," + skillmax.level + "," + skillmax.max + "," + skillmax.skill);
-                });
-            writer.println(END_SKILL_MAXES_MARKER);
-
-            writer.println(BEGIN_GOAL_SKILL_MARKER);
-            writer.println(data.getGoalSkill());
-            writer.println(END_GOAL_SKILL_MARKER);
-
-            writer.println(BEGIN_GUILD_LEVELS_MARKER);
-            data.getGuildLevels().forEach((guild, level) -> {
-                    writer.println(guild + "," + level);
-                });
-            writer.println(END_GUILD_LEVELS_MARKER);
-
-            writer.println(BEGIN_PARTIAL_TRAINS_MARKER);
-            data.getPartialTrains().forEach((skill, partial) -> {
-                    writer.println(skill + "," + partial);
-                });
-            writer.println(END_PARTIAL_TRAINS_MARKER);
+    private static void commit(PersistenceEvent event, String operation, File file, DataFormat format) {
+        if (event != null && event.shouldCommit()) {
+            event.operation = operation;
+            event.file = file.getPath();
+            event.format = format == null ? null : format.name();
+            event.bytes = file.length();
+            event.commit();
         }
-        catch (IOException e) {
-            throw new RuntimeException("Cannot serialize the Batmud goals data!");
+    }
+
+    private static void commit(DataMutationEvent event, String mutation, String skill, String guild, int value) {
+        if (event != null && event.shouldCommit()) {
+            event.mutation = mutation;
+            event.skill = skill;
+            event.guild = guild;
+            event.value = value;
+            event.commit();
         }
     }
 
+    /**
+     * @return number of partial trains by skill name
+     */
     public Map<String, Integer> getPartialTrains() {
-        if (partialTrains == null) {
-            partialTrains = new HashMap<>();
+        Map<String, Integer> map = new HashMap<>();
+        for (int skill = 0; skill < partialTrains.length; skill++) {
+            if (partialTrains[skill] > 0) {
+                map.put(skills.name(skill), partialTrains[skill]);
+            }
         }
-        return partialTrains;
+        return Collections.unmodifiableMap(map);
     }
 
-    private Map<String, Integer> getSkillStatuses() {
-        if (skillStatuses == null) {
-            skillStatuses = new HashMap<>();
+    /**
+     * @return skill maxes of all the guild levels
+     */
+    public Set<SkillMaxInfo> getSkillMaxes() {
+        loadSkillMaxes();
+        Set<SkillMaxInfo> set = new HashSet<>();
+        for (int skill = 0; skill < skillMaxes.skillCapacity(); skill++) {
+            for (SkillMaxIndex.Rows rows : skillMaxes.rowsOf(skill)) {
+                for (int row = 0; row < rows.size(); row++) {
+                    set.add(new SkillMaxInfo(guilds.name(rows.guild()), skills.name(skill), rows.level(row),
+                            rows.max(row)));
+                }
+            }
         }
-        return skillStatuses;
+        return Collections.unmodifiableSet(set);
     }
 
     /**
-     * @return the skills
+     * @param skill
+     * @return guilds which have skill maxes for the skill
      */
-    private Map<String, Map<Integer, Integer>> getSkillCosts() {
-        if (skillCosts == null) {
-            skillCosts = new HashMap<>();
+    public Collection<String> getGuildsTeaching(String skill) {
+        loadSkillMaxes();
+        List<String> teaching = new ArrayList<>();
+        for (SkillMaxIndex.Rows rows : skillMaxes.rowsOf(skills.find(skill))) {
+            teaching.add(guilds.name(rows.guild()));
         }
-        return skillCosts;
+        return teaching;
     }
 
     /**
-     * @return the guildlevels
+     * @param guild
+     * @param skill
+     * @param level guild level
+     * @return highest max of the skill available at or below the level of the
+     *         guild, 0 if none
      */
-    private Map<String, Integer> getGuildLevels() {
-        if (guildLevels == null) {
-            guildLevels = new HashMap<>();
-        }
-        return guildLevels;
+    public int getHighestSkillMax(String guild, String skill, int level) {
+        loadSkillMaxes();
+        SkillMaxIndex.Rows rows = skillMaxes.rows(skills.find(skill), guilds.find(guild));
+        return rows == null ? 0 : rows.highestMax(level);
     }
 
-    public Set<SkillMaxInfo> getSkillMaxes() {
-        if (skillMaxes == null) {
-            skillMaxes = new HashSet<>();
-        }
-        return skillMaxes;
+    /**
+     * @param guild
+     * @param skill
+     * @param percent
+     * @return lowest level of the guild at which the skill can be trained to
+     *         percent, -1 if the guild does not offer percent
+     */
+    public int getLevelForSkillMax(String guild, String skill, int percent) {
+        loadSkillMaxes();
+        SkillMaxIndex.Rows rows = skillMaxes.rows(skills.find(skill), guilds.find(guild));
+        return rows == null ? NONE : rows.levelFor(percent);
     }
 
     /**
@@ -181,14 +329,20 @@ public class BatMUDGoalsPluginData {
      * @param skill
      */
     public void setGoalSkill(String skill) {
-        goalSkill = skill;
+        DataMutationEvent event = DataMutationEvent.start();
+        goalSkill = skill == null ? NONE : skills.id(skill);
+        version++;
+        if (mutationListener != null) {
+            mutationListener.goalSkillSet(skill);
+        }
+        commit(event, "goalSkillSet", skill, null, 0);
     }
 
     /**
      * @return true if goal has been set, false if not
      */
     public boolean isGoalSet() {
-        return goalSkill != null;
+        return goalSkill != NONE;
     }
 
     /**
@@ -198,14 +352,14 @@ public class BatMUDGoalsPluginData {
      * @return true if skill is goal skill, false otherwise
      */
     public boolean isGoalSkill(String skill) {
-        return skill.equals(goalSkill);
+        return goalSkill != NONE && skills.find(skill) == goalSkill;
     }
 
     /**
      * @return true if goal skill is maxed, false otherwise
      */
     public boolean isGoalSkillMaxed() {
-        return getSkillStatuses().get(goalSkill) == 100;
+        return skillStatus(goalSkill) == 100;
     }
 
     /**
@@ -215,7 +369,15 @@ public class BatMUDGoalsPluginData {
      * @param percent
      */
     public void setSkillStatus(String skill, int percent) {
-        getSkillStatuses().put(skill, percent);
+        DataMutationEvent event = DataMutationEvent.start();
+        int id = skills.id(skill);
+        skillStatuses = ensureCapacity(skillStatuses, id);
+        skillStatuses[id] = percent;
+        version++;
+        if (mutationListener != null) {
+            mutationListener.skillStatusSet(skill, percent);
+        }
+        commit(event, "skillStatusSet", skill, null, percent);
     }
 
     /**
@@ -225,7 +387,14 @@ public class BatMUDGoalsPluginData {
      * @return
      */
     public int getCurrentSkillStatus(String skill) {
-        return getSkillStatuses().get(skill);
+        return skillStatus(skills.find(skill));
+    }
+
+    private int skillStatus(int skill) {
+        if (skill == NONE || skill >= skillStatuses.length || skillStatuses[skill] == NONE) {
+            throw new NoSuchElementException("Percent of skill is not known: " + nameOf(skills, skill));
+        }
+        return skillStatuses[skill];
     }
 
     /**
@@ -236,11 +405,15 @@ public class BatMUDGoalsPluginData {
      * @param cost
      */
     public void setSkillCostForLevel(String skill, int percent, int cost) {
-        Map<String, Map<Integer, Integer>> skillcosts = getSkillCosts();
-        if (!skillcosts.containsKey(skill)) {
-            skillcosts.put(skill, new HashMap<Integer, Integer>());
+        // Decoding the costs of a file is not part of the change
+        SkillCostTable costs = createSkillCostTable(skills.id(skill));
+        DataMutationEvent event = DataMutationEvent.start();
+        costs.set(percent, cost);
+        version++;
+        if (mutationListener != null) {
+            mutationListener.skillCostSet(skill, percent, cost);
         }
-        skillcosts.get(skill).put(percent, cost);
+        commit(event, "skillCostSet", skill, null, cost);
     }
 
     /**
@@ -251,33 +424,59 @@ public class BatMUDGoalsPluginData {
      * @return
      */
     public int getSkillCost(String skill, int percent) {
-        return getSkillCosts().get(skill).get(percent);
+        return skillCost(skills.find(skill), skill, percent);
+    }
+
+    /**
+     * Costs learned by this character are looked up first, then the shared
+     * cost library
+     */
+    private int skillCost(int skill, String name, int percent) {
+        if (hasOwnCosts(skill) && skillCosts[skill].contains(percent)) {
+            return skillCosts[skill].get(percent);
+        }
+        int cost = costLibrary == null || name == null ? NONE : costLibrary.getCost(name, percent);
+        if (cost == NONE) {
+            throw new NoSuchElementException("Cost of " + percent + "% is not known for skill: " + name);
+        }
+        return cost;
     }
 
     /**
      * @return next percent of goal skill
      */
     public int getGoalPercent() {
-        return getSkillStatuses().get(goalSkill) + 1;
+        return skillStatus(goalSkill) + 1;
     }
 
     /**
      * @return cost to improve the goal skill to the given percent value
      */
     public int getImproveGoalSkillCost() {
-        int partials = 0;
-        Map<String, Integer> map = getPartialTrains();
-        if (map.containsKey(goalSkill)) {
-            partials = map.get(goalSkill);
-        }
-        return getSkillCosts().get(goalSkill).get(getGoalPercent()) - partials * 250000;
+        int partials = goalSkill != NONE && goalSkill < partialTrains.length ? partialTrains[goalSkill] : 0;
+        return skillCost(goalSkill, getGoalSkill(), getGoalPercent()) - partials * 250000;
     }
 
     /**
-     * @return collection of the skills stored
+     * @return collection of the skills stored, here or in the shared cost
+     *         library
      */
     public Collection<String> getStoredSkills() {
-        return getSkillCosts().keySet();
+        loadSkillCosts();
+        List<String> stored = new ArrayList<>();
+        for (int skill = 0; skill < skillCosts.length; skill++) {
+            if (skillCosts[skill] != null) {
+                stored.add(skills.name(skill));
+            }
+        }
+        if (costLibrary != null) {
+            for (String skill : costLibrary.getSkills()) {
+                if (!hasOwnCosts(skills.find(skill))) {
+                    stored.add(skill);
+                }
+            }
+        }
+        return stored;
     }
 
     /**
@@ -287,22 +486,49 @@ public class BatMUDGoalsPluginData {
      * @return
      */
     public boolean isSkillInCostLibrary(String skill) {
-        return getSkillCosts().containsKey(skill);
+        return hasOwnCosts(skills.find(skill)) || costLibrary != null && costLibrary.contains(skill);
+    }
+
+    /**
+     * @param skill id
+     * @return true if this character has learned costs of the skill which are
+     *         not in the shared cost library
+     */
+    private boolean hasOwnCosts(int skill) {
+        loadSkillCosts();
+        return skill != NONE && skill < skillCosts.length && skillCosts[skill] != null;
     }
 
     /**
      * @return current goal skill
      */
     public String getGoalSkill() {
-        return goalSkill;
+        return goalSkill == NONE ? null : skills.name(goalSkill);
     }
 
     public void setGuildLevel(String guild, int level) {
-        getGuildLevels().put(guild, level);
+        DataMutationEvent event = DataMutationEvent.start();
+        int id = guilds.id(guild);
+        guildLevels = ensureCapacity(guildLevels, id);
+        guildLevels[id] = level;
+        version++;
+        if (mutationListener != null) {
+            mutationListener.guildLevelSet(guild, level);
+        }
+        commit(event, "guildLevelSet", null, guild, level);
     }
 
     public void setSkillMaxInfo(String guild, String skill, int level, int skillMax) {
-        getSkillMaxes().add(new SkillMaxInfo(guild, skill, level, skillMax));
+        loadSkillMaxes();
+        DataMutationEvent event = DataMutationEvent.start();
+        if (skillMaxes.add(guilds.id(guild), skills.id(skill), level, skillMax)) {
+            undecodedSkillMaxes = null;
+            version++;
+            if (mutationListener != null) {
+                mutationListener.skillMaxAdded(guild, skill, level, skillMax);
+            }
+            commit(event, "skillMaxAdded", skill, guild, skillMax);
+        }
     }
 
     /**
@@ -312,7 +538,11 @@ public class BatMUDGoalsPluginData {
      * @return
      */
     public int getGuildLevel(String guild) {
-        return getGuildLevels().get(guild);
+        int id = guilds.find(guild);
+        if (id == NONE || id >= guildLevels.length || guildLevels[id] == NONE) {
+            throw new NoSuchElementException("Level is not known in guild: " + guild);
+        }
+        return guildLevels[id];
     }
 
     /**
@@ -321,11 +551,11 @@ public class BatMUDGoalsPluginData {
      * @param skill
      */
     public void trainPartially(String skill) {
-        Map<String, Integer> map = getPartialTrains();
-        if (!map.containsKey(skill)) {
-            map.put(skill, 0);
+        int id = skills.id(skill);
+        if (id >= partialTrains.length) {
+            partialTrains = Arrays.copyOf(partialTrains, skills.size());
         }
-        map.put(skill, map.get(skill) + 1);
+        setPartialTrains(id, partialTrains[id] + 1);
     }
 
     /**
@@ -334,6 +564,233 @@ public class BatMUDGoalsPluginData {
      * @param skillname
      */
     public void clearPartialTrains(String skillname) {
-        getPartialTrains().remove(skillname);
+        int id = skills.find(skillname);
+        if (id != NONE && id < partialTrains.length) {
+            setPartialTrains(id, 0);
+        }
+    }
+
+    /**
+     * Sets the number of partial trains of a skill, e.g. when replaying a
+     * journal
+     *
+     * @param skill
+     * @param count
+     */
+    void setPartialTrains(String skill, int count) {
+        int id = skills.id(skill);
+        if (id >= partialTrains.length) {
+            partialTrains = Arrays.copyOf(partialTrains, skills.size());
+        }
+        setPartialTrains(id, count);
+    }
+
+    private void setPartialTrains(int skill, int count) {
+        DataMutationEvent event = DataMutationEvent.start();
+        partialTrains[skill] = count;
+        version++;
+        if (mutationListener != null) {
+            mutationListener.partialTrainsSet(skills.name(skill), count);
+        }
+        commit(event, "partialTrainsSet", skills.name(skill), null, count);
+    }
+
+    /**
+     * @param costLibrary shared with other characters, consulted for the costs
+     *                    not learned by this character, null for none
+     */
+    public void setCostLibrary(CostLibrary costLibrary) {
+        this.costLibrary = costLibrary;
+    }
+
+    /**
+     * Moves the costs learned by this character to the shared cost library,
+     * so they are no longer saved with the data of the character. The costs
+     * returned do not change. Without a library the costs stay with the data.
+     *
+     * @throws IOException
+     */
+    public void moveCostsToLibrary() throws IOException {
+        if (costLibrary == null) {
+            return;
+        }
+        costLibrary.merge(this);
+        for (int skill = 0; skill < skillCosts.length; skill++) {
+            if (hasOwnCosts(skill) && costLibrary.isKnown(skills.name(skill), skillCosts[skill])) {
+                skillCosts[skill] = null;
+            }
+        }
+    }
+
+    /**
+     * @param mutationListener notified of every change made after this call,
+     *                         null to stop notifications
+     */
+    public void setMutationListener(IMutationListener mutationListener) {
+        this.mutationListener = mutationListener;
+    }
+
+    /*
+     * Access to the stored values by id, for the persistence formats
+     */
+
+    SymbolTable skillNames() {
+        return skills;
+    }
+
+    SymbolTable guildNames() {
+        return guilds;
+    }
+
+    int goalSkillId() {
+        return goalSkill;
+    }
+
+    /**
+     * @param skill id
+     * @return cost table of the skill, null if skill is not in cost library
+     */
+    SkillCostTable skillCostTable(int skill) {
+        return hasOwnCosts(skill) ? skillCosts[skill] : null;
+    }
+
+    /**
+     * @param skill id
+     * @return percent of the skill, NONE if not known
+     */
+    int skillStatusOrNone(int skill) {
+        return skill < skillStatuses.length ? skillStatuses[skill] : NONE;
+    }
+
+    /**
+     * @param guild id
+     * @return level in the guild, NONE if not known
+     */
+    int guildLevelOrNone(int guild) {
+        return guild < guildLevels.length ? guildLevels[guild] : NONE;
+    }
+
+    /**
+     * @param skill id
+     * @return number of partial trains of the skill
+     */
+    int partialTrainCount(int skill) {
+        return skill < partialTrains.length ? partialTrains[skill] : 0;
+    }
+
+    /**
+     * @param skill id
+     * @return cost table of the skill, created if the skill is not in cost
+     *         library
+     */
+    SkillCostTable createSkillCostTable(int skill) {
+        loadSkillCosts();
+        undecodedSkillCosts = null;
+        if (skill >= skillCosts.length) {
+            skillCosts = Arrays.copyOf(skillCosts, Math.max(skill + 1, skillCosts.length * 2));
+        }
+        if (skillCosts[skill] == null) {
+            skillCosts[skill] = new SkillCostTable();
+        }
+        return skillCosts[skill];
+    }
+
+    SkillMaxIndex skillMaxIndex() {
+        loadSkillMaxes();
+        return skillMaxes;
+    }
+
+    /**
+     * Leaves the cost curves and skill maxes of a binary file to be decoded
+     * when first needed. They make up most of the file, while starting up only
+     * needs the goal, statuses and guild levels.
+     *
+     * @param skillCosts
+     * @param skillMaxes
+     */
+    void deferSections(BinaryDataFormat.Section skillCosts, BinaryDataFormat.Section skillMaxes) {
+        pendingSkillCosts = skillCosts;
+        pendingSkillMaxes = skillMaxes;
+    }
+
+    /**
+     * Takes the cost curves and skill maxes of a file decoded in full
+     *
+     * @param skillCosts cost tables by skill id
+     * @param skillMaxes
+     */
+    void decodedSections(SkillCostTable[] skillCosts, SkillMaxIndex skillMaxes) {
+        this.skillCosts = skillCosts;
+        this.skillMaxes = skillMaxes;
+    }
+
+    /**
+     * @return section of the cost curves which could not be decoded, to be
+     *         written back as it was, null if the curves are in the tables
+     */
+    BinaryDataFormat.Section undecodedSkillCosts() {
+        loadSkillCosts();
+        return undecodedSkillCosts;
+    }
+
+    /**
+     * @return section of the skill maxes which could not be decoded, to be
+     *         written back as it was, null if the maxes are in the index
+     */
+    BinaryDataFormat.Section undecodedSkillMaxes() {
+        loadSkillMaxes();
+        return undecodedSkillMaxes;
+    }
+
+    /**
+     * @return true if the cost curves and skill maxes have been decoded
+     */
+    boolean isFullyLoaded() {
+        return pendingSkillCosts == null && pendingSkillMaxes == null;
+    }
+
+    private void loadSkillCosts() {
+        BinaryDataFormat.Section section = pendingSkillCosts;
+        if (section != null) {
+            try (DataInputStream in = section.open()) {
+                skillCosts = BinaryDataFormat.readSkillCosts(in, skills.size());
+            } catch (IOException e) {
+                // Costs are learned again, the file keeps the ones it has
+                undecodedSkillCosts = section;
+            }
+            pendingSkillCosts = null;
+        }
+    }
+
+    private void loadSkillMaxes() {
+        BinaryDataFormat.Section section = pendingSkillMaxes;
+        if (section != null) {
+            try (DataInputStream in = section.open()) {
+                skillMaxes = BinaryDataFormat.readSkillMaxes(in, skills.size(), guilds.size());
+            } catch (IOException e) {
+                undecodedSkillMaxes = section;
+            }
+            pendingSkillMaxes = null;
+        }
+    }
+
+    /**
+     * Grows an array indexed by id to hold the id, filling new slots with NONE
+     *
+     * @param values
+     * @param id
+     * @return values or a larger copy of it
+     */
+    private static int[] ensureCapacity(int[] values, int id) {
+        if (id < values.length) {
+            return values;
+        }
+        int[] grown = Arrays.copyOf(values, Math.max(id + 1, values.length * 2));
+        Arrays.fill(grown, values.length, grown.length, NONE);
+        return grown;
+    }
+
+    private static String nameOf(SymbolTable table, int id) {
+        return id == NONE ? null : table.name(id);
     }
 }
@@ -0,0 +1,524 @@
+package batmudgoalsplugin.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+
+/**
+ * Binary format of the plugin data. After the header, numbers are unsigned
+ * LEB128 varints and names are in the modified UTF-8 of
+ * {@link DataOutputStream#writeUTF(String)}. Skills and guilds are written
+ * once, in the names section, and referred to by id elsewhere.
+ *
+ * <pre>
+ * header        magic "BMGP" (int), version (byte)
+ * directory     sections (byte), (section id (byte), offset (int), length (int))...
+ * names         skills, name..., guilds, name...
+ * goal skill    skill id + 1, 0 if no goal
+ * statuses      count, (skill id, percent)...
+ * guild levels  count, (guild id, level)...
+ * partials      count, (skill id, partial trains)...
+ * cost curves   count, (skill id, percents, (percent delta, zigzag cost delta)...)...
+ * skill maxes   count, (skill id, guild id, rows, (level delta, max)...)...
+ * </pre>
+ *
+ * Offsets in the directory are from the start of the file. Sections not known
+ * by the reader are skipped. The cost curves and skill maxes make up nearly all
+ * of the file, so they are only decoded when first needed, see
+ * {@link BatMUDGoalsPluginData}.
+ * <p>
+ * Percents and levels of a curve are written in ascending order as the
+ * difference to the previous one, and costs as the zigzag encoded difference
+ * to the previous cost, so a typical cost curve takes two or three bytes per
+ * percent.
+ * <p>
+ * Version 1 had no directory, the sections followed the header in the order
+ * above. It is still read.
+ */
+final class BinaryDataFormat {
+
+    /** "BMGP" */
+    static final int MAGIC = 0x424D4750;
+    static final int VERSION = 2;
+    private static final int VERSION_WITHOUT_DIRECTORY = 1;
+
+    static final int NAMES = 1;
+    static final int GOAL_SKILL = 2;
+    static final int SKILL_STATUSES = 3;
+    static final int GUILD_LEVELS = 4;
+    static final int PARTIAL_TRAINS = 5;
+    static final int SKILL_COSTS = 6;
+    static final int SKILL_MAXES = 7;
+
+    private static final int HEADER_LENGTH = Integer.BYTES + 1;
+    private static final int DIRECTORY_ENTRY_LENGTH = 1 + 2 * Integer.BYTES;
+
+    /** Bytes of a section read from a file */
+    static final class Section {
+        private final byte[] bytes;
+        private final int offset;
+        private final int length;
+
+        Section(byte[] bytes, int offset, int length) {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        DataInputStream open() {
+            return new DataInputStream(new ByteArrayInputStream(bytes, offset, length));
+        }
+
+        int length() {
+            return length;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.write(bytes, offset, length);
+        }
+    }
+
+    private BinaryDataFormat() {
+    }
+
+    /**
+     * @param data
+     * @param out
+     * @throws IOException
+     */
+    static void write(BatMUDGoalsPluginData data, OutputStream out) throws IOException {
+        int[] ids = { NAMES, GOAL_SKILL, SKILL_STATUSES, GUILD_LEVELS, PARTIAL_TRAINS, SKILL_COSTS, SKILL_MAXES };
+        ByteArrayOutputStream[] sections = new ByteArrayOutputStream[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            sections[i] = new ByteArrayOutputStream();
+            DataOutputStream section = new DataOutputStream(sections[i]);
+            writeSection(data, ids[i], section);
+            section.flush();
+        }
+
+        DataOutputStream dout = new DataOutputStream(out);
+        dout.writeInt(MAGIC);
+        dout.writeByte(VERSION);
+        dout.writeByte(ids.length);
+        int offset = HEADER_LENGTH + 1 + ids.length * DIRECTORY_ENTRY_LENGTH;
+        for (int i = 0; i < ids.length; i++) {
+            dout.writeByte(ids[i]);
+            dout.writeInt(offset);
+            dout.writeInt(sections[i].size());
+            offset += sections[i].size();
+        }
+        for (ByteArrayOutputStream section : sections) {
+            section.writeTo(dout);
+        }
+        dout.flush();
+    }
+
+    private static void writeSection(BatMUDGoalsPluginData data, int id, DataOutputStream dout) throws IOException {
+        SymbolTable skills = data.skillNames();
+        SymbolTable guilds = data.guildNames();
+        switch (id) {
+        case NAMES:
+            writeNames(dout, skills);
+            writeNames(dout, guilds);
+            break;
+        case GOAL_SKILL:
+            writeVarint(dout, data.goalSkillId() + 1);
+            break;
+        case SKILL_STATUSES:
+            int statuses = 0;
+            for (int skill = 0; skill < skills.size(); skill++) {
+                if (data.skillStatusOrNone(skill) != SymbolTable.NONE) {
+                    statuses++;
+                }
+            }
+            writeVarint(dout, statuses);
+            for (int skill = 0; skill < skills.size(); skill++) {
+                if (data.skillStatusOrNone(skill) != SymbolTable.NONE) {
+                    writeVarint(dout, skill);
+                    writeVarint(dout, data.skillStatusOrNone(skill));
+                }
+            }
+            break;
+        case GUILD_LEVELS:
+            int levels = 0;
+            for (int guild = 0; guild < guilds.size(); guild++) {
+                if (data.guildLevelOrNone(guild) != SymbolTable.NONE) {
+                    levels++;
+                }
+            }
+            writeVarint(dout, levels);
+            for (int guild = 0; guild < guilds.size(); guild++) {
+                if (data.guildLevelOrNone(guild) != SymbolTable.NONE) {
+                    writeVarint(dout, guild);
+                    writeVarint(dout, data.guildLevelOrNone(guild));
+                }
+            }
+            break;
+        case PARTIAL_TRAINS:
+            int partials = 0;
+            for (int skill = 0; skill < skills.size(); skill++) {
+                if (data.partialTrainCount(skill) > 0) {
+                    partials++;
+                }
+            }
+            writeVarint(dout, partials);
+            for (int skill = 0; skill < skills.size(); skill++) {
+                if (data.partialTrainCount(skill) > 0) {
+                    writeVarint(dout, skill);
+                    writeVarint(dout, data.partialTrainCount(skill));
+                }
+            }
+            break;
+        case SKILL_COSTS:
+            if (data.undecodedSkillCosts() != null) {
+                data.undecodedSkillCosts().writeTo(dout);
+                break;
+            }
+            int curves = 0;
+            for (int skill = 0; skill < skills.size(); skill++) {
+                if (data.skillCostTable(skill) != null) {
+                    curves++;
+                }
+            }
+            writeVarint(dout, curves);
+            for (int skill = 0; skill < skills.size(); skill++) {
+                SkillCostTable costs = data.skillCostTable(skill);
+                if (costs != null) {
+                    writeVarint(dout, skill);
+                    writeVarint(dout, costs.size());
+                    int previousPercent = 0;
+                    int previousCost = 0;
+                    for (int percent = costs.nextPercent(0); percent >= 0; percent = costs
+                            .nextPercent(percent + 1)) {
+                        writeVarint(dout, percent - previousPercent);
+                        writeVarint(dout, zigzag(costs.get(percent) - previousCost));
+                        previousPercent = percent;
+                        previousCost = costs.get(percent);
+                    }
+                }
+            }
+            break;
+        case SKILL_MAXES:
+            if (data.undecodedSkillMaxes() != null) {
+                data.undecodedSkillMaxes().writeTo(dout);
+                break;
+            }
+            SkillMaxIndex skillMaxes = data.skillMaxIndex();
+            int groups = 0;
+            for (int skill = 0; skill < skillMaxes.skillCapacity(); skill++) {
+                groups += skillMaxes.rowsOf(skill).length;
+            }
+            writeVarint(dout, groups);
+            for (int skill = 0; skill < skillMaxes.skillCapacity(); skill++) {
+                for (SkillMaxIndex.Rows rows : skillMaxes.rowsOf(skill)) {
+                    writeVarint(dout, skill);
+                    writeVarint(dout, rows.guild());
+                    writeVarint(dout, rows.size());
+                    int previousLevel = 0;
+                    for (int row = 0; row < rows.size(); row++) {
+                        writeVarint(dout, rows.level(row) - previousLevel);
+                        writeVarint(dout, rows.max(row));
+                        previousLevel = rows.level(row);
+                    }
+                }
+            }
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown section " + id);
+        }
+    }
+
+    /**
+     * Reads the names, goal, statuses, guild levels and partial trains. The
+     * cost curves and skill maxes are handed to the data to be decoded on first
+     * access.
+     *
+     * @param in positioned at the magic number
+     * @return data read
+     * @throws IOException if the input is not in this format or it is truncated
+     */
+    static BatMUDGoalsPluginData read(InputStream in) throws IOException {
+        DataInputStream din = new DataInputStream(in);
+        if (din.readInt() != MAGIC) {
+            throw new IOException("Not BatMUDGoalsPlugin binary data");
+        }
+        int version = din.readUnsignedByte();
+        if (version == VERSION_WITHOUT_DIRECTORY) {
+            return readWithoutDirectory(din);
+        }
+        if (version != VERSION) {
+            throw new IOException("Unsupported data format version " + version);
+        }
+
+        int count = din.readUnsignedByte();
+        int[] ids = new int[count];
+        int[] offsets = new int[count];
+        int[] lengths = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = din.readUnsignedByte();
+            offsets[i] = din.readInt();
+            lengths[i] = din.readInt();
+        }
+        int start = HEADER_LENGTH + 1 + count * DIRECTORY_ENTRY_LENGTH;
+        byte[] rest = din.readAllBytes();
+        Section[] sections = new Section[SKILL_MAXES + 1];
+        for (int i = 0; i < count; i++) {
+            if (offsets[i] < start || lengths[i] < 0 || offsets[i] - start > rest.length - lengths[i]) {
+                throw new EOFException("Section " + ids[i] + " is outside of the data");
+            }
+            if (ids[i] < sections.length) {
+                sections[ids[i]] = new Section(rest, offsets[i] - start, lengths[i]);
+            }
+        }
+        for (int id = NAMES; id <= SKILL_MAXES; id++) {
+            if (sections[id] == null) {
+                throw new IOException("Section " + id + " is missing");
+            }
+        }
+
+        BatMUDGoalsPluginData data = new BatMUDGoalsPluginData();
+        String[] skills;
+        String[] guilds;
+        try (DataInputStream section = sections[NAMES].open()) {
+            skills = readNames(section);
+            guilds = readNames(section);
+        }
+        // Keep the ids of the file
+        for (String skill : skills) {
+            data.skillNames().id(skill);
+        }
+        for (String guild : guilds) {
+            data.guildNames().id(guild);
+        }
+        try (DataInputStream section = sections[GOAL_SKILL].open()) {
+            readGoalSkill(section, data, skills);
+        }
+        try (DataInputStream section = sections[SKILL_STATUSES].open()) {
+            readSkillStatuses(section, data, skills);
+        }
+        try (DataInputStream section = sections[GUILD_LEVELS].open()) {
+            readGuildLevels(section, data, guilds);
+        }
+        try (DataInputStream section = sections[PARTIAL_TRAINS].open()) {
+            readPartialTrains(section, data, skills);
+        }
+        data.deferSections(sections[SKILL_COSTS], sections[SKILL_MAXES]);
+        return data;
+    }
+
+    private static BatMUDGoalsPluginData readWithoutDirectory(DataInputStream file) throws IOException {
+        // In memory, so that the names can be bounded by the bytes left
+        DataInputStream din = new DataInputStream(new ByteArrayInputStream(file.readAllBytes()));
+        BatMUDGoalsPluginData data = new BatMUDGoalsPluginData();
+        String[] skills = readNames(din);
+        String[] guilds = readNames(din);
+        for (String skill : skills) {
+            data.skillNames().id(skill);
+        }
+        for (String guild : guilds) {
+            data.guildNames().id(guild);
+        }
+        readGoalSkill(din, data, skills);
+        readSkillStatuses(din, data, skills);
+        readGuildLevels(din, data, guilds);
+        readPartialTrains(din, data, skills);
+        data.decodedSections(readSkillCosts(din, skills.length), readSkillMaxes(din, skills.length, guilds.length));
+        return data;
+    }
+
+    private static void readGoalSkill(DataInputStream din, BatMUDGoalsPluginData data, String[] skills)
+            throws IOException {
+        int goal = readId(din, skills.length + 1, "goal skill") - 1;
+        if (goal != SymbolTable.NONE) {
+            data.setGoalSkill(skills[goal]);
+        }
+    }
+
+    private static void readSkillStatuses(DataInputStream din, BatMUDGoalsPluginData data, String[] skills)
+            throws IOException {
+        for (int i = readVarint(din); i > 0; i--) {
+            data.setSkillStatus(skills[readId(din, skills.length, "skill")], readVarint(din));
+        }
+    }
+
+    private static void readGuildLevels(DataInputStream din, BatMUDGoalsPluginData data, String[] guilds)
+            throws IOException {
+        for (int i = readVarint(din); i > 0; i--) {
+            data.setGuildLevel(guilds[readId(din, guilds.length, "guild")], readVarint(din));
+        }
+    }
+
+    private static void readPartialTrains(DataInputStream din, BatMUDGoalsPluginData data, String[] skills)
+            throws IOException {
+        for (int i = readVarint(din); i > 0; i--) {
+            data.setPartialTrains(skills[readId(din, skills.length, "skill")], readVarint(din));
+        }
+    }
+
+    /**
+     * Decodes cost curves without touching the data, so that a corrupt section
+     * leaves no curves half read
+     *
+     * @param din
+     * @param skillCount number of skill names
+     * @return cost tables by skill id, null if none
+     * @throws IOException
+     */
+    static SkillCostTable[] readSkillCosts(DataInputStream din, int skillCount) throws IOException {
+        SkillCostTable[] skillCosts = new SkillCostTable[skillCount];
+        for (int i = readVarint(din); i > 0; i--) {
+            int skill = readId(din, skillCount, "skill");
+            if (skillCosts[skill] == null) {
+                skillCosts[skill] = new SkillCostTable();
+            }
+            SkillCostTable costs = skillCosts[skill];
+            int percent = 0;
+            int cost = 0;
+            for (int n = readVarint(din); n > 0; n--) {
+                percent = ascending(percent, readVarint(din), "percent");
+                cost += unzigzag(readVarint(din));
+                costs.set(percent, cost);
+            }
+        }
+        return skillCosts;
+    }
+
+    /**
+     * Decodes skill maxes without touching the data, so that a corrupt section
+     * leaves no maxes half read
+     *
+     * @param din
+     * @param skillCount number of skill names
+     * @param guildCount number of guild names
+     * @return skill maxes read
+     * @throws IOException
+     */
+    static SkillMaxIndex readSkillMaxes(DataInputStream din, int skillCount, int guildCount) throws IOException {
+        SkillMaxIndex skillMaxes = new SkillMaxIndex();
+        for (int i = readVarint(din); i > 0; i--) {
+            int skill = readId(din, skillCount, "skill");
+            int guild = readId(din, guildCount, "guild");
+            int level = 0;
+            for (int n = readVarint(din); n > 0; n--) {
+                level = ascending(level, readVarint(din), "level");
+                skillMaxes.add(guild, skill, level, readVarint(din));
+            }
+        }
+        return skillMaxes;
+    }
+
+    private static void writeNames(DataOutputStream out, SymbolTable names) throws IOException {
+        writeVarint(out, names.size());
+        for (int id = 0; id < names.size(); id++) {
+            out.writeUTF(names.name(id));
+        }
+    }
+
+    /**
+     * Reads an id, so that a corrupt file is rejected instead of indexing
+     * outside of the names
+     *
+     * @param in
+     * @param count number of valid ids
+     * @param kind  of the id, for the message
+     * @return id read as a varint
+     * @throws StreamCorruptedException if the id is not below count
+     */
+    private static int readId(DataInputStream in, int count, String kind) throws IOException {
+        int id = readVarint(in);
+        if (id < 0 || id >= count) {
+            throw new StreamCorruptedException("Unknown " + kind + " id " + id);
+        }
+        return id;
+    }
+
+    /**
+     * @param previous percent or level
+     * @param delta    read from the file
+     * @param kind     of the value, for the message
+     * @return previous plus delta
+     * @throws StreamCorruptedException if the delta or the sum is negative
+     */
+    private static int ascending(int previous, int delta, String kind) throws IOException {
+        int value = previous + delta;
+        if (delta < 0 || value < 0) {
+            throw new StreamCorruptedException("Corrupt " + kind + " " + previous + " + " + delta);
+        }
+        return value;
+    }
+
+    /**
+     * Reads names written by {@link #writeNames}, so that a corrupt count is
+     * rejected instead of allocating for it
+     *
+     * @param in reading from memory, so that it knows the bytes left
+     * @return names by id
+     * @throws StreamCorruptedException if the count is negative or there are
+     *                                  not enough bytes left for that many names
+     */
+    private static String[] readNames(DataInputStream in) throws IOException {
+        int count = readVarint(in);
+        if (count < 0) {
+            throw new StreamCorruptedException("Negative name count " + count);
+        }
+        // Each name takes at least its length
+        if (count > in.available() / Short.BYTES) {
+            throw new StreamCorruptedException("Name count " + count + " exceeds the " + in.available()
+                    + " bytes left");
+        }
+        String[] names = new String[count];
+        for (int id = 0; id < names.length; id++) {
+            names[id] = in.readUTF().intern();
+        }
+        return names;
+    }
+
+    /**
+     * Writes an int as an unsigned LEB128 varint
+     *
+     * @param out
+     * @param value
+     * @throws IOException
+     */
+    static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * @param in
+     * @return an int read as an unsigned LEB128 varint
+     * @throws IOException
+     */
+    static int readVarint(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,297 @@
+package batmudgoalsplugin.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Experience costs of skill percents shared by all the characters. The costs
+ * are the same for everyone, so they are kept in one file under the base
+ * directory instead of the data of each character.
+ * <p>
+ * The file is mapped to memory read only. It is only ever appended to: a
+ * skill whose costs change gets a new record which replaces the earlier ones.
+ * Records are framed by their length and followed by a CRC32 of them, so a
+ * torn record at the end is ignored and written over by the next append.
+ * Appends are made while holding a lock on the file, so clients of several
+ * characters can share it.
+ *
+ * <pre>
+ * header   magic "BMGC" (int)
+ * record   length (int), skill (UTF), percents (short), (percent (short), cost (int))..., CRC32 (int)
+ * </pre>
+ *
+ * Percents of a record are sorted, so the cost of a percent is found with a
+ * binary search straight from the mapped file.
+ */
+public final class CostLibrary implements Closeable {
+
+    /** "BMGC" */
+    static final int MAGIC = 0x424D4743;
+    private static final int HEADER_LENGTH = Integer.BYTES;
+    private static final int ENTRY_LENGTH = Short.BYTES + Integer.BYTES;
+
+    /** Mapping of the valid part of the file, replaced on every remap */
+    private static final class View {
+        private final ByteBuffer buffer;
+        /** Offset of the first entry and number of entries by skill */
+        private final Map<String, long[]> records;
+        private final int end;
+
+        View(ByteBuffer buffer, Map<String, long[]> records, int end) {
+            this.buffer = buffer;
+            this.records = records;
+            this.end = end;
+        }
+    }
+
+    private final FileChannel channel;
+    private volatile View view;
+    private volatile int generation;
+
+    private CostLibrary(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Opens the library, creating the file if needed
+     *
+     * @param file
+     * @return library
+     * @throws IOException also if the file is not a cost library
+     */
+    public static CostLibrary open(File file) throws IOException {
+        @SuppressWarnings("resource")
+        FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+        CostLibrary library = new CostLibrary(channel);
+        try {
+            FileLock lock = channel.lock();
+            try {
+                if (channel.size() < HEADER_LENGTH) {
+                    channel.write(ByteBuffer.allocate(HEADER_LENGTH).putInt(0, MAGIC), 0);
+                    channel.force(true);
+                }
+                library.remap(new HashMap<>(), HEADER_LENGTH);
+            } finally {
+                lock.release();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return library;
+    }
+
+    /**
+     * Maps the file again if it has grown, reading the records after the given
+     * offset
+     *
+     * @param records already read
+     * @param from    end of the records already read
+     */
+    private void remap(Map<String, long[]> records, int from) throws IOException {
+        long size = channel.size();
+        View current = view;
+        if (current != null && size == current.buffer.capacity()) {
+            return;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Cost library is too large");
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a BatMUDGoalsPlugin cost library");
+        }
+        CRC32 crc = new CRC32();
+        int position = from;
+        while (position + Integer.BYTES <= size) {
+            int length = buffer.getInt(position);
+            int payload = position + Integer.BYTES;
+            if (length < Short.BYTES + Short.BYTES || length > size - payload - Integer.BYTES) {
+                break;
+            }
+            ByteBuffer record = buffer.duplicate();
+            record.position(payload).limit(payload + length);
+            crc.reset();
+            crc.update(record);
+            if (buffer.getInt(payload + length) != (int) crc.getValue()) {
+                break;
+            }
+            int nameLength = Short.BYTES + Short.toUnsignedInt(buffer.getShort(payload));
+            byte[] name = new byte[nameLength];
+            buffer.duplicate().position(payload).get(name);
+            int entries = payload + nameLength + Short.BYTES;
+            int count = Short.toUnsignedInt(buffer.getShort(payload + nameLength));
+            if (entries + count * ENTRY_LENGTH != payload + length) {
+                break;
+            }
+            String skill = new DataInputStream(new ByteArrayInputStream(name)).readUTF().intern();
+            records.put(skill, new long[] { entries, count });
+            position = payload + length + Integer.BYTES;
+        }
+        view = new View(buffer, records, position);
+        if (position != from) {
+            generation++;
+        }
+    }
+
+    /**
+     * @param skill
+     * @param percent
+     * @return experience needed to improve the skill to percent,
+     *         {@link SymbolTable#NONE} if not known
+     */
+    public int getCost(String skill, int percent) {
+        View current = view;
+        long[] record = current.records.get(skill);
+        if (record == null) {
+            return SymbolTable.NONE;
+        }
+        int entries = (int) record[0];
+        int low = 0;
+        int high = (int) record[1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midPercent = current.buffer.getShort(entries + mid * ENTRY_LENGTH);
+            if (midPercent < percent) {
+                low = mid + 1;
+            } else if (midPercent > percent) {
+                high = mid - 1;
+            } else {
+                return current.buffer.getInt(entries + mid * ENTRY_LENGTH + Short.BYTES);
+            }
+        }
+        return SymbolTable.NONE;
+    }
+
+    /**
+     * @param skill
+     * @return true if costs of the skill are known
+     */
+    public boolean contains(String skill) {
+        return view.records.containsKey(skill);
+    }
+
+    /**
+     * @return skills whose costs are known
+     */
+    public Collection<String> getSkills() {
+        return Collections.unmodifiableCollection(new ArrayList<>(view.records.keySet()));
+    }
+
+    /**
+     * The generation grows whenever the library is mapped again, so costs
+     * looked up from it can be kept until it changes.
+     *
+     * @return generation of the library
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Appends the costs of the data not yet in the library. Records appended
+     * by other clients since the last merge are picked up at the same time.
+     *
+     * @param data
+     * @return number of skills appended
+     * @throws IOException
+     */
+    public synchronized int merge(BatMUDGoalsPluginData data) throws IOException {
+        FileLock lock = channel.lock();
+        try {
+            View current = view;
+            remap(new HashMap<>(current.records), current.end);
+            current = view;
+
+            ByteArrayOutputStream appended = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(appended);
+            int skills = 0;
+            SymbolTable names = data.skillNames();
+            for (int skill = 0; skill < names.size(); skill++) {
+                SkillCostTable costs = data.skillCostTable(skill);
+                if (costs != null && !isKnown(names.name(skill), costs)) {
+                    writeRecord(out, names.name(skill), costs);
+                    skills++;
+                }
+            }
+            if (skills > 0) {
+                ByteBuffer bytes = ByteBuffer.wrap(appended.toByteArray());
+                for (long position = current.end; bytes.hasRemaining();) {
+                    position += channel.write(bytes, position);
+                }
+                channel.force(false);
+                remap(new HashMap<>(current.records), current.end);
+            }
+            return skills;
+        } finally {
+            lock.release();
+        }
+    }
+
+    /**
+     * @return true if all the costs are in the library
+     */
+    boolean isKnown(String skill, SkillCostTable costs) {
+        for (int percent = costs.nextPercent(0); percent >= 0; percent = costs.nextPercent(percent + 1)) {
+            if (getCost(skill, percent) != costs.get(percent)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes a record of the skill with the costs of the library overridden by
+     * the given ones
+     */
+    private void writeRecord(DataOutputStream out, String skill, SkillCostTable costs) throws IOException {
+        SkillCostTable merged = new SkillCostTable();
+        long[] record = view.records.get(skill);
+        if (record != null) {
+            for (int i = 0; i < record[1]; i++) {
+                int entry = (int) record[0] + i * ENTRY_LENGTH;
+                merged.set(view.buffer.getShort(entry), view.buffer.getInt(entry + Short.BYTES));
+            }
+        }
+        for (int percent = costs.nextPercent(0); percent >= 0; percent = costs.nextPercent(percent + 1)) {
+            if (percent <= Short.MAX_VALUE) {
+                merged.set(percent, costs.get(percent));
+            }
+        }
+
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream payloadOut = new DataOutputStream(payload);
+        payloadOut.writeUTF(skill);
+        payloadOut.writeShort(merged.size());
+        for (int percent = merged.nextPercent(0); percent >= 0; percent = merged.nextPercent(percent + 1)) {
+            payloadOut.writeShort(percent);
+            payloadOut.writeInt(merged.get(percent));
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload.toByteArray());
+        out.writeInt(payload.size());
+        payload.writeTo(out);
+        out.writeInt((int) crc.getValue());
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,32 @@
+package batmudgoalsplugin.data;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * Formats of the persisted plugin data
+ */
+public enum DataFormat {
+    /** Marker delimited text, one line per value */
+    TEXT,
+    /** Versioned binary format, see {@link BinaryDataFormat} */
+    BINARY;
+
+    /**
+     * Detects the format of a file by the magic number binary files start with
+     *
+     * @param file
+     * @return format of the file
+     * @throws IOException
+     */
+    public static DataFormat of(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readInt() == BinaryDataFormat.MAGIC ? BINARY : TEXT;
+        } catch (EOFException e) {
+            return TEXT;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package batmudgoalsplugin.data;
+
+/**
+ * Told about the parts of a data file which could not be read. Loading goes on
+ * past them, keeping everything else.
+ */
+public interface ILoadProblemListener {
+
+    /**
+     * @param offset  byte offset of the line in the file
+     * @param problem what is wrong
+     */
+    void problemAt(long offset, String problem);
+}
@@ -0,0 +1,28 @@
+package batmudgoalsplugin.data;
+
+/**
+ * Implementing classes want to be notified of every change made to
+ * {@link BatMUDGoalsPluginData}. Each call carries the new value, not the
+ * difference to the old one, so applying a change again is harmless.
+ */
+public interface IMutationListener {
+
+    /**
+     * @param skill new goal skill, null if the goal was cleared
+     */
+    void goalSkillSet(String skill);
+
+    void skillStatusSet(String skill, int percent);
+
+    void skillCostSet(String skill, int percent, int cost);
+
+    /**
+     * @param skill
+     * @param partialTrains number of partial trains of the skill now
+     */
+    void partialTrainsSet(String skill, int partialTrains);
+
+    void guildLevelSet(String guild, int level);
+
+    void skillMaxAdded(String guild, String skill, int level, int max);
+}
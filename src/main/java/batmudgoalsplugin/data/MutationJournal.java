@@ -0,0 +1,570 @@
+package batmudgoalsplugin.data;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append only journal of the changes made to {@link BatMUDGoalsPluginData}
+ * since the data was last saved in full. Replaying the journal over the saved
+ * data restores the changes after a crash.
+ * <p>
+ * Records carry new values, see {@link IMutationListener}, so replaying a
+ * record which already is in the saved data does no harm. Each record is
+ * framed by its length and followed by a CRC32 of it. A record torn by a crash
+ * ends the replay and is cut off when the journal is opened again.
+ * <p>
+ * Appended records are collected in memory and written and forced to disk
+ * together, at most once per flush interval, so a burst of changes costs one
+ * disk sync. The records are appended under the monitor of the journal, while
+ * the file is written under a lock of its own, so a change is never held up by
+ * a disk sync. Once the journal holds enough records, the compaction handler
+ * is called to save the data in full, after which it should call
+ * {@link #truncate()}.
+ * <p>
+ * A record of an unknown type, e.g. written by a newer version of the plugin,
+ * ends the replay like a torn record does.
+ */
+public final class MutationJournal implements IMutationListener, Closeable {
+
+    /** "BMGJ" */
+    static final int MAGIC = 0x424D474A;
+    private static final int HEADER_LENGTH = Integer.BYTES;
+
+    private static final int GOAL_SKILL = 1;
+    private static final int SKILL_STATUS = 2;
+    private static final int SKILL_COST = 3;
+    private static final int PARTIAL_TRAINS = 4;
+    private static final int GUILD_LEVEL = 5;
+    private static final int SKILL_MAX = 6;
+
+    private final FileChannel channel;
+    private final int compactionThreshold;
+    private final Runnable compactionHandler;
+    private final ScheduledExecutorService flusher;
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+    private final DataOutputStream recordOut = new DataOutputStream(record);
+    /** Records waiting for the next flush, guarded by this */
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private DataOutputStream pendingOut = new DataOutputStream(pending);
+    /** Records being written by a flush, swapped with pending, guarded by writeLock */
+    private ByteArrayOutputStream flushing = new ByteArrayOutputStream();
+    /** Serializes the writes to the file, taken before the monitor of the journal if both are */
+    private final Object writeLock = new Object();
+    private final CRC32 crc = new CRC32();
+    private int records;
+    private boolean compacting;
+    /**
+     * Records taken by {@link #startRotation()}, written and moved aside by
+     * {@link #finishRotation(File)}, guarded by this
+     */
+    private ByteArrayOutputStream rotating;
+    /** True between the two, while records appended are held back from the file */
+    private boolean rotationStarted;
+
+    private MutationJournal(FileChannel channel, int records, long flushIntervalMillis, int compactionThreshold,
+            Runnable compactionHandler) {
+        this.channel = channel;
+        this.records = records;
+        this.compactionThreshold = compactionThreshold;
+        this.compactionHandler = compactionHandler;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "BatMUDGoalsPlugin journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Opens the journal for appending, creating it if needed. A torn record at
+     * the end is cut off.
+     *
+     * @param file
+     * @param flushIntervalMillis how often appended records are forced to disk
+     * @param compactionThreshold number of records after which the compaction
+     *                            handler is called
+     * @param compactionHandler   saves the data in full and truncates the
+     *                            journal
+     * @return journal
+     * @throws IOException
+     */
+    public static MutationJournal open(File file, long flushIntervalMillis, int compactionThreshold,
+            Runnable compactionHandler) throws IOException {
+        long[] valid = scan(file, null);
+        @SuppressWarnings("resource")
+        FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+        try {
+            if (valid[0] < HEADER_LENGTH) {
+                channel.truncate(0);
+                channel.write(ByteBuffer.allocate(HEADER_LENGTH).putInt(0, MAGIC));
+            } else {
+                channel.truncate(valid[0]);
+            }
+            channel.position(channel.size());
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return new MutationJournal(channel, (int) valid[1], flushIntervalMillis, compactionThreshold,
+                compactionHandler);
+    }
+
+    /**
+     * Applies the records of the journal to the data
+     *
+     * @param file journal, may be missing
+     * @param data
+     * @return number of records applied
+     * @throws IOException
+     */
+    public static int replay(File file, BatMUDGoalsPluginData data) throws IOException {
+        return replay(file, data, (offset, problem) -> {
+        });
+    }
+
+    /**
+     * Applies the records of the journal to the data
+     *
+     * @param file     journal, may be missing
+     * @param data
+     * @param listener told about a record which ends the replay early
+     * @return number of records applied
+     * @throws IOException
+     */
+    public static int replay(File file, BatMUDGoalsPluginData data, ILoadProblemListener listener)
+            throws IOException {
+        return (int) scan(file, data, listener)[1];
+    }
+
+    private static long[] scan(File file, BatMUDGoalsPluginData data) throws IOException {
+        return scan(file, data, (offset, problem) -> {
+        });
+    }
+
+    /**
+     * Reads the valid records of the journal
+     *
+     * @param file
+     * @param data     to apply the records to, null to only scan
+     * @param listener told about a record of an unknown type
+     * @return length of the valid part of the file and number of valid records
+     * @throws IOException
+     */
+    private static long[] scan(File file, BatMUDGoalsPluginData data, ILoadProblemListener listener)
+            throws IOException {
+        if (!file.exists() || file.length() < HEADER_LENGTH) {
+            return new long[] { 0, 0 };
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a BatMUDGoalsPlugin journal: " + file);
+            }
+            long length = HEADER_LENGTH;
+            int count = 0;
+            CRC32 crc = new CRC32();
+            while (true) {
+                byte[] payload;
+                int headerLength;
+                try {
+                    int size = BinaryDataFormat.readVarint(in);
+                    if (size <= 0 || size > file.length()) {
+                        break;
+                    }
+                    headerLength = varintLength(size);
+                    payload = new byte[size];
+                    in.readFully(payload);
+                    crc.reset();
+                    crc.update(payload, 0, size);
+                    if (in.readInt() != (int) crc.getValue()) {
+                        break;
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+                if (!isKnownType(payload[0])) {
+                    listener.problemAt(length, "Unknown journal record type " + payload[0] + ", replay stopped");
+                    break;
+                }
+                if (data != null) {
+                    try {
+                        apply(new DataInputStream(new ByteArrayInputStream(payload)), data);
+                    } catch (IOException e) {
+                        listener.problemAt(length, "Unreadable journal record, replay stopped: " + e);
+                        break;
+                    }
+                }
+                length += headerLength + payload.length + Integer.BYTES;
+                count++;
+            }
+            return new long[] { length, count };
+        }
+    }
+
+    private static void apply(DataInputStream in, BatMUDGoalsPluginData data) throws IOException {
+        int type = in.readUnsignedByte();
+        switch (type) {
+        case GOAL_SKILL:
+            data.setGoalSkill(in.readBoolean() ? in.readUTF().intern() : null);
+            break;
+        case SKILL_STATUS:
+            data.setSkillStatus(in.readUTF().intern(), BinaryDataFormat.readVarint(in));
+            break;
+        case SKILL_COST:
+            data.setSkillCostForLevel(in.readUTF().intern(), BinaryDataFormat.readVarint(in),
+                    BinaryDataFormat.readVarint(in));
+            break;
+        case PARTIAL_TRAINS:
+            data.setPartialTrains(in.readUTF().intern(), BinaryDataFormat.readVarint(in));
+            break;
+        case GUILD_LEVEL:
+            data.setGuildLevel(in.readUTF(), BinaryDataFormat.readVarint(in));
+            break;
+        case SKILL_MAX:
+            data.setSkillMaxInfo(in.readUTF(), in.readUTF().intern(), BinaryDataFormat.readVarint(in),
+                    BinaryDataFormat.readVarint(in));
+            break;
+        default:
+            throw new IOException("Unknown journal record type " + type);
+        }
+    }
+
+    private static boolean isKnownType(int type) {
+        return type >= GOAL_SKILL && type <= SKILL_MAX;
+    }
+
+    private static int varintLength(int value) {
+        int length = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            length++;
+        }
+        return length;
+    }
+
+    /** Writes the payload of a record */
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    @Override
+    public void goalSkillSet(String skill) {
+        append(out -> {
+            out.writeByte(GOAL_SKILL);
+            out.writeBoolean(skill != null);
+            if (skill != null) {
+                out.writeUTF(skill);
+            }
+        });
+    }
+
+    @Override
+    public void skillStatusSet(String skill, int percent) {
+        append(out -> {
+            out.writeByte(SKILL_STATUS);
+            out.writeUTF(skill);
+            BinaryDataFormat.writeVarint(out, percent);
+        });
+    }
+
+    @Override
+    public void skillCostSet(String skill, int percent, int cost) {
+        append(out -> {
+            out.writeByte(SKILL_COST);
+            out.writeUTF(skill);
+            BinaryDataFormat.writeVarint(out, percent);
+            BinaryDataFormat.writeVarint(out, cost);
+        });
+    }
+
+    @Override
+    public void partialTrainsSet(String skill, int partialTrains) {
+        append(out -> {
+            out.writeByte(PARTIAL_TRAINS);
+            out.writeUTF(skill);
+            BinaryDataFormat.writeVarint(out, partialTrains);
+        });
+    }
+
+    @Override
+    public void guildLevelSet(String guild, int level) {
+        append(out -> {
+            out.writeByte(GUILD_LEVEL);
+            out.writeUTF(guild);
+            BinaryDataFormat.writeVarint(out, level);
+        });
+    }
+
+    @Override
+    public void skillMaxAdded(String guild, String skill, int level, int max) {
+        append(out -> {
+            out.writeByte(SKILL_MAX);
+            out.writeUTF(guild);
+            out.writeUTF(skill);
+            BinaryDataFormat.writeVarint(out, level);
+            BinaryDataFormat.writeVarint(out, max);
+        });
+    }
+
+    /**
+     * Adds a record to the records waiting for the next flush, and calls the
+     * compaction handler, outside of the monitor, once there are enough of them
+     *
+     * @param writer of the payload of the record
+     */
+    private void append(RecordWriter writer) {
+        boolean compact;
+        synchronized (this) {
+            try {
+                writer.write(recordOut);
+                crc.reset();
+                crc.update(record.toByteArray());
+                BinaryDataFormat.writeVarint(pendingOut, record.size());
+                record.writeTo(pendingOut);
+                pendingOut.writeInt((int) crc.getValue());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                record.reset();
+            }
+            records++;
+            compact = records >= compactionThreshold && !compacting;
+            if (compact) {
+                compacting = true;
+            }
+        }
+        if (compact) {
+            try {
+                compactionHandler.run();
+            } finally {
+                synchronized (this) {
+                    compacting = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the records appended since the last flush and forces them to disk
+     *
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        synchronized (writeLock) {
+            ByteArrayOutputStream batch = takePending();
+            if (batch.size() > 0) {
+                write(batch);
+                channel.force(false);
+            }
+        }
+    }
+
+    /**
+     * Swaps the pending records for the empty buffer of the flusher, so that
+     * records can be appended while they are written. Call holding writeLock.
+     *
+     * @return records to write
+     */
+    private ByteArrayOutputStream takePending() {
+        synchronized (this) {
+            if (rotationStarted) {
+                // Must come after the records being rotated out, kept pending
+                return flushing;
+            }
+            ByteArrayOutputStream batch = pending;
+            pending = flushing;
+            pendingOut = new DataOutputStream(pending);
+            flushing = batch;
+            return batch;
+        }
+    }
+
+    /**
+     * Writes the records taken from pending and empties the buffer. If they
+     * cannot be written, they are put back in front of the records appended
+     * meanwhile. Call holding writeLock.
+     *
+     * @param batch
+     * @throws IOException
+     */
+    private void write(ByteArrayOutputStream batch) throws IOException {
+        long position = channel.position();
+        try {
+            channel.write(ByteBuffer.wrap(batch.toByteArray()));
+        } catch (IOException e) {
+            // Do not leave a torn record in front of the next try
+            channel.truncate(position);
+            channel.position(position);
+            synchronized (this) {
+                pending.writeTo(batch);
+                pending.reset();
+                flushing = pending;
+                pending = batch;
+                pendingOut = new DataOutputStream(pending);
+            }
+            throw e;
+        }
+        batch.reset();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException e) {
+            // Tried again on the next round, the records stay pending
+        }
+    }
+
+    /**
+     * Empties the journal. Call after the data has been saved in full.
+     *
+     * @throws IOException
+     */
+    public void truncate() throws IOException {
+        synchronized (writeLock) {
+            synchronized (this) {
+                pending.reset();
+                if (rotating != null) {
+                    rotating.reset();
+                }
+                records = 0;
+            }
+            channel.truncate(HEADER_LENGTH);
+            channel.position(HEADER_LENGTH);
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Moves the records of the journal to the end of another journal file and
+     * empties this one, see {@link #startRotation()} and
+     * {@link #finishRotation(File)}.
+     *
+     * @param rotated journal file to append the records to, created if needed
+     * @throws IOException
+     */
+    public void rotate(File rotated) throws IOException {
+        startRotation();
+        finishRotation(rotated);
+    }
+
+    /**
+     * Marks the records appended so far to be rotated out. Used to save a copy
+     * of the data in the background: call together with taking the copy, the
+     * records up to the copy are then moved aside by
+     * {@link #finishRotation(File)} and deleted once the copy has been saved.
+     * Does no I/O, so it can be called while output waits.
+     */
+    public synchronized void startRotation() {
+        if (rotationStarted) {
+            throw new IllegalStateException("Rotation already started");
+        }
+        rotating = pending;
+        pending = new ByteArrayOutputStream();
+        pendingOut = new DataOutputStream(pending);
+        rotationStarted = true;
+        records = 0;
+    }
+
+    /**
+     * Writes the records marked by {@link #startRotation()}, moves the records
+     * of the journal up to them to the end of another journal file and empties
+     * this one. Records appended since the start are kept pending meanwhile,
+     * and are written once the journal has been emptied. If the records cannot
+     * be moved, they stay in this journal. Rotated records are replayed before
+     * this journal, so they are not lost if the copy never gets saved.
+     *
+     * @param rotated journal file to append the records to, created if needed
+     * @throws IOException
+     */
+    public void finishRotation(File rotated) throws IOException {
+        synchronized (writeLock) {
+            ByteArrayOutputStream batch;
+            synchronized (this) {
+                if (!rotationStarted) {
+                    throw new IllegalStateException("Rotation not started");
+                }
+                batch = rotating;
+                rotating = null;
+            }
+            try {
+                if (batch.size() > 0) {
+                    // Put back in front of pending if it fails
+                    write(batch);
+                }
+                long valid = scan(rotated, null)[0];
+                try (FileChannel target = new RandomAccessFile(rotated, "rw").getChannel()) {
+                    if (valid < HEADER_LENGTH) {
+                        target.truncate(0);
+                        target.write(ByteBuffer.allocate(HEADER_LENGTH).putInt(0, MAGIC), 0);
+                        valid = HEADER_LENGTH;
+                    } else {
+                        target.truncate(valid);
+                    }
+                    target.position(valid);
+                    long end = channel.size();
+                    for (long position = HEADER_LENGTH; position < end;) {
+                        position += channel.transferTo(position, end - position, target);
+                    }
+                    target.force(true);
+                }
+                channel.truncate(HEADER_LENGTH);
+                channel.position(HEADER_LENGTH);
+                channel.force(true);
+            } finally {
+                synchronized (this) {
+                    rotationStarted = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return number of records in the journal, including ones not yet flushed
+     */
+    public synchronized int getRecordCount() {
+        return records;
+    }
+
+    /**
+     * Flushes the pending records and closes the journal
+     */
+    @Override
+    public void close() throws IOException {
+        flusher.shutdown();
+        synchronized (writeLock) {
+            try {
+                synchronized (this) {
+                    if (rotationStarted) {
+                        // Never finished, the records stay in this journal
+                        rotating.write(pending.toByteArray());
+                        pending = rotating;
+                        pendingOut = new DataOutputStream(pending);
+                        rotating = null;
+                        rotationStarted = false;
+                    }
+                }
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package batmudgoalsplugin.data;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Experience costs of the percents of one skill. Costs are kept in an int array
+ * indexed by percent, with a bitmap telling which percents have a cost, so a
+ * full table of a hundred percents takes a few hundred bytes and no boxing.
+ */
+final class SkillCostTable {
+
+    /** Percents go up to 100, with room for a few more */
+    private static final int INITIAL_PERCENTS = 128;
+
+    private int[] costs = new int[INITIAL_PERCENTS];
+    private long[] present = new long[INITIAL_PERCENTS / Long.SIZE];
+    private int size;
+
+    /**
+     * @return a table with the same costs
+     */
+    SkillCostTable copy() {
+        SkillCostTable copy = new SkillCostTable();
+        copy.costs = costs.clone();
+        copy.present = present.clone();
+        copy.size = size;
+        return copy;
+    }
+
+    /**
+     * @param percent
+     * @param cost    experience needed to improve the skill to percent
+     */
+    void set(int percent, int cost) {
+        if (percent < 0) {
+            throw new IllegalArgumentException("Negative percent: " + percent);
+        }
+        if (percent >= costs.length) {
+            int length = Math.max(costs.length * 2, (percent / Long.SIZE + 1) * Long.SIZE);
+            costs = Arrays.copyOf(costs, length);
+            present = Arrays.copyOf(present, length / Long.SIZE);
+        }
+        if (!contains(percent)) {
+            present[percent / Long.SIZE] |= 1L << percent;
+            size++;
+        }
+        costs[percent] = cost;
+    }
+
+    /**
+     * @param percent
+     * @return true if the cost of percent is known
+     */
+    boolean contains(int percent) {
+        return percent >= 0 && percent < costs.length && (present[percent / Long.SIZE] & (1L << percent)) != 0;
+    }
+
+    /**
+     * @param percent
+     * @return experience needed to improve the skill to percent
+     * @throws NoSuchElementException if the cost is not known
+     */
+    int get(int percent) {
+        if (!contains(percent)) {
+            throw new NoSuchElementException("Cost of " + percent + "% is not known");
+        }
+        return costs[percent];
+    }
+
+    /**
+     * Iterates the known percents, like {@link java.util.BitSet#nextSetBit(int)}
+     *
+     * @param fromPercent
+     * @return the first percent at or after fromPercent whose cost is known, -1
+     *         if there is none
+     */
+    int nextPercent(int fromPercent) {
+        int word = fromPercent / Long.SIZE;
+        if (fromPercent < 0 || word >= present.length) {
+            return -1;
+        }
+        long bits = present[word] & (-1L << fromPercent);
+        while (bits == 0) {
+            if (++word == present.length) {
+                return -1;
+            }
+            bits = present[word];
+        }
+        return word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+    }
+
+    /**
+     * @return number of percents whose cost is known
+     */
+    int size() {
+        return size;
+    }
+}
@@ -0,0 +1,211 @@
+package batmudgoalsplugin.data;
+
+import java.util.Arrays;
+
+/**
+ * Skill maxes by skill and guild. The rows of a skill in a guild are kept
+ * sorted by level together with the highest max reached at or below each
+ * level. That running maximum never decreases with level, so both the best max
+ * available at a level and the first level offering a max are binary searches.
+ */
+final class SkillMaxIndex {
+
+    private static final Rows[] NO_ROWS = new Rows[0];
+
+    /** Skill maxes of one skill in one guild, sorted by level */
+    static final class Rows {
+        private final int guild;
+        private int size;
+        private int[] levels = new int[4];
+        private int[] maxes = new int[4];
+        /** Highest max at or below the level of each row */
+        private int[] bestMaxes = new int[4];
+
+        Rows(int guild) {
+            this.guild = guild;
+        }
+
+        /**
+         * @return id of the guild
+         */
+        int guild() {
+            return guild;
+        }
+
+        /**
+         * @return number of rows
+         */
+        int size() {
+            return size;
+        }
+
+        int level(int row) {
+            return levels[row];
+        }
+
+        int max(int row) {
+            return maxes[row];
+        }
+
+        /**
+         * @param level
+         * @return highest skill max available at or below level, 0 if none
+         */
+        int highestMax(int level) {
+            int row = upperBound(level) - 1;
+            return row < 0 ? 0 : bestMaxes[row];
+        }
+
+        /**
+         * @param max
+         * @return lowest level offering at least max, {@link SymbolTable#NONE}
+         *         if no level does
+         */
+        int levelFor(int max) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (bestMaxes[mid] < max) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low == size ? SymbolTable.NONE : levels[low];
+        }
+
+        /**
+         * @param level
+         * @return index of the first row above level
+         */
+        private int upperBound(int level) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (levels[mid] <= level) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private Rows copy() {
+            Rows copy = new Rows(guild);
+            copy.size = size;
+            copy.levels = levels.clone();
+            copy.maxes = maxes.clone();
+            copy.bestMaxes = bestMaxes.clone();
+            return copy;
+        }
+
+        private boolean add(int level, int max) {
+            int row = upperBound(level);
+            for (int i = row - 1; i >= 0 && levels[i] == level; i--) {
+                if (maxes[i] == max) {
+                    return false;
+                }
+            }
+            if (size == levels.length) {
+                levels = Arrays.copyOf(levels, size * 2);
+                maxes = Arrays.copyOf(maxes, size * 2);
+                bestMaxes = Arrays.copyOf(bestMaxes, size * 2);
+            }
+            System.arraycopy(levels, row, levels, row + 1, size - row);
+            System.arraycopy(maxes, row, maxes, row + 1, size - row);
+            levels[row] = level;
+            maxes[row] = max;
+            size++;
+            for (int i = row; i < size; i++) {
+                bestMaxes[i] = Math.max(maxes[i], i == 0 ? 0 : bestMaxes[i - 1]);
+            }
+            return true;
+        }
+    }
+
+    /** Rows by skill id, one entry per guild teaching the skill */
+    private Rows[][] bySkill = new Rows[0][];
+    private int size;
+
+    /**
+     * @return an index with the same skill maxes
+     */
+    SkillMaxIndex copy() {
+        SkillMaxIndex copy = new SkillMaxIndex();
+        copy.bySkill = new Rows[bySkill.length][];
+        for (int skill = 0; skill < bySkill.length; skill++) {
+            copy.bySkill[skill] = new Rows[bySkill[skill].length];
+            for (int i = 0; i < bySkill[skill].length; i++) {
+                copy.bySkill[skill][i] = bySkill[skill][i].copy();
+            }
+        }
+        copy.size = size;
+        return copy;
+    }
+
+    /**
+     * @param guild id
+     * @param skill id
+     * @param level guild level
+     * @param max   skill max at the level
+     * @return false if the skill max was already known
+     */
+    boolean add(int guild, int skill, int level, int max) {
+        if (skill >= bySkill.length) {
+            int length = bySkill.length;
+            bySkill = Arrays.copyOf(bySkill, Math.max(skill + 1, length * 2));
+            Arrays.fill(bySkill, length, bySkill.length, NO_ROWS);
+        }
+        Rows rows = rows(skill, guild);
+        if (rows == null) {
+            rows = new Rows(guild);
+            bySkill[skill] = Arrays.copyOf(bySkill[skill], bySkill[skill].length + 1);
+            bySkill[skill][bySkill[skill].length - 1] = rows;
+        }
+        if (rows.add(level, max)) {
+            size++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param skill id
+     * @return rows of the skill, one per guild teaching it
+     */
+    Rows[] rowsOf(int skill) {
+        return skill < 0 || skill >= bySkill.length ? NO_ROWS : bySkill[skill];
+    }
+
+    /**
+     * @param skill id
+     * @param guild id
+     * @return rows of the skill in the guild, null if the guild does not teach
+     *         the skill
+     */
+    Rows rows(int skill, int guild) {
+        for (Rows rows : rowsOf(skill)) {
+            if (rows.guild == guild) {
+                return rows;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return number of skill maxes
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return number of skill ids which may have rows
+     */
+    int skillCapacity() {
+        return bySkill.length;
+    }
+}
@@ -0,0 +1,71 @@
+package batmudgoalsplugin.data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns dense integer ids to names, e.g. skill or guild names, in the order
+ * they are first seen. Ids start from zero and are never reused, so they can
+ * index arrays.
+ */
+final class SymbolTable {
+
+    /** Id of names which are not in the table */
+    static final int NONE = -1;
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+
+    /**
+     * @return a table with the same ids
+     */
+    SymbolTable copy() {
+        SymbolTable copy = new SymbolTable();
+        copy.ids.putAll(ids);
+        copy.names.addAll(names);
+        return copy;
+    }
+
+    /**
+     * Returns the id of the name, assigning a new one if the name has not been
+     * seen before
+     *
+     * @param name
+     * @return id of the name
+     */
+    int id(String name) {
+        Integer id = ids.get(name);
+        if (id == null) {
+            id = names.size();
+            ids.put(name, id);
+            names.add(name);
+        }
+        return id;
+    }
+
+    /**
+     * @param name
+     * @return id of the name or {@link #NONE} if the name has not been seen
+     */
+    int find(String name) {
+        Integer id = ids.get(name);
+        return id == null ? NONE : id;
+    }
+
+    /**
+     * @param id
+     * @return name with the given id
+     */
+    String name(int id) {
+        return names.get(id);
+    }
+
+    /**
+     * @return number of names in the table, ids are less than this
+     */
+    int size() {
+        return names.size();
+    }
+}
@@ -0,0 +1,358 @@
+package batmudgoalsplugin.data;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Text format of the plugin data, written by earlier versions of the plugin.
+ * Each section is enclosed in begin and end markers:
+ *
+ * <pre>
+ * &gt;Skill costs
+ * &gt;skill
+ * percent,cost
+ * &lt;
+ * &lt;Skill costs
+ * &gt;Skill statuses
+ * skill,percent
+ * &lt;Skill statuses
+ * &gt;Skill maxes
+ * guild,level,max,skill
+ * &lt;Skill maxes
+ * &gt;Goal skill
+ * skill or null
+ * &lt;Goal skill
+ * &gt;Guild levels
+ * guild,level
+ * &lt;Guild levels
+ * &gt;Partial trains
+ * skill,partial trains
+ * &lt;Partial trains
+ * </pre>
+ *
+ * The file is read in one pass, line by line. Sections may come in any order
+ * or be missing. Lines which cannot be read, including a last line cut short
+ * by a crash, are reported with their byte offset and skipped.
+ */
+final class TextDataFormat {
+
+    private static final String BEGIN_PARTIAL_TRAINS_MARKER = ">Partial trains";
+    private static final String END_PARTIAL_TRAINS_MARKER = "<Partial trains";
+    private static final String BEGIN_GUILD_LEVELS_MARKER = ">Guild levels";
+    private static final String END_GUILD_LEVELS_MARKER = "<Guild levels";
+    private static final String BEGIN_GOAL_SKILL_MARKER = ">Goal skill";
+    private static final String END_GOAL_SKILL_MARKER = "<Goal skill";
+    private static final String BEGIN_SKILL_MAXES_MARKER = ">Skill maxes";
+    private static final String END_SKILL_MAXES_MARKER = "<Skill maxes";
+    private static final String BEGIN_SKILL_STATUSES_MARKER = ">Skill statuses";
+    private static final String END_SKILL_STATUSES_MARKER = "<Skill statuses";
+    private static final String END_SKILL_COSTS_MARKER = "<Skill costs";
+    private static final String BEGIN_SKILL_COSTS_MARKER = ">Skill costs";
+
+    private static final String[] BEGIN_MARKERS = { BEGIN_SKILL_COSTS_MARKER, BEGIN_SKILL_STATUSES_MARKER,
+            BEGIN_SKILL_MAXES_MARKER, BEGIN_GOAL_SKILL_MARKER, BEGIN_GUILD_LEVELS_MARKER,
+            BEGIN_PARTIAL_TRAINS_MARKER };
+    private static final String[] END_MARKERS = { END_SKILL_COSTS_MARKER, END_SKILL_STATUSES_MARKER,
+            END_SKILL_MAXES_MARKER, END_GOAL_SKILL_MARKER, END_GUILD_LEVELS_MARKER, END_PARTIAL_TRAINS_MARKER };
+
+    /** Indexes of the markers */
+    private static final int NO_SECTION = -1;
+    private static final int SKILL_COSTS = 0;
+    private static final int SKILL_STATUSES = 1;
+    private static final int SKILL_MAXES = 2;
+    private static final int GOAL_SKILL = 3;
+    private static final int GUILD_LEVELS = 4;
+    private static final int PARTIAL_TRAINS = 5;
+
+    /** Indexes of the sections by their begin and end markers */
+    private static final Map<String, Integer> BEGIN_SECTIONS = sectionsByMarker(BEGIN_MARKERS);
+    private static final Map<String, Integer> END_SECTIONS = sectionsByMarker(END_MARKERS);
+
+    /** Longer lines are not written by the plugin, they are skipped unread */
+    private static final int MAX_LINE_LENGTH = 4096;
+
+    private TextDataFormat() {
+    }
+
+    private static Map<String, Integer> sectionsByMarker(String[] markers) {
+        Map<String, Integer> sections = new HashMap<>();
+        for (int i = 0; i < markers.length; i++) {
+            sections.put(markers[i], i);
+        }
+        return sections;
+    }
+
+    /**
+     * Parses the lines of the file into the data
+     */
+    private static final class Parser {
+        private final BatMUDGoalsPluginData data;
+        private final ILoadProblemListener listener;
+        private final Charset charset = Charset.defaultCharset();
+        private int section = NO_SECTION;
+        private long sectionOffset;
+        /** Skill whose costs are being read, null between skills */
+        private String costSkill;
+
+        Parser(BatMUDGoalsPluginData data, ILoadProblemListener listener) {
+            this.data = data;
+            this.listener = listener;
+        }
+
+        void line(byte[] bytes, int length, long offset) {
+            String line = new String(bytes, 0, length, charset);
+            if (switchSection(line, offset)) {
+                return;
+            }
+            try {
+                switch (section) {
+                case SKILL_COSTS:
+                    skillCost(line, offset);
+                    break;
+                case SKILL_STATUSES: {
+                    int comma = lastComma(line);
+                    data.setSkillStatus(name(line, 0, comma), number(line, comma + 1, line.length()));
+                    break;
+                }
+                case SKILL_MAXES: {
+                    int first = line.indexOf(',');
+                    int second = first < 0 ? -1 : line.indexOf(',', first + 1);
+                    int third = second < 0 ? -1 : line.indexOf(',', second + 1);
+                    if (third < 0) {
+                        throw new IllegalArgumentException("Expected guild,level,max,skill");
+                    }
+                    data.setSkillMaxInfo(name(line, 0, first), name(line, third + 1, line.length()),
+                            number(line, first + 1, second), number(line, second + 1, third));
+                    break;
+                }
+                case GOAL_SKILL:
+                    data.setGoalSkill("null".equals(line) ? null : name(line, 0, line.length()));
+                    break;
+                case GUILD_LEVELS: {
+                    int comma = lastComma(line);
+                    data.setGuildLevel(name(line, 0, comma), number(line, comma + 1, line.length()));
+                    break;
+                }
+                case PARTIAL_TRAINS: {
+                    int comma = lastComma(line);
+                    data.setPartialTrains(name(line, 0, comma), number(line, comma + 1, line.length()));
+                    break;
+                }
+                default:
+                    if (!line.isEmpty()) {
+                        listener.problemAt(offset, "Line outside of sections: " + line);
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                listener.problemAt(offset, e.getMessage() + ": " + line);
+            }
+        }
+
+        /**
+         * @return true if the line is a section marker
+         */
+        private boolean switchSection(String line, long offset) {
+            // Every marker starts with > or <, most lines are ruled out by that
+            if (line.isEmpty() || (line.charAt(0) != '>' && line.charAt(0) != '<')) {
+                return false;
+            }
+            Integer begin = BEGIN_SECTIONS.get(line);
+            if (begin != null) {
+                endSection(offset);
+                section = begin;
+                sectionOffset = offset;
+                return true;
+            }
+            Integer end = END_SECTIONS.get(line);
+            if (end != null) {
+                if (end != section) {
+                    listener.problemAt(offset, "End of a section which has not begun: " + line);
+                } else {
+                    if (costSkill != null) {
+                        listener.problemAt(offset, "Costs of skill not ended: " + costSkill);
+                    }
+                    section = NO_SECTION;
+                    costSkill = null;
+                }
+                return true;
+            }
+            return false;
+        }
+
+        void endSection(long offset) {
+            if (section != NO_SECTION) {
+                listener.problemAt(sectionOffset, "Section not ended: " + BEGIN_MARKERS[section].substring(1));
+                section = NO_SECTION;
+                costSkill = null;
+            }
+        }
+
+        private void skillCost(String line, long offset) {
+            if (line.startsWith(">")) {
+                if (costSkill != null) {
+                    listener.problemAt(offset, "Costs of skill not ended: " + costSkill);
+                }
+                costSkill = name(line, 1, line.length());
+            } else if ("<".equals(line)) {
+                costSkill = null;
+            } else if (costSkill == null) {
+                throw new IllegalArgumentException("Cost outside of a skill");
+            } else {
+                int comma = line.indexOf(',');
+                if (comma < 0) {
+                    throw new IllegalArgumentException("Expected percent,cost");
+                }
+                int percent = number(line, 0, comma);
+                if (percent > 1000) {
+                    throw new IllegalArgumentException("Percent out of range");
+                }
+                data.setSkillCostForLevel(costSkill, percent, number(line, comma + 1, line.length()));
+            }
+        }
+
+        private static int lastComma(String line) {
+            int comma = line.lastIndexOf(',');
+            if (comma < 0) {
+                throw new IllegalArgumentException("Expected name,number");
+            }
+            return comma;
+        }
+
+        private static String name(String line, int start, int end) {
+            if (start >= end) {
+                throw new IllegalArgumentException("Missing name");
+            }
+            return line.substring(start, end).intern();
+        }
+
+        /**
+         * @throws NumberFormatException if not a non-negative number, it is an
+         *                               IllegalArgumentException
+         */
+        private static int number(String line, int start, int end) {
+            int value = Integer.parseInt(line, start, end, 10);
+            if (value < 0) {
+                throw new NumberFormatException("Negative number");
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Reads the data, skipping and reporting whatever cannot be read
+     *
+     * @param in
+     * @param listener told about the problems found
+     * @return data read
+     * @throws IOException if reading the input fails
+     */
+    static BatMUDGoalsPluginData read(InputStream in, ILoadProblemListener listener) throws IOException {
+        BatMUDGoalsPluginData data = new BatMUDGoalsPluginData();
+        Parser parser = new Parser(data, listener);
+        byte[] buffer = new byte[8192];
+        byte[] line = new byte[256];
+        int length = 0;
+        boolean tooLong = false;
+        long offset = 0;
+        long lineOffset = 0;
+        for (int n; (n = in.read(buffer)) > 0;) {
+            for (int i = 0; i < n; i++) {
+                byte b = buffer[i];
+                offset++;
+                if (b == '\n') {
+                    if (length > 0 && line[length - 1] == '\r') {
+                        length--;
+                    }
+                    if (tooLong) {
+                        listener.problemAt(lineOffset, "Line too long");
+                    } else {
+                        parser.line(line, length, lineOffset);
+                    }
+                    length = 0;
+                    tooLong = false;
+                    lineOffset = offset;
+                } else if (length == MAX_LINE_LENGTH) {
+                    tooLong = true;
+                } else {
+                    if (length == line.length) {
+                        line = Arrays.copyOf(line, Math.min(MAX_LINE_LENGTH, length * 2));
+                    }
+                    line[length++] = b;
+                }
+            }
+        }
+        if (length > 0 || tooLong) {
+            // Every line written ends in a line break
+            listener.problemAt(lineOffset, "File ends in the middle of a line");
+        }
+        parser.endSection(offset);
+        return data;
+    }
+
+    /**
+     * @param data
+     * @param out
+     * @throws IOException
+     */
+    static void write(BatMUDGoalsPluginData data, OutputStream out) throws IOException {
+        SymbolTable skills = data.skillNames();
+        SymbolTable guilds = data.guildNames();
+        PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(out)));
+        writer.println(BEGIN_SKILL_COSTS_MARKER);
+        for (int skill = 0; skill < skills.size(); skill++) {
+            SkillCostTable costs = data.skillCostTable(skill);
+            if (costs != null) {
+                writer.println(">" + skills.name(skill));
+                for (int level = costs.nextPercent(0); level >= 0; level = costs.nextPercent(level + 1)) {
+                    writer.println(level + "," + costs.get(level));
+                }
+                writer.println("<");
+            }
+        }
+        writer.println(END_SKILL_COSTS_MARKER);
+
+        writer.println(BEGIN_SKILL_STATUSES_MARKER);
+        for (int skill = 0; skill < skills.size(); skill++) {
+            if (data.skillStatusOrNone(skill) != SymbolTable.NONE) {
+                writer.println(skills.name(skill) + "," + data.skillStatusOrNone(skill));
+            }
+        }
+        writer.println(END_SKILL_STATUSES_MARKER);
+
+        writer.println(BEGIN_SKILL_MAXES_MARKER);
+        data.getSkillMaxes().forEach(skillmax -> {
+                writer.println(skillmax.guild + "," + skillmax.level + "," + skillmax.max + "," + skillmax.skill);
+            });
+        writer.println(END_SKILL_MAXES_MARKER);
+
+        writer.println(BEGIN_GOAL_SKILL_MARKER);
+        writer.println(data.getGoalSkill());
+        writer.println(END_GOAL_SKILL_MARKER);
+
+        writer.println(BEGIN_GUILD_LEVELS_MARKER);
+        for (int guild = 0; guild < guilds.size(); guild++) {
+            if (data.guildLevelOrNone(guild) != SymbolTable.NONE) {
+                writer.println(guilds.name(guild) + "," + data.guildLevelOrNone(guild));
+            }
+        }
+        writer.println(END_GUILD_LEVELS_MARKER);
+
+        writer.println(BEGIN_PARTIAL_TRAINS_MARKER);
+        data.getPartialTrains().forEach((skill, partial) -> {
+                writer.println(skill + "," + partial);
+            });
+        writer.println(END_PARTIAL_TRAINS_MARKER);
+        writer.flush();
+        if (writer.checkError()) {
+            throw new IOException("Cannot write text data");
+        }
+    }
+}
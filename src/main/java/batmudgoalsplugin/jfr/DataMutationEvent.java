@@ -0,0 +1,47 @@
+package batmudgoalsplugin.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A change to the data of the plugin, the same changes the journal records. It
+ * lasts from the start of the change to the end of writing it to the journal.
+ */
+@Name("batmudgoalsplugin.DataMutation")
+@Label("Data Mutation")
+@Category({ "BatMUD Goals Plugin", "Data" })
+@Description("Change made to the data of the plugin")
+@Enabled(false)
+@StackTrace(false)
+public class DataMutationEvent extends Event {
+
+    private static final EventType TYPE = EventType.getEventType(DataMutationEvent.class);
+
+    @Label("Mutation")
+    public String mutation;
+
+    @Label("Skill")
+    public String skill;
+
+    @Label("Guild")
+    public String guild;
+
+    @Label("Value")
+    public int value;
+
+    /**
+     * Begins the event before the data is changed. Commit it once the change
+     * has been handed to the journal.
+     *
+     * @return event begun, null while no recording has enabled data mutations
+     */
+    public static DataMutationEvent start() {
+        return Events.begin(TYPE, DataMutationEvent::new);
+    }
+}
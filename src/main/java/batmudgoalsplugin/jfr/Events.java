@@ -0,0 +1,32 @@
+package batmudgoalsplugin.jfr;
+
+import java.util.function.Supplier;
+
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+
+/**
+ * Begins the events of the plugin only while a recording has enabled them
+ */
+final class Events {
+
+    private Events() {
+    }
+
+    /**
+     * Checks the setting of the event type before creating the event, so
+     * nothing is allocated on the hot paths while no recording is running.
+     *
+     * @param type    of the event
+     * @param factory constructor of the event
+     * @return event begun, null if not enabled
+     */
+    static <E extends Event> E begin(EventType type, Supplier<E> factory) {
+        if (!type.isEnabled()) {
+            return null;
+        }
+        E event = factory.get();
+        event.begin();
+        return event;
+    }
+}
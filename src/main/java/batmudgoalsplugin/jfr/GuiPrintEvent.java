@@ -0,0 +1,37 @@
+package batmudgoalsplugin.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Text printed to a window of the client
+ */
+@Name("batmudgoalsplugin.GuiPrint")
+@Label("GUI Print")
+@Category({ "BatMUD Goals Plugin", "GUI" })
+@Description("Text printed to a window of the client")
+@Enabled(false)
+public class GuiPrintEvent extends Event {
+
+    private static final EventType TYPE = EventType.getEventType(GuiPrintEvent.class);
+
+    @Label("Window")
+    public String window;
+
+    @Label("Length")
+    public int length;
+
+    /**
+     * Begins the event before the text is handed to the client.
+     *
+     * @return event begun, null while no recording has enabled GUI prints
+     */
+    public static GuiPrintEvent start() {
+        return Events.begin(TYPE, GuiPrintEvent::new);
+    }
+}
@@ -0,0 +1,44 @@
+package batmudgoalsplugin.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A line of output handed to the output processors, from the start of the
+ * dispatch until the listeners of the matches have been told
+ */
+@Name("batmudgoalsplugin.LineDispatched")
+@Label("Line Dispatched")
+@Category({ "BatMUD Goals Plugin", "Processing" })
+@Description("Line of output handed to the output processors")
+@Enabled(false)
+@StackTrace(false)
+public class LineDispatchedEvent extends Event {
+
+    private static final EventType TYPE = EventType.getEventType(LineDispatchedEvent.class);
+
+    @Label("Dispatch Engine")
+    public String engine;
+
+    @Label("Line Length")
+    public int length;
+
+    @Label("Processors Matched")
+    public int matched;
+
+    /**
+     * Begins the event before the line is matched. The engine, length and
+     * number of matches are filled in once the line has been dispatched.
+     *
+     * @return event begun, null while no recording has enabled line dispatches
+     */
+    public static LineDispatchedEvent start() {
+        return Events.begin(TYPE, LineDispatchedEvent::new);
+    }
+}
@@ -0,0 +1,50 @@
+package batmudgoalsplugin.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Data of the plugin loaded from or saved to a file
+ */
+@Name("batmudgoalsplugin.Persistence")
+@Label("Persistence")
+@Category({ "BatMUD Goals Plugin", "Data" })
+@Description("Data of the plugin loaded from or saved to a file")
+@Enabled(false)
+public class PersistenceEvent extends Event {
+
+    private static final EventType TYPE = EventType.getEventType(PersistenceEvent.class);
+
+    /** Values of {@link #operation} */
+    public static final String LOAD = "load";
+    public static final String SAVE = "save";
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("File")
+    public String file;
+
+    @Label("Format")
+    public String format;
+
+    @Label("Size")
+    @DataAmount
+    public long bytes;
+
+    /**
+     * Begins the event before the file is opened. The operation, file, format
+     * and size are filled in once the data has been read or written.
+     *
+     * @return event begun, null while no recording has enabled persistence
+     */
+    public static PersistenceEvent start() {
+        return Events.begin(TYPE, PersistenceEvent::new);
+    }
+}
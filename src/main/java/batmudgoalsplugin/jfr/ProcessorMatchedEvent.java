@@ -0,0 +1,40 @@
+package batmudgoalsplugin.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * An output processor matched a line and processed it
+ */
+@Name("batmudgoalsplugin.ProcessorMatched")
+@Label("Processor Matched")
+@Category({ "BatMUD Goals Plugin", "Processing" })
+@Description("Output processor matched and processed a line")
+@Enabled(false)
+@StackTrace(false)
+public class ProcessorMatchedEvent extends Event {
+
+    private static final EventType TYPE = EventType.getEventType(ProcessorMatchedEvent.class);
+
+    @Label("Processor")
+    public Class<?> processor;
+
+    @Label("Line")
+    public String line;
+
+    /**
+     * Begins the event before the processor looks at the line. It is committed
+     * only if the processor matched the line.
+     *
+     * @return event begun, null while no recording has enabled processor matches
+     */
+    public static ProcessorMatchedEvent start() {
+        return Events.begin(TYPE, ProcessorMatchedEvent::new);
+    }
+}
@@ -0,0 +1,202 @@
+package batmudgoalsplugin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class AsyncLogHandlerTest {
+
+    private static final long WINDOW_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    /** Collects the records written */
+    private static class CollectingHandler extends Handler {
+        final List<LogRecord> records = Collections.synchronizedList(new ArrayList<>());
+        volatile boolean closed;
+
+        @Override
+        public void publish(LogRecord record) {
+            records.add(record);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        List<String> messages() {
+            synchronized (records) {
+                return records.stream().map(LogRecord::getMessage).collect(Collectors.toList());
+            }
+        }
+    }
+
+    private final AtomicLong clock = new AtomicLong();
+    private CollectingHandler target;
+    private Logger logger;
+
+    @BeforeEach
+    public void setup() {
+        target = new CollectingHandler();
+        logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+    }
+
+    private AsyncLogHandler handler(int capacity) {
+        AsyncLogHandler handler = new AsyncLogHandler(target, capacity, WINDOW_NANOS, clock::get);
+        logger.addHandler(handler);
+        return handler;
+    }
+
+    /** Has the same stack trace every time it is logged */
+    private final NullPointerException failure = new NullPointerException("skill");
+
+    private void fail(int times) {
+        for (int i = 0; i < times; i++) {
+            logger.log(Level.SEVERE, failure.getMessage(), failure);
+        }
+    }
+
+    @Test
+    public void testRecordsAreWrittenInOrderWithTheirCaller() throws Exception {
+        AsyncLogHandler handler = handler(16);
+        for (int i = 0; i < 100; i++) {
+            logger.info("message " + i);
+            // Queue is small, so give the writer time instead of dropping
+            handler.awaitWritten(1, TimeUnit.SECONDS);
+        }
+        handler.close();
+
+        assertEquals(100, target.records.size());
+        assertEquals("message 99", target.records.get(99).getMessage());
+        assertEquals(getClass().getName(), target.records.get(0).getSourceClassName());
+        assertTrue(target.closed);
+    }
+
+    @Test
+    public void testRepeatedExceptionIsWrittenOncePerWindow() throws Exception {
+        AsyncLogHandler handler = handler(16);
+        fail(50);
+        logger.log(Level.SEVERE, "other", new IllegalStateException());
+        assertTrue(handler.awaitWritten(1, TimeUnit.SECONDS));
+        assertEquals(49, handler.getSuppressedRecords());
+        assertEquals(2, target.records.size());
+
+        clock.addAndGet(WINDOW_NANOS);
+        fail(1);
+        assertTrue(handler.awaitWritten(1, TimeUnit.SECONDS));
+        assertEquals("Previous message repeated 49 times: skill", target.records.get(2).getMessage());
+        assertEquals(Level.SEVERE, target.records.get(2).getLevel());
+        assertEquals("skill", target.records.get(3).getMessage());
+
+        fail(2);
+        handler.close();
+        assertEquals("Previous message repeated 2 times: skill", target.records.get(4).getMessage());
+    }
+
+    @Test
+    public void testExceptionNotRepeatedInWindowIsNotSummarized() throws Exception {
+        AsyncLogHandler handler = handler(16);
+        fail(1);
+        clock.addAndGet(WINDOW_NANOS);
+        fail(1);
+        handler.close();
+
+        assertEquals(0, handler.getSuppressedRecords());
+        assertEquals(List.of("skill", "skill"), target.messages());
+    }
+
+    @Test
+    public void testRecordsAreDroppedWhenQueueIsFull() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CollectingHandler blocking = new CollectingHandler() {
+            @Override
+            public void publish(LogRecord record) {
+                super.publish(record);
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        target = blocking;
+        AsyncLogHandler handler = handler(2);
+
+        logger.info("being written");
+        blocked.await();
+        logger.info("queued 1");
+        logger.info("queued 2");
+        logger.info("dropped");
+        release.countDown();
+
+        assertTrue(handler.awaitWritten(1, TimeUnit.SECONDS));
+        handler.close();
+        assertEquals(1, handler.getDroppedRecords());
+        assertEquals(List.of("being written", "queued 1", "queued 2",
+                "1 log records dropped, the log queue was full"), blocking.messages());
+    }
+
+    @Test
+    public void testReportOfDroppedRecordsIsNotCountedAsWritten() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch releaseLate = new CountDownLatch(1);
+        CollectingHandler blocking = new CollectingHandler() {
+            @Override
+            public void publish(LogRecord record) {
+                super.publish(record);
+                try {
+                    if (record.getMessage().equals("being written")) {
+                        blocked.countDown();
+                        release.await();
+                    } else if (record.getMessage().equals("late")) {
+                        releaseLate.await();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        target = blocking;
+        AsyncLogHandler handler = handler(2);
+
+        logger.info("being written");
+        blocked.await();
+        logger.info("queued 1");
+        logger.info("queued 2");
+        logger.info("dropped");
+        release.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (blocking.records.size() < 4) {
+            assertTrue(System.nanoTime() < deadline, "Dropped records not reported");
+            Thread.sleep(1);
+        }
+
+        logger.info("late");
+        assertFalse(handler.awaitWritten(50, TimeUnit.MILLISECONDS));
+        releaseLate.countDown();
+        assertTrue(handler.awaitWritten(1, TimeUnit.SECONDS));
+        handler.close();
+    }
+}
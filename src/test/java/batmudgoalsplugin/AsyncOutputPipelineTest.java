@@ -0,0 +1,166 @@
+package batmudgoalsplugin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.jupiter.api.Test;
+
+public class AsyncOutputPipelineTest {
+
+    @Test
+    public void testLinesAreProcessedInOrder() throws Exception {
+        List<String> processed = Collections.synchronizedList(new ArrayList<>());
+        List<String> expected = new ArrayList<>();
+        AsyncOutputPipeline pipeline = new AsyncOutputPipeline(16, processed::add);
+
+        for (int i = 0; i < 10000; i++) {
+            String line = "line " + i;
+            // Queue is tiny, so give the consumer time instead of dropping
+            while (!pipeline.submit(line)) {
+                Thread.yield();
+            }
+            expected.add(line);
+        }
+
+        assertTrue(pipeline.awaitDrained(10, TimeUnit.SECONDS));
+        assertEquals(expected, processed);
+        pipeline.shutdown(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testLinesAreDroppedWhenQueueIsFull() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AsyncOutputPipeline pipeline = new AsyncOutputPipeline(2, line -> {
+            blocked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        pipeline.submit("being processed");
+        blocked.await();
+        assertTrue(pipeline.submit("queued 1"));
+        assertTrue(pipeline.submit("queued 2"));
+        assertFalse(pipeline.submit("dropped"));
+        release.countDown();
+
+        assertTrue(pipeline.awaitDrained(1, TimeUnit.SECONDS));
+        assertEquals(3, pipeline.getQueuedLines());
+        assertEquals(1, pipeline.getDroppedLines());
+        pipeline.shutdown(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testShutdownDrainsQueue() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> processed = Collections.synchronizedList(new ArrayList<>());
+        AsyncOutputPipeline pipeline = new AsyncOutputPipeline(8, line -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            processed.add(line);
+        });
+        pipeline.submit("a");
+        pipeline.submit("b");
+        pipeline.submit("c");
+        release.countDown();
+
+        assertTrue(pipeline.shutdown(1, TimeUnit.SECONDS));
+        assertEquals(List.of("a", "b", "c"), processed);
+        assertTrue(pipeline.submit("after shutdown"));
+        assertEquals(List.of("a", "b", "c", "after shutdown"), processed);
+    }
+
+    @Test
+    public void testLinesSubmittedDuringShutdownAreNotLost() throws Exception {
+        for (int round = 0; round < 50; round++) {
+            List<String> processed = Collections.synchronizedList(new ArrayList<>());
+            AsyncOutputPipeline pipeline = new AsyncOutputPipeline(1024, processed::add);
+            List<String> expected = new ArrayList<>();
+            CountDownLatch started = new CountDownLatch(1);
+            Thread output = new Thread(() -> {
+                started.countDown();
+                for (int i = 0; i < 2000; i++) {
+                    String line = "line " + i;
+                    if (pipeline.submit(line)) {
+                        expected.add(line);
+                    }
+                }
+            });
+            output.start();
+            started.await();
+            assertTrue(pipeline.shutdown(1, TimeUnit.SECONDS));
+            output.join();
+
+            assertEquals(expected, processed);
+        }
+    }
+
+    @Test
+    public void testAwaitDrainedReturnsWhenQueueEmpties() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AsyncOutputPipeline pipeline = new AsyncOutputPipeline(8, line -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        pipeline.submit("a");
+        assertFalse(pipeline.awaitDrained(20, TimeUnit.MILLISECONDS));
+
+        new Thread(() -> {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(20));
+            release.countDown();
+        }).start();
+        long start = System.nanoTime();
+        assertTrue(pipeline.awaitDrained(10, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertEquals(1, pipeline.getProcessedLines());
+        pipeline.shutdown(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testAwaitDrainedDoesNotWaitForLinesQueuedLater() throws Exception {
+        CountDownLatch first = new CountDownLatch(1);
+        CountDownLatch later = new CountDownLatch(1);
+        AsyncOutputPipeline pipeline = new AsyncOutputPipeline(8, line -> {
+            try {
+                (line.equals("a") ? first : later).await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        pipeline.submit("a");
+
+        new Thread(() -> {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(20));
+            pipeline.submit("b");
+            first.countDown();
+        }).start();
+        assertTrue(pipeline.awaitDrained(10, TimeUnit.SECONDS));
+        assertEquals(1, pipeline.getProcessedLines());
+        later.countDown();
+        assertTrue(pipeline.shutdown(1, TimeUnit.SECONDS));
+        assertEquals(2, pipeline.getProcessedLines());
+    }
+
+    @Test
+    public void testCapacityMustBePowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new OutputLineRingBuffer(3));
+    }
+}
@@ -1,5 +1,8 @@
 package batmudgoalsplugin;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.verify;
 
 import java.util.Arrays;
@@ -15,11 +18,13 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import batmudgoalsplugin.BatMUDGoalsController.DispatchEngine;
 import batmudgoalsplugin.data.BatMUDGoalsPluginData;
 
 /**
  * Integration test for the plugin. Uses all of the command processors
- * set up in {@link BatMUDGoalsController} in concert.
+ * set up in {@link BatMUDGoalsController} in concert. Subclasses run the same
+ * tests with the other dispatch engines.
  */
 @ExtendWith(MockitoExtension.class)
 public class BatMUDGoalsControllerTest {
@@ -34,6 +39,7 @@ public class BatMUDGoalsControllerTest {
         Logger log = Logger.getLogger(getClass().toString());
         log.setLevel(Level.OFF);
         goalsModel = new BatMUDGoalsController(log, new BatMUDGoalsPluginData(), guiModel);
+        goalsModel.setDispatchEngine(dispatchEngine());
 
         givenPlayerListsCostOfTrainingAttack();
         givenPlayersAttackSkillAtOnePercent();
@@ -42,6 +48,10 @@ public class BatMUDGoalsControllerTest {
 
     }
 
+    protected DispatchEngine dispatchEngine() {
+        return DispatchEngine.INDEXED;
+    }
+
     private void batmudPrints(String... strings) {
         Arrays.stream(strings)
             .map(ParsedResult::new)
@@ -49,6 +59,7 @@ public class BatMUDGoalsControllerTest {
     }
 
     private void givenPlayersAttackSkillAtOnePercent() {
+        userTypes("train");
         batmudPrints("| Attack                      |  1 |  85 | 100 |       22015 |\n");
     }
 
@@ -138,6 +149,7 @@ public class BatMUDGoalsControllerTest {
     }
 
     private void givenPlayerListsCostOfTrainingAttack() {
+        userTypes("cost train attack");
         batmudPrints(",-------------------------------------------------.\n",
                      "| Cost of training Attack                         |\n",
                      "|-------------------------------------------------|\n",
@@ -169,6 +181,17 @@ public class BatMUDGoalsControllerTest {
         verify(guiModel).printMessage(expected);
     }
 
+    @Test
+    @DisplayName("When the cost table has ended, table rows printed afterwards are not stored")
+    public void testCostTableOutsideSession() throws Exception {
+        batmudPrints("`-------------------------------------------------'\n",
+                     "| Cost of training Brawling                       |\n",
+                     "|    1% =            80  |   51% =          9046  |\n");
+        userTypes("goal brawling");
+
+        verifyPrint("brawling not in library");
+    }
+
     @Test
     @DisplayName("When player sets goal to a skill in the library, the player gets a verification message")
     public void testSetGoalSuccesfully() throws Exception {
@@ -185,8 +208,8 @@ public class BatMUDGoalsControllerTest {
 
         userTypes("goal");
 
-        verifyPrint("attack (*)");
-        verifyPrint("looting and burning");
+        verify(guiModel).printMessages(argThat(lines -> lines.size() == 2 && lines.contains("attack (*)")
+                && lines.contains("looting and burning")));
     }
 
     private void givenPlayerSetsTheirGoalToAttack() {
@@ -194,6 +217,7 @@ public class BatMUDGoalsControllerTest {
     }
 
     private void givenListsCostOfTrainingLootingAndBurning() {
+        userTypes("cost train looting and burning");
         batmudPrints(",-------------------------------------------------.\n",
                      "| Cost of training Looting and burning                         |\n",
                      "|-------------------------------------------------|\n",
@@ -214,6 +238,39 @@ public class BatMUDGoalsControllerTest {
         verifyPrint("Goal attack: 82 You need: " + Integer.toString(82 - 2));
     }
 
+    @Test
+    @DisplayName("The goal window shows the progress the 'exp' command prints")
+    public void testGoalProgress() throws Exception {
+        givenPlayerSetsTheirGoalToAttack();
+
+        batmudPrints("Exp: 2 Money: 211.10 Bank: 64440.00 Exp pool: 100.0\n");
+
+        GoalProgress progress = goalsModel.getGoalProgress();
+        assertEquals("attack", progress.getSkill());
+        assertEquals(1, progress.getPercent());
+        assertEquals(82, progress.getNeededExp());
+        assertEquals(82 - 2, progress.getMissingExp());
+        assertEquals(Arrays.asList("barbarian", "ranger"), progress.getGuilds());
+    }
+
+    @Test
+    public void testGoalProgressVersionGrowsWithChanges() throws Exception {
+        long version = goalsModel.getGoalProgressVersion();
+        givenPlayerSetsTheirGoalToAttack();
+        assertTrue(goalsModel.getGoalProgressVersion() > version);
+
+        version = goalsModel.getGoalProgressVersion();
+        batmudPrints("Exp: 2 Money: 211.10 Bank: 64440.00 Exp pool: 100.0\n");
+        assertTrue(goalsModel.getGoalProgressVersion() > version);
+
+        version = goalsModel.getGoalProgressVersion();
+        batmudPrints("Exp: 2 Money: 211.10 Bank: 64440.00 Exp pool: 100.0\n");
+        assertEquals(version, goalsModel.getGoalProgressVersion());
+
+        goalsModel.switchData(new BatMUDGoalsPluginData());
+        assertTrue(goalsModel.getGoalProgressVersion() > version);
+    }
+
     @Test
     public void testExpOutputWithZeroValues() throws Exception {
         givenPlayerSetsTheirGoalToAttack();
@@ -237,6 +294,7 @@ public class BatMUDGoalsControllerTest {
     @Test
     @DisplayName("Given player's goal skill is at the max at their level, when player uses 'exp' command they are informed they need another level")
     public void testNeedAnotherLevel() throws Exception {
+        userTypes("train");
         batmudPrints("| Attack                      |  85 |  85 | 85 |       22015 |\n");
         givenPlayerSetsTheirGoalToAttack();
 
@@ -248,6 +306,7 @@ public class BatMUDGoalsControllerTest {
     @Test
     @DisplayName("Given player's goal skill is at max, when player uses 'exp' command they are informed the goal is full")
     public void testSkillIsFull() throws Exception {
+        userTypes("train");
         batmudPrints("| Attack                      |  100 |  85 | 100 |       (n/a) |\n");
         givenPlayerSetsTheirGoalToAttack();
 
@@ -300,4 +359,87 @@ public class BatMUDGoalsControllerTest {
 
         verifyPrint("Goal attack: 203 You have enough to advance in: ranger");
     }
+
+    @Test
+    @DisplayName("When another character logs in, commands work on the data of that character")
+    public void testCharacterLogsIn() throws Exception {
+        BatMUDGoalsPluginData alt = new BatMUDGoalsPluginData();
+        goalsModel.setCharacterListener(character -> {
+            assertEquals("alt", character);
+            goalsModel.switchData(alt);
+        });
+        batmudPrints("Welcome back, Alt.\n");
+
+        givenPlayerSetsTheirGoalToAttack();
+
+        verifyPrint("attack not in library");
+    }
+
+    @Test
+    @DisplayName("When the data of a character logging in is loaded, the output after the login goes to it")
+    public void testOutputIsHeldUntilDataIsSwitched() throws Exception {
+        BatMUDGoalsPluginData alt = new BatMUDGoalsPluginData();
+        goalsModel.setCharacterListener(character -> goalsModel.holdOutput());
+        batmudPrints("Welcome back, Alt.\n");
+        givenPlayerTrainsAttackToMax();
+
+        assertEquals(1, goalsModel.copyData(() -> {
+        }).getCurrentSkillStatus("attack"));
+        goalsModel.switchData(alt);
+        assertEquals(100, alt.getCurrentSkillStatus("attack"));
+    }
+
+    @Test
+    @DisplayName("When the data is switched in the middle of a table, the rest of the table goes to the new data")
+    public void testSwitchDataKeepsSessions() throws Exception {
+        BatMUDGoalsPluginData alt = new BatMUDGoalsPluginData();
+        userTypes("train");
+        batmudPrints("| Skills available at level  1  | Cur | Rac | Max | Exp         |");
+
+        goalsModel.switchData(alt);
+        batmudPrints("| Attack                        |   7 |  85 | 10  |       22015 |");
+
+        assertEquals(7, alt.getCurrentSkillStatus("attack"));
+    }
+
+    @Test
+    @DisplayName("When player uses 'goal stats' command they are shown what the processors have seen")
+    public void testGoalStats() throws Exception {
+        userTypes("goal stats on");
+        userTypes("train");
+        batmudPrints("| Skills available at level  1  | Cur | Rac | Max | Exp         |",
+                     "| Attack                        |   0 |  85 | 10  |       22015 |");
+        userTypes("goal stats");
+
+        verify(guiModel).printMessages(argThat(lines -> lines.get(0).startsWith("Processor ")
+                && lines.stream().anyMatch(line -> line.startsWith("TrainCommandOutputProcessor "))
+                && lines.stream().anyMatch(line -> line.startsWith("SessionCommandProcessor COST "))
+                && lines.stream().anyMatch(line -> line.startsWith("SessionCommandProcessor TRAIN "))
+                && lines.stream().anyMatch(line -> line.startsWith("Output lines "))));
+        assertEquals(1, goalsModel.getStats().processors().stream()
+                .filter(counters -> counters.getName().equals("TrainCommandOutputProcessor")).findFirst().get()
+                .getMatched());
+        assertEquals(1, goalsModel.getStats().processors().stream()
+                .filter(counters -> counters.getName().equals("SessionCommandProcessor TRAIN")).findFirst().get()
+                .getSeen());
+    }
+
+    @Test
+    @DisplayName("Lines are not counted until 'goal stats on', nor after 'goal stats off'")
+    public void testGoalStatsOff() throws Exception {
+        batmudPrints("Exp: 12920 Money: 211.10 Bank: 64440.00 Exp pool: 100.0\n");
+        assertEquals(0, goalsModel.getStats().output().getSeen());
+
+        userTypes("goal stats on");
+        batmudPrints("Exp: 12920 Money: 211.10 Bank: 64440.00 Exp pool: 100.0\n");
+        assertEquals(1, goalsModel.getStats().output().getSeen());
+
+        userTypes("goal stats off");
+        batmudPrints("Exp: 12920 Money: 211.10 Bank: 64440.00 Exp pool: 100.0\n");
+        assertEquals(1, goalsModel.getStats().output().getSeen());
+
+        userTypes("goal stats reset");
+        assertEquals(0, goalsModel.getStats().output().getSeen());
+        verifyPrint("Stats reset");
+    }
 }
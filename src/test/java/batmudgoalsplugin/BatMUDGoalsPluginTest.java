@@ -0,0 +1,103 @@
+package batmudgoalsplugin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+import java.util.stream.Stream;
+
+import com.mythicscape.batclient.interfaces.ClientGUI;
+import com.mythicscape.batclient.interfaces.ParsedResult;
+
+import batmudgoalsplugin.data.BatMUDGoalsPluginData;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class BatMUDGoalsPluginTest {
+
+    private Path baseDirectory;
+    private ClientGUI gui;
+    private BatMUDGoalsPlugin plugin;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        baseDirectory = Files.createTempDirectory("client");
+        gui = mock(ClientGUI.class);
+        when(gui.getBaseDirectory()).thenReturn(baseDirectory.toString());
+        plugin = new BatMUDGoalsPlugin();
+        plugin.init(null, null, null, null, null, gui);
+    }
+
+    @AfterEach
+    public void cleanup() throws Exception {
+        try (Stream<Path> files = Files.walk(baseDirectory)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void testCorruptCostLibraryDoesNotDisablePlugin() throws Exception {
+        Path directory = baseDirectory.resolve("conf/batmudgoalsplugin");
+        Files.createDirectories(directory);
+        Files.write(directory.resolve("BatMUDGoalsCosts.lib"), "Not costs at all".getBytes(StandardCharsets.UTF_8));
+
+        plugin.loadPlugin();
+        try {
+            assertEquals("", plugin.trigger("goal"));
+            verify(gui).printText(eq("generic"), anyString());
+        } finally {
+            plugin.clientExit();
+        }
+    }
+
+    @Test
+    public void testChangeRightAfterLoginGoesToNewProfile() throws Exception {
+        plugin.loadPlugin();
+        try {
+            plugin.trigger(new ParsedResult("Welcome back, Alt.\n"));
+            plugin.trigger(new ParsedResult("You now have 'Attack' at 42% without special bonuses.\n"));
+        } finally {
+            plugin.clientExit();
+        }
+
+        assertEquals(42, savedData("profiles/alt").getCurrentSkillStatus("attack"));
+        assertThrows(NoSuchElementException.class, () -> savedData("").getCurrentSkillStatus("attack"));
+    }
+
+    @Test
+    public void testChangesGoToProfileOfCharacterLoggedIn() throws Exception {
+        plugin.loadPlugin();
+        try {
+            plugin.trigger(new ParsedResult("Welcome back, Alt.\n"));
+            plugin.trigger(new ParsedResult("You now have 'Attack' at 10% without special bonuses.\n"));
+            plugin.trigger(new ParsedResult("Welcome back, Main.\n"));
+            plugin.trigger(new ParsedResult("You now have 'Attack' at 20% without special bonuses.\n"));
+            // In memory by now
+            plugin.trigger(new ParsedResult("Welcome back, Alt.\n"));
+            plugin.trigger(new ParsedResult("You now have 'Attack' at 30% without special bonuses.\n"));
+        } finally {
+            plugin.clientExit();
+        }
+
+        assertEquals(30, savedData("profiles/alt").getCurrentSkillStatus("attack"));
+        assertEquals(20, savedData("profiles/main").getCurrentSkillStatus("attack"));
+    }
+
+    private BatMUDGoalsPluginData savedData(String profile) {
+        Path directory = baseDirectory.resolve("conf/batmudgoalsplugin").resolve(profile);
+        return BatMUDGoalsPluginData.fromFile(directory.resolve("BatMUDGoalsInfo.bin").toFile(),
+                directory.resolve("BatMUDGoalsInfo.journal").toFile());
+    }
+}
@@ -0,0 +1,26 @@
+package batmudgoalsplugin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * Tests recognising the character from the greeting of the game
+ */
+public class CharacterNameOutputProcessorTest {
+
+    @Test
+    public void testGreetings() {
+        List<String> characters = new ArrayList<>();
+        CharacterNameOutputProcessor op = new CharacterNameOutputProcessor(characters::add);
+        op.receive("Welcome back, Jogo.\n");
+        op.receive("Welcome to BatMUD, Alt!");
+        assertFalse(op.receive("Welcome back, you have been away for a while."));
+        assertEquals(Arrays.asList("jogo", "alt"), characters);
+    }
+}
@@ -0,0 +1,51 @@
+package batmudgoalsplugin;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import com.mythicscape.batclient.interfaces.ClientGUI;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ClientGUIModelTest {
+
+    private static final String NL = System.lineSeparator();
+
+    private ClientGUI gui;
+    private ClientGUIModel model;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        gui = mock(ClientGUI.class);
+        BatMUDGoalsPlugin plugin = new BatMUDGoalsPlugin();
+        plugin.init(null, null, null, null, null, gui);
+        model = new ClientGUIModel(plugin);
+    }
+
+    @Test
+    public void testMessageIsPrintedOnALine() {
+        model.printMessage("Next goal: attack");
+
+        verify(gui).printText("generic", "Next goal: attack" + NL);
+    }
+
+    @Test
+    public void testMessagesArePrintedWithOneCall() {
+        model.printMessages(Arrays.asList("attack (*)", "camping", "looting and burning"));
+
+        verify(gui).printText("generic", "attack (*)" + NL + "camping" + NL + "looting and burning" + NL);
+        verifyNoMoreInteractions(gui);
+    }
+
+    @Test
+    public void testNoMessagesPrintNothing() {
+        model.printMessages(Collections.emptyList());
+
+        verifyNoMoreInteractions(gui);
+    }
+}
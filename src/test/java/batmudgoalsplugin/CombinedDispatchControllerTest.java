@@ -0,0 +1,14 @@
+package batmudgoalsplugin;
+
+import batmudgoalsplugin.BatMUDGoalsController.DispatchEngine;
+
+/**
+ * Runs the integration tests with the combined dispatch engine
+ */
+public class CombinedDispatchControllerTest extends BatMUDGoalsControllerTest {
+
+    @Override
+    protected DispatchEngine dispatchEngine() {
+        return DispatchEngine.COMBINED;
+    }
+}
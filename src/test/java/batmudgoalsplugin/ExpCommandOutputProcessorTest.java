@@ -1,9 +1,12 @@
 package batmudgoalsplugin;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 
+import java.util.Collections;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -35,6 +38,12 @@ public class ExpCommandOutputProcessorTest {
         verify(guiModel, never()).printMessage(anyString());
     }
 
+    @Test
+    @DisplayName("Given player has no goal, the goal window shows no goal")
+    public void testNoGoalProgress() throws Exception {
+        assertEquals(GoalProgress.NO_GOAL, op.getGoalProgress());
+    }
+
     @Nested
     @DisplayName("Given player's goal is 'attack'")
     class GivenPlayersGoalIsAttack {
@@ -139,6 +148,75 @@ public class ExpCommandOutputProcessorTest {
 
                 assertPrints("Goal attack: needs level");
             }
+
+            @Test
+            @DisplayName("and player uses 'exp' again without changes to the data, the goal is not evaluated again")
+            public void testRepeatedExpUsesEvaluatedGoal() throws Exception {
+                data.setSkillCostForLevel("attack", 2, 200);
+                data.setGuildLevel("tzarakk", 1);
+                data.setSkillMaxInfo("tzarakk", "attack", 1, 12);
+
+                batmudPrints("Exp: 13 Money: 0.00 Bank: 644404.00 Exp pool: 0");
+                batmudPrints("Exp: 150 Money: 0.00 Bank: 644404.00 Exp pool: 0");
+                batmudPrints("Exp: 300 Money: 0.00 Bank: 644404.00 Exp pool: 0");
+
+                assertPrints("Goal attack: 200 You need: 187");
+                assertPrints("Goal attack: 200 You need: 50");
+                assertPrints("Goal attack: 200 You have enough to advance in: tzarakk");
+                assertEquals(1, op.getCacheMisses());
+                assertEquals(2, op.getCacheHits());
+            }
+
+            @Test
+            @DisplayName("and the data changes between 'exp' commands, the goal is evaluated again")
+            public void testChangedDataIsEvaluatedAgain() throws Exception {
+                data.setSkillCostForLevel("attack", 2, 200);
+                data.setGuildLevel("tzarakk", 1);
+                data.setSkillMaxInfo("tzarakk", "attack", 1, 12);
+
+                batmudPrints("Exp: 13 Money: 0.00 Bank: 644404.00 Exp pool: 0");
+                data.setSkillCostForLevel("attack", 2, 100);
+                batmudPrints("Exp: 13 Money: 0.00 Bank: 644404.00 Exp pool: 0");
+
+                assertPrints("Goal attack: 200 You need: 187");
+                assertPrints("Goal attack: 100 You need: 87");
+                assertEquals(2, op.getCacheMisses());
+                assertEquals(0, op.getCacheHits());
+            }
+
+            @Test
+            @DisplayName("the goal window shows the exp needed, the exp still missing after 'exp' and the guilds")
+            public void testGoalProgress() throws Exception {
+                data.setSkillCostForLevel("attack", 2, 200);
+                data.setGuildLevel("tzarakk", 1);
+                data.setSkillMaxInfo("tzarakk", "attack", 1, 12);
+
+                GoalProgress beforeExp = op.getGoalProgress();
+                batmudPrints("Exp: 13 Money: 0.00 Bank: 644404.00 Exp pool: 0");
+                GoalProgress afterExp = op.getGoalProgress();
+
+                assertEquals(new GoalProgress("attack", 1, 200, GoalProgress.UNKNOWN,
+                        Collections.singletonList("tzarakk"), null), beforeExp);
+                assertEquals(GoalProgress.UNKNOWN, beforeExp.getMissingExp());
+                assertEquals(187, afterExp.getMissingExp());
+                // 'exp' used the goal evaluated for the window, which is not counted
+                assertEquals(0, op.getCacheMisses());
+                assertEquals(1, op.getCacheHits());
+            }
+
+            @Test
+            @DisplayName("and no guild offers it at player's level, the goal window shows it needs level")
+            public void testGoalProgressNeedsLevel() throws Exception {
+                data.setSkillCostForLevel("attack", 2, 200);
+                data.setGuildLevel("tzarakk", 1);
+                data.setSkillMaxInfo("tzarakk", "attack", 12, 12);
+
+                GoalProgress progress = op.getGoalProgress();
+
+                assertEquals("Needs level", progress.getStatus());
+                assertEquals(GoalProgress.UNKNOWN, progress.getNeededExp());
+                assertEquals(Collections.emptyList(), progress.getGuilds());
+            }
         }
 
     }
@@ -0,0 +1,112 @@
+package batmudgoalsplugin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import com.mythicscape.batclient.interfaces.ParsedResult;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import batmudgoalsplugin.data.BatMUDGoalsPluginData;
+import batmudgoalsplugin.data.DataFormat;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class FlightRecorderEventsTest {
+
+    private BatMUDGoalsController controller;
+    private BatMUDGoalsPluginData data;
+    private File file;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        Logger log = Logger.getLogger(getClass().toString());
+        log.setLevel(Level.OFF);
+        data = new BatMUDGoalsPluginData();
+        controller = new BatMUDGoalsController(log, data, mock(ClientGUIModel.class));
+        file = File.createTempFile("testdata", "bin");
+    }
+
+    @AfterEach
+    public void deleteFile() {
+        file.delete();
+    }
+
+    private void playSession() {
+        controller.trigger("train");
+        controller.trigger(new ParsedResult("| Attack                      |  1 |  85 | 100 |       22015 |\n"));
+        controller.trigger(new ParsedResult("Tiger hits you.\n"));
+        BatMUDGoalsPluginData.persistToFile(data, file, DataFormat.BINARY);
+        BatMUDGoalsPluginData.fromFile(file);
+    }
+
+    private List<RecordedEvent> record(boolean enablePluginEvents) throws Exception {
+        Path recorded = File.createTempFile("recording", ".jfr").toPath();
+        try (Recording recording = new Recording()) {
+            if (enablePluginEvents) {
+                for (String event : new String[] { "LineDispatched", "ProcessorMatched", "DataMutation",
+                        "Persistence" }) {
+                    recording.enable("batmudgoalsplugin." + event).withoutThreshold();
+                }
+            }
+            recording.start();
+            playSession();
+            recording.stop();
+            recording.dump(recorded);
+            return RecordingFile.readAllEvents(recorded).stream()
+                    .filter(event -> event.getEventType().getName().startsWith("batmudgoalsplugin."))
+                    .collect(Collectors.toList());
+        } finally {
+            recorded.toFile().delete();
+        }
+    }
+
+    private static List<RecordedEvent> named(List<RecordedEvent> events, String name) {
+        return events.stream().filter(event -> event.getEventType().getName().equals("batmudgoalsplugin." + name))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void testEventsAreRecordedWhenEnabled() throws Exception {
+        List<RecordedEvent> events = record(true);
+
+        List<RecordedEvent> lines = named(events, "LineDispatched");
+        assertEquals(2, lines.size());
+        assertEquals(1, lines.get(0).getInt("matched"));
+        assertEquals(0, lines.get(1).getInt("matched"));
+
+        List<RecordedEvent> matches = named(events, "ProcessorMatched");
+        assertEquals(1, matches.size());
+        assertEquals(TrainCommandOutputProcessor.class.getName(), matches.get(0).getClass("processor").getName());
+
+        assertTrue(named(events, "DataMutation").stream().anyMatch(
+                event -> "skillStatusSet".equals(event.getString("mutation"))
+                        && "attack".equals(event.getString("skill")) && event.getInt("value") == 1));
+        // Timed from the change to the end of the journal write, not instants
+        assertTrue(named(events, "DataMutation").stream().allMatch(event -> event.getEndTime()
+                .isAfter(event.getStartTime())));
+
+        List<RecordedEvent> persistence = named(events, "Persistence");
+        assertEquals(2, persistence.size());
+        assertEquals("save", persistence.get(0).getString("operation"));
+        assertEquals("load", persistence.get(1).getString("operation"));
+        assertEquals("BINARY", persistence.get(1).getString("format"));
+        assertEquals(file.length(), persistence.get(1).getLong("bytes"));
+    }
+
+    @Test
+    public void testEventsAreDisabledByDefault() throws Exception {
+        assertEquals(0, record(false).size());
+    }
+}
@@ -1,5 +1,8 @@
 package batmudgoalsplugin;
 
+import java.util.Arrays;
+import java.util.Collections;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -42,7 +45,7 @@ public class GoalCommandWithoutParametersProcessorTest {
         data.setSkillCostForLevel("attack", 1, 1);
         whenGoalCalled();
 
-        Mockito.verify(model).printMessage("attack");
+        Mockito.verify(model).printMessages(Collections.singletonList("attack"));
     }
 
     @Test
@@ -51,8 +54,7 @@ public class GoalCommandWithoutParametersProcessorTest {
         data.setSkillCostForLevel("brawling", 1, 1);
         whenGoalCalled();
 
-        Mockito.verify(model).printMessage("attack");
-        Mockito.verify(model).printMessage("brawling");
+        Mockito.verify(model).printMessages(Arrays.asList("attack", "brawling"));
     }
 
     @Test
@@ -62,7 +64,6 @@ public class GoalCommandWithoutParametersProcessorTest {
         data.setGoalSkill("brawling");
         whenGoalCalled();
 
-        Mockito.verify(model).printMessage("attack");
-        Mockito.verify(model).printMessage("brawling (*)");
+        Mockito.verify(model).printMessages(Arrays.asList("attack", "brawling (*)"));
     }
 }
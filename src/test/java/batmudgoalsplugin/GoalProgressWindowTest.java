@@ -0,0 +1,216 @@
+package batmudgoalsplugin;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import javax.swing.SwingUtilities;
+
+import com.mythicscape.batclient.interfaces.BatWindow;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class GoalProgressWindowTest {
+
+    /** Long enough for the timer not to tick during a test */
+    private static final int NO_TICKS = 60000;
+
+    private BatWindow batWindow;
+    private ClientGUIModel guiModel;
+    private final AtomicReference<GoalProgress> progress = new AtomicReference<>(attack(13));
+    private final AtomicLong version = new AtomicLong();
+    private GoalProgressWindow window;
+
+    private static GoalProgress attack(int exp) {
+        return new GoalProgress("attack", 1, 200, exp, Collections.singletonList("tzarakk"), null);
+    }
+
+    @BeforeEach
+    public void setup() {
+        batWindow = mock(BatWindow.class);
+        when(batWindow.isVisible()).thenReturn(true);
+        guiModel = mock(ClientGUIModel.class);
+        when(guiModel.createWindow(anyString(), anyInt(), anyInt(), anyInt(), anyInt())).thenReturn(batWindow);
+    }
+
+    @AfterEach
+    public void close() throws Exception {
+        if (window != null) {
+            onEdt(() -> {
+                window.close();
+                return null;
+            });
+        }
+    }
+
+    private void open(Supplier<GoalProgress> supplier, int refreshMillis) throws Exception {
+        window = onEdt(() -> new GoalProgressWindow(guiModel, supplier, version::get, refreshMillis));
+    }
+
+    private void setProgress(GoalProgress current) {
+        progress.set(current);
+        version.incrementAndGet();
+    }
+
+    private static <T> T onEdt(Callable<T> task) throws Exception {
+        AtomicReference<T> result = new AtomicReference<>();
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        SwingUtilities.invokeAndWait(() -> {
+            try {
+                result.set(task.call());
+            } catch (Exception e) {
+                failure.set(e);
+            }
+        });
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return result.get();
+    }
+
+    private static void awaitEdt(BooleanSupplier condition) throws Exception {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out");
+            Thread.sleep(5);
+        }
+    }
+
+    private long renders() throws Exception {
+        return onEdt(window::getRenders);
+    }
+
+    @Test
+    public void testProgressIsShownWhenOpened() throws Exception {
+        open(progress::get, NO_TICKS);
+
+        awaitEdt(() -> renderCount() == 1);
+        verify(batWindow).setVisible(true);
+        assertArrayEquals(new String[] { "attack", "1%", "200", "187", "tzarakk" }, onEdt(window::getValues));
+    }
+
+    @Test
+    public void testStatusIsShownInsteadOfNeededExp() throws Exception {
+        progress.set(new GoalProgress("attack", 1, GoalProgress.UNKNOWN, 13, Collections.emptyList(),
+                "Needs level"));
+        open(progress::get, NO_TICKS);
+
+        awaitEdt(() -> renderCount() == 1);
+        assertArrayEquals(new String[] { "attack", "1%", "Needs level", "?", "-" }, onEdt(window::getValues));
+    }
+
+    @Test
+    public void testUnchangedProgressIsNotRenderedAgain() throws Exception {
+        open(progress::get, NO_TICKS);
+        awaitEdt(() -> renderCount() == 1);
+
+        for (int i = 0; i < 5; i++) {
+            onEdt(() -> {
+                window.show(attack(13));
+                return null;
+            });
+        }
+        assertEquals(1, renders());
+
+        onEdt(() -> {
+            window.show(attack(150));
+            return null;
+        });
+        assertEquals(2, renders());
+        assertEquals("50", onEdt(window::getValues)[3]);
+    }
+
+    @Test
+    public void testChangesBetweenTicksAreRenderedOnce() throws Exception {
+        int refreshMillis = 20;
+        AtomicBoolean takenOnEdt = new AtomicBoolean();
+        open(() -> {
+            takenOnEdt.compareAndSet(false, SwingUtilities.isEventDispatchThread());
+            return progress.get();
+        }, refreshMillis);
+
+        // Changes as fast as a fight improving skills by use could
+        long start = System.nanoTime();
+        int changes = 0;
+        while (System.nanoTime() - start < 300_000_000L) {
+            setProgress(attack(++changes));
+        }
+        // A few more ticks to show the last change
+        Thread.sleep(5 * refreshMillis);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        awaitEdt(() -> values()[3].equals("0"));
+
+        long rendered = renders();
+        assertTrue(rendered >= 1);
+        assertTrue(rendered <= elapsedMillis / refreshMillis + 3, rendered + " renders in " + elapsedMillis + " ms");
+        assertTrue(rendered < changes);
+        assertFalse(takenOnEdt.get());
+    }
+
+    @Test
+    public void testProgressIsNotTakenWhileVersionIsUnchanged() throws Exception {
+        AtomicInteger takes = new AtomicInteger();
+        open(() -> {
+            takes.incrementAndGet();
+            return progress.get();
+        }, 10);
+        awaitEdt(() -> renderCount() == 1);
+
+        Thread.sleep(100);
+        assertEquals(1, takes.get());
+
+        setProgress(attack(150));
+        awaitEdt(() -> values()[3].equals("50"));
+        assertEquals(2, takes.get());
+        assertEquals(2, renders());
+    }
+
+    @Test
+    public void testClosedWindowIsNotRendered() throws Exception {
+        open(progress::get, NO_TICKS);
+        awaitEdt(() -> renderCount() == 1);
+
+        onEdt(() -> {
+            window.close();
+            window.show(attack(150));
+            return null;
+        });
+
+        verify(batWindow).close();
+        assertTrue(onEdt(window::isClosed));
+        assertEquals(1, renders());
+    }
+
+    private long renderCount() {
+        try {
+            return renders();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String[] values() {
+        try {
+            return onEdt(window::getValues);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
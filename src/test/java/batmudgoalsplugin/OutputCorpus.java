@@ -0,0 +1,305 @@
+package batmudgoalsplugin;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * Generates output of the game for load tests: combat, chatter and the
+ * tables and lines the output processors look for, in blocks as the game
+ * prints them, with the commands typed before them. Near misses are lines
+ * which contain the anchors and much of the structure of the processors'
+ * regular expressions, but must not match, so that the slowest paths of the
+ * expressions are exercised.
+ * <p>
+ * The same seed and weights always give the same corpus.
+ */
+public final class OutputCorpus {
+
+    /** Kinds of blocks of output */
+    public enum Kind {
+        /** Combat and prompts, with an occasional improvement by use */
+        COMBAT,
+        /** Tells and channels, some of them quoting what processors look for */
+        CHATTER,
+        /** Output of 'exp' */
+        EXP,
+        /** Table of 'train' or 'study' */
+        TRAIN_TABLE,
+        /** Two-column table of 'cost train' */
+        COST_TABLE,
+        /** Output of '&lt;guild&gt; info' */
+        GUILD_INFO,
+        /** Lines which almost match, in the session of their processor */
+        NEAR_MISS
+    }
+
+    private static final String[] SKILLS = { "Attack", "Camping", "Looting and burning", "Push", "Bash",
+            "Hunting", "Fishing", "Consider", "Axes", "Tumbling", "Alcohol tolerance", "Torch creation" };
+    private static final String[] GUILDS = { "ranger", "barbarian", "tarmalen", "mage" };
+    private static final String[] MONSTERS = { "Tiger", "Orc", "Large black bear", "Giant rat", "Moose" };
+    private static final String[] PLAYERS = { "Jogo", "Zarkon", "Elaine", "Foo" };
+    private static final String[] VERBS = { "hit", "tickle", "massacre", "slash", "bruise", "graze" };
+    private static final String[] MESSAGES = { "ready to go?", "anyone for a party", "Your level: high",
+            "Exp: lots", "I train 10% a day", "| 1% = 80 |", "May train skill everything to 100%" };
+
+    private final Random random;
+    private final Map<Kind, Integer> weights = new EnumMap<>(Kind.class);
+
+    /**
+     * Mostly combat and chatter, as in a session of play
+     *
+     * @param seed
+     */
+    public OutputCorpus(long seed) {
+        random = new Random(seed);
+        weights.put(Kind.COMBAT, 50);
+        weights.put(Kind.CHATTER, 25);
+        weights.put(Kind.EXP, 8);
+        weights.put(Kind.TRAIN_TABLE, 3);
+        weights.put(Kind.COST_TABLE, 3);
+        weights.put(Kind.GUILD_INFO, 2);
+        weights.put(Kind.NEAR_MISS, 9);
+    }
+
+    /**
+     * @param kind
+     * @param weight relative frequency of blocks of the kind, 0 for none
+     * @return this
+     */
+    public OutputCorpus weight(Kind kind, int weight) {
+        if (weight < 0) {
+            throw new IllegalArgumentException("Weight must not be negative");
+        }
+        weights.put(kind, weight);
+        return this;
+    }
+
+    /**
+     * @param lines of output
+     * @return output of the game
+     */
+    public List<String> lines(int lines) {
+        return session(lines).stream().filter(entry -> !entry.command).map(entry -> entry.text)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @param lines of output, the last block is cut short to fit
+     * @return output of the game with the commands typed before it, see
+     *         {@link SessionReplay}
+     */
+    public List<SessionReplay.Entry> session(int lines) {
+        int total = weights.values().stream().mapToInt(Integer::intValue).sum();
+        if (total == 0) {
+            throw new IllegalStateException("All the weights are 0");
+        }
+        List<SessionReplay.Entry> entries = new ArrayList<>();
+        int output = 0;
+        while (output < lines) {
+            List<SessionReplay.Entry> block = block(kind(total));
+            for (SessionReplay.Entry entry : block) {
+                if (output == lines) {
+                    break;
+                }
+                entries.add(entry);
+                if (!entry.command) {
+                    output++;
+                }
+            }
+        }
+        return entries;
+    }
+
+    private Kind kind(int total) {
+        int pick = random.nextInt(total);
+        for (Map.Entry<Kind, Integer> weight : weights.entrySet()) {
+            pick -= weight.getValue();
+            if (pick < 0) {
+                return weight.getKey();
+            }
+        }
+        throw new AssertionError();
+    }
+
+    private List<SessionReplay.Entry> block(Kind kind) {
+        Block block = new Block();
+        switch (kind) {
+        case COMBAT:
+            combat(block);
+            break;
+        case CHATTER:
+            chatter(block);
+            break;
+        case EXP:
+            block.command("exp");
+            block.output(String.format("Exp: %d Money: %d.%02d Bank: %d.%02d Exp pool: %d.%d", random.nextInt(2000000),
+                    random.nextInt(5000), random.nextInt(100), random.nextInt(100000), random.nextInt(100),
+                    random.nextInt(1000), random.nextInt(10)));
+            break;
+        case TRAIN_TABLE:
+            trainTable(block);
+            break;
+        case COST_TABLE:
+            costTable(block);
+            break;
+        case GUILD_INFO:
+            guildInfo(block);
+            break;
+        default:
+            nearMisses(block);
+        }
+        return block.entries;
+    }
+
+    private void combat(Block block) {
+        String monster = pick(MONSTERS);
+        for (int round = 1 + random.nextInt(6); round > 0; round--) {
+            block.output(monster + " hits you.");
+            block.output("You " + pick(VERBS) + " " + monster.toLowerCase() + " hard.");
+            block.output(String.format("HP:%d/350 SP:%d/180 EP:%d/190 >", random.nextInt(351),
+                    random.nextInt(181), random.nextInt(191)));
+        }
+        if (random.nextInt(4) == 0) {
+            block.output("You feel like you just got slightly better in " + pick(SKILLS));
+        }
+        block.output(monster + " is DEAD, R.I.P.");
+        block.output("You get " + random.nextInt(2000) + " gold coins.");
+    }
+
+    private void chatter(Block block) {
+        String player = pick(PLAYERS);
+        switch (random.nextInt(3)) {
+        case 0:
+            block.output(player + " tells you '" + pick(MESSAGES) + "'");
+            break;
+        case 1:
+            block.output(player + " [party]: " + pick(MESSAGES));
+            break;
+        default:
+            block.output("[" + pick(GUILDS) + "]: " + player + ": " + pick(MESSAGES));
+        }
+    }
+
+    private void trainTable(Block block) {
+        boolean study = random.nextBoolean();
+        block.command(study ? "study" : "train");
+        int level = 1 + random.nextInt(35);
+        block.output(String.format("| %s available at level %2d  | Cur | Rac | Max | Exp         |",
+                study ? "Spells" : "Skills", level));
+        for (int row = 1 + random.nextInt(SKILLS.length); row > 0; row--) {
+            int max = 10 + random.nextInt(91);
+            int current = random.nextInt(max + 1);
+            block.output(String.format("| %-29s | %3d | %3d | %3d | %11s |%s", pick(SKILLS), current,
+                    50 + random.nextInt(51), max, current == max ? "(n/a)" : random.nextInt(500000),
+                    random.nextInt(10) == 0 ? " (partially " + (study ? "studied)" : "trained)") : ""));
+        }
+    }
+
+    private void costTable(Block block) {
+        String skill = pick(SKILLS);
+        block.command("cost train " + skill.toLowerCase());
+        block.output(",-------------------------------------------------.");
+        block.output(String.format("| Cost of training %-30s |", skill));
+        block.output("|-------------------------------------------------|");
+        block.output("| Percent     Exp        | Percent     Exp        |");
+        block.output("|=================================================|");
+        int first = 1 + random.nextInt(40);
+        int rows = Math.min(5 + random.nextInt(45), 51 - first);
+        for (int row = 0; row < rows; row++) {
+            int percent = first + row;
+            block.output(String.format("| %4d%% = %13d  | %4d%% = %13d  |", percent, cost(percent), percent + 50,
+                    cost(percent + 50)));
+        }
+        block.output("`-------------------------------------------------'");
+    }
+
+    private static int cost(int percent) {
+        return 50 + percent * percent * 40;
+    }
+
+    private void guildInfo(Block block) {
+        String guild = pick(GUILDS);
+        block.command(guild + " info");
+        block.output("Name: " + guild.substring(0, 1).toUpperCase() + guild.substring(1) + " Guild");
+        block.output("Command: " + guild);
+        block.output("Your level: " + (1 + random.nextInt(35)));
+        block.output("Maximum level: 35");
+        block.output("Abilities gained when joining:");
+        mayTrain(block, " ");
+        int levels = 2 + random.nextInt(10);
+        for (int level = 2; level <= levels; level++) {
+            block.output("Abilities and requirements at each level:");
+            block.output(" Level " + level + ":");
+            block.output("  Abilities:");
+            mayTrain(block, "   ");
+        }
+    }
+
+    private void mayTrain(Block block, String indent) {
+        for (int skill = 1 + random.nextInt(5); skill > 0; skill--) {
+            block.output(indent + "May train skill " + pick(SKILLS) + " to " + (1 + random.nextInt(100)) + "%");
+        }
+    }
+
+    /**
+     * Near misses of the processors scoped to a session come after the
+     * command starting it, so that they reach the processors
+     */
+    private void nearMisses(Block block) {
+        int cells = 5 + random.nextInt(60);
+        switch (random.nextInt(4)) {
+        case 0:
+            block.command("train");
+            // Letter O instead of a zero in the cost
+            block.output(String.format("| %-29s | %3d | %3d | %3d | %11s |", pick(SKILLS), 1, 85, 100, "22O15"));
+            block.output("|" + repeat(" 12 |", cells) + " x");
+            block.output("|" + repeat(" ", cells * 10) + "|" + repeat(" ", cells * 10));
+            break;
+        case 1:
+            block.command("cost train " + pick(SKILLS).toLowerCase());
+            block.output("| Cost of training |");
+            block.output(repeat("|   12% =  ", cells));
+            block.output("| " + repeat("%", cells) + " = " + repeat("|", cells));
+            break;
+        case 2:
+            block.command(pick(GUILDS) + " info");
+            block.output(" May train skill " + repeat(pick(SKILLS) + " to ", cells) + "lots%");
+            block.output(" Level " + random.nextInt(35) + " :");
+            block.output("Your level: " + repeat(" ", cells) + "high");
+            break;
+        default:
+            block.output("Exp: 100 Money: 1 Bank: 2 Exp pool: " + repeat("9", cells) + "x");
+            block.output("You now have '" + pick(SKILLS) + "' at " + repeat("9", cells) + "% with special bonuses.");
+            block.output("You partially train " + repeat(pick(SKILLS) + " ", cells) + "which cost you 30000 experience.");
+        }
+    }
+
+    private static String repeat(String s, int times) {
+        StringBuilder repeated = new StringBuilder(s.length() * times);
+        for (int i = 0; i < times; i++) {
+            repeated.append(s);
+        }
+        return repeated.toString();
+    }
+
+    private String pick(String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    /** Entries of one block */
+    private static final class Block {
+        private final List<SessionReplay.Entry> entries = new ArrayList<>();
+
+        void command(String command) {
+            entries.add(new SessionReplay.Entry(true, command));
+        }
+
+        void output(String line) {
+            entries.add(new SessionReplay.Entry(false, line));
+        }
+    }
+}
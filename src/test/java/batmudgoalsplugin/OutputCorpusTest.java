@@ -0,0 +1,126 @@
+package batmudgoalsplugin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+import batmudgoalsplugin.BatMUDGoalsController.DispatchEngine;
+import batmudgoalsplugin.OutputCorpus.Kind;
+import batmudgoalsplugin.data.BatMUDGoalsPluginData;
+
+public class OutputCorpusTest {
+
+    @Test
+    public void testSameSeedGivesSameCorpus() {
+        assertEquals(new OutputCorpus(7).lines(5000), new OutputCorpus(7).lines(5000));
+        assertNotEquals(new OutputCorpus(7).lines(5000), new OutputCorpus(8).lines(5000));
+        assertEquals(5000, new OutputCorpus(7).lines(5000).size());
+    }
+
+    private static List<String> nearMisses() {
+        OutputCorpus corpus = new OutputCorpus(1);
+        for (Kind kind : Kind.values()) {
+            corpus.weight(kind, kind == Kind.NEAR_MISS ? 1 : 0);
+        }
+        return corpus.lines(3000);
+    }
+
+    private static List<AbstractOutputProcessor> processors() {
+        BatMUDGoalsPluginData data = new BatMUDGoalsPluginData();
+        InfoCommandSkillMaxOutputProcessor skillMax = new InfoCommandSkillMaxOutputProcessor(data);
+        PercentCostOutputProcessor percentCost = new PercentCostOutputProcessor(data);
+        return Arrays.asList(new TrainCommandOutputProcessor(data),
+                percentCost, new TrainedSkillOutputProcessor(data),
+                new CostOfTrainingSkillNameOutputProcessor(percentCost),
+                new PlayerLevelOutputProcessor(data), new InfoCommandFirstLevelProcessor(skillMax),
+                new InfoCommandLevelNumberProcessor(skillMax), skillMax, new ImproveSkillByUseOutputProcessor(data),
+                new TrainedPartiallyOutputProcessor(data), new CharacterNameOutputProcessor(character -> {
+                }));
+    }
+
+    @Test
+    public void testNearMissesMatchNoProcessorAndAreQuick() {
+        List<String> lines = nearMisses();
+        List<AbstractOutputProcessor> processors = processors();
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            for (String line : lines) {
+                for (AbstractOutputProcessor processor : processors) {
+                    assertFalse(processor.receive(line), () -> processor.getClass().getSimpleName() + ": " + line);
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testNearMissesAreQuickForCombinedMatcher() {
+        List<String> lines = nearMisses();
+        CombinedOutputMatcher matcher = new CombinedOutputMatcher(processors());
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            for (String line : lines) {
+                assertEquals(-1, matcher.dispatch(line, -1L), line);
+            }
+        });
+    }
+
+    @Test
+    public void testGeneratedSessionIsProcessedAlikeByAllEngines() throws Exception {
+        List<SessionReplay.Entry> session = new OutputCorpus(42).session(20000);
+        SessionReplay indexed = new SessionReplay(session, DispatchEngine.INDEXED).replay();
+        assertTrue(indexed.getMatches().get("TrainCommandOutputProcessor") > 0);
+        assertTrue(indexed.getMatches().get("PercentCostOutputProcessor") > 0);
+        assertTrue(indexed.getMatches().get("InfoCommandSkillMaxOutputProcessor") > 0);
+        assertTrue(indexed.getMatches().get("ExpCommandOutputProcessor") > 0);
+        for (DispatchEngine engine : Arrays.asList(DispatchEngine.SEQUENTIAL, DispatchEngine.COMBINED)) {
+            SessionReplay replay = new SessionReplay(session, engine).replay();
+            assertEquals(indexed.getMatches(), replay.getMatches(), engine.name());
+            assertEquals(indexed.dump(), replay.dump(), engine.name());
+        }
+    }
+
+    @Test
+    public void testGeneratedSessionIsCountedAlikeByAllEngines() throws Exception {
+        List<SessionReplay.Entry> session = new OutputCorpus(42).session(20000);
+        Map<String, List<Long>> expected = null;
+        for (DispatchEngine engine : DispatchEngine.values()) {
+            SessionReplay replay = new SessionReplay(session, engine);
+            replay.getStats().setEnabled(true);
+            Map<String, List<Long>> counts = counts(replay.replay().getStats());
+            if (expected == null) {
+                expected = counts;
+                // Processors outside of sessions see every line
+                assertEquals(counts.get("Output lines").get(0), counts.get("TrainedSkillOutputProcessor").get(0));
+            } else {
+                assertEquals(expected, counts, engine.name());
+            }
+        }
+    }
+
+    /**
+     * @param stats
+     * @return lines seen and matched by name of counters, except those of the
+     *         combined matcher which only it has
+     */
+    private static Map<String, List<Long>> counts(ProcessingStats stats) {
+        List<ProcessingStats.Counters> all = new ArrayList<>(stats.processors());
+        all.add(stats.output());
+        all.add(stats.commands());
+        Map<String, List<Long>> counts = new TreeMap<>();
+        for (ProcessingStats.Counters counters : all) {
+            if (!counters.getName().equals(CombinedOutputMatcher.class.getSimpleName())) {
+                counts.put(counters.getName(), List.of(counters.getSeen(), counters.getMatched()));
+            }
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,65 @@
+package batmudgoalsplugin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.MatchResult;
+
+import org.junit.jupiter.api.Test;
+
+public class OutputDispatchIndexTest {
+
+    private static class AnchoredProcessor extends AbstractOutputProcessor {
+        AnchoredProcessor(String... anchors) {
+            super(".*", anchors);
+        }
+
+        @Override
+        protected void process(MatchResult m) {
+        }
+    }
+
+    private final List<AbstractOutputProcessor> processors = Arrays.asList(
+            new AnchoredProcessor("Exp: ", " Money: "),
+            new AnchoredProcessor("|", "%"),
+            new AnchoredProcessor("You now have '"),
+            new AnchoredProcessor());
+    private final OutputDispatchIndex index = new OutputDispatchIndex(processors);
+
+    @Test
+    public void testProcessorWithoutAnchorsReceivesEveryLine() {
+        assertEquals(0b1000, index.candidates("Tiger hits you."));
+        assertEquals(0b1000, index.candidates(""));
+    }
+
+    @Test
+    public void testAllAnchorsMustOccur() {
+        assertEquals(0b1000, index.candidates("Exp: 1300 and nothing else"));
+        assertEquals(0b1001, index.candidates("Exp: 1300 Money: 0.00 Bank: 644404.00 Exp pool: 0"));
+    }
+
+    @Test
+    public void testAnchorsMatchCaseInsensitively() {
+        assertEquals(0b1100, index.candidates("YOU NOW HAVE 'Attack' at 100% without special bonuses."));
+    }
+
+    @Test
+    public void testOverlappingAnchors() {
+        assertEquals(0b1001, index.candidates("Exp: Exp: 2 Money: 0"));
+        assertEquals(0b1010, index.candidates("|    1% =            80  |"));
+    }
+
+    @Test
+    public void testNonAsciiCharactersResetTheScan() {
+        assertEquals(0b1000, index.candidates("Ex\u00e4p: 1 Money: 0"));
+        assertEquals(0b1001, index.candidates("\u00e4Exp: 1 Money: 0"));
+    }
+
+    @Test
+    public void testNonAsciiAnchorsAreRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new OutputDispatchIndex(Arrays.asList(new AnchoredProcessor("\u00e4"))));
+    }
+}
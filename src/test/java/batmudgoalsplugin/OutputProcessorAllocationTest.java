@@ -0,0 +1,119 @@
+package batmudgoalsplugin;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.Mockito.mock;
+
+import java.lang.management.ManagementFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.mythicscape.batclient.interfaces.ParsedResult;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import batmudgoalsplugin.BatMUDGoalsController.DispatchEngine;
+import batmudgoalsplugin.data.BatMUDGoalsPluginData;
+
+/**
+ * Regression test for the allocation free path of lines which no output
+ * processor matches
+ */
+public class OutputProcessorAllocationTest {
+
+    private static final int ROUNDS = 10000;
+    /** Allowed for reading the counter, far less than one object per round */
+    private static final long MEASURING_SLACK_BYTES = 256;
+    /**
+     * A deoptimization during a measurement allocates the objects the compiler
+     * had eliminated, once. Allocating lines allocate in every attempt.
+     */
+    private static final int ATTEMPTS = 3;
+
+    /** Lines which match nothing, some of them containing anchors */
+    private static final String[] LINES = {
+            "Tiger hits you.\n",
+            "| Attack  | lots |\n",
+            "|  1% = many  |\n",
+            "Exp: 1300 and nothing else\n",
+            "Your level: unknown\n",
+            "May the force be with you, 100%\n",
+            "" };
+
+    private com.sun.management.ThreadMXBean threads;
+
+    @BeforeEach
+    public void setup() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    public void testProcessorAllocatesNothingForNonMatchingLines() {
+        PercentCostOutputProcessor op = new PercentCostOutputProcessor(new BatMUDGoalsPluginData());
+        assertAllocatesNothing(() -> {
+            for (String line : LINES) {
+                op.receive(line);
+            }
+        });
+    }
+
+    @Test
+    public void testSequentialDispatchAllocatesNothingForNonMatchingLines() {
+        assertControllerAllocatesNothing(DispatchEngine.SEQUENTIAL);
+    }
+
+    @Test
+    public void testIndexedDispatchAllocatesNothingForNonMatchingLines() {
+        assertControllerAllocatesNothing(DispatchEngine.INDEXED);
+    }
+
+    @Test
+    public void testCombinedDispatchAllocatesNothingForNonMatchingLines() {
+        assertControllerAllocatesNothing(DispatchEngine.COMBINED);
+    }
+
+    private void assertControllerAllocatesNothing(DispatchEngine engine) {
+        Logger log = Logger.getLogger(getClass().toString());
+        log.setLevel(Level.OFF);
+        BatMUDGoalsController controller = new BatMUDGoalsController(log, new BatMUDGoalsPluginData(),
+                mock(ClientGUIModel.class), () -> 0L);
+        controller.setDispatchEngine(engine);
+        ParsedResult[] output = new ParsedResult[LINES.length];
+        for (int i = 0; i < LINES.length; i++) {
+            output[i] = new ParsedResult(LINES[i]);
+        }
+        assertAllocatesNothing(() -> {
+            for (ParsedResult line : output) {
+                controller.trigger(line);
+            }
+        });
+    }
+
+    /**
+     * Runs the task first to warm up, then measures it. The total of all the
+     * rounds is checked, so that an object allocated in a few rounds only is
+     * not rounded away.
+     *
+     * @param task
+     */
+    private void assertAllocatesNothing(Runnable task) {
+        long id = Thread.currentThread().getId();
+        for (int i = 0; i < ROUNDS; i++) {
+            task.run();
+        }
+
+        long allocated = Long.MAX_VALUE;
+        for (int attempt = 0; attempt < ATTEMPTS && allocated > MEASURING_SLACK_BYTES; attempt++) {
+            long before = threads.getThreadAllocatedBytes(id);
+            for (int i = 0; i < ROUNDS; i++) {
+                task.run();
+            }
+            allocated = threads.getThreadAllocatedBytes(id) - before;
+        }
+        assertTrue(allocated <= MEASURING_SLACK_BYTES, allocated + " bytes allocated in " + ROUNDS + " rounds");
+    }
+}
@@ -0,0 +1,95 @@
+package batmudgoalsplugin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.regex.MatchResult;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ParsingSessionsTest {
+
+    private static final long TIMEOUT = 100;
+
+    private static class NoopProcessor extends AbstractOutputProcessor {
+        NoopProcessor() {
+            super(".*");
+        }
+
+        @Override
+        protected void process(MatchResult m) {
+        }
+    }
+
+    private final AbstractOutputProcessor exp = new NoopProcessor();
+    private final AbstractOutputProcessor cost = new NoopProcessor();
+    private final AbstractOutputProcessor info = new NoopProcessor();
+    private ParsingSessions sessions;
+
+    @BeforeEach
+    public void setup() {
+        sessions = new ParsingSessions(Arrays.asList(exp, cost, info), TIMEOUT);
+        sessions.scope(ParsingSession.COST, cost);
+        sessions.scope(ParsingSession.GUILD_INFO, info);
+    }
+
+    @Test
+    public void testOnlyUnscopedProcessorsAreEnabledOutsideSessions() {
+        assertEquals(0b001, sessions.enabledProcessors(0));
+    }
+
+    @Test
+    public void testStartedSessionEnablesItsProcessors() {
+        sessions.start(ParsingSession.GUILD_INFO, 0);
+
+        assertEquals(0b101, sessions.enabledProcessors(10));
+        assertTrue(sessions.isActive(ParsingSession.GUILD_INFO));
+        assertFalse(sessions.isActive(ParsingSession.COST));
+    }
+
+    @Test
+    public void testSessionTimesOut() {
+        sessions.start(ParsingSession.GUILD_INFO, 0);
+
+        assertEquals(0b101, sessions.enabledProcessors(TIMEOUT));
+        assertEquals(0b001, sessions.enabledProcessors(TIMEOUT + 1));
+    }
+
+    @Test
+    public void testMatchExtendsSession() {
+        sessions.start(ParsingSession.GUILD_INFO, 0);
+        sessions.processed(" May train skill Attack to 20%", 0b100, 90);
+
+        assertEquals(0b101, sessions.enabledProcessors(150));
+    }
+
+    @Test
+    public void testUnrelatedMatchDoesNotExtendSession() {
+        sessions.start(ParsingSession.GUILD_INFO, 0);
+        sessions.processed("Exp: 1 Money: 0 Bank: 0 Exp pool: 0", 0b001, 90);
+
+        assertEquals(0b001, sessions.enabledProcessors(150));
+    }
+
+    @Test
+    public void testTerminatorEndsSession() {
+        sessions.start(ParsingSession.COST, 0);
+        sessions.start(ParsingSession.GUILD_INFO, 0);
+        sessions.processed("`-------------------------------------------------'", 0, 10);
+
+        assertEquals(0b101, sessions.enabledProcessors(20));
+    }
+
+    @Test
+    public void testCommandEndsSessionWithoutTerminator() {
+        sessions.start(ParsingSession.COST, 0);
+        sessions.start(ParsingSession.GUILD_INFO, 0);
+        sessions.commandIssued();
+
+        assertEquals(0b011, sessions.enabledProcessors(10));
+        assertFalse(sessions.isActive(ParsingSession.GUILD_INFO));
+    }
+}
@@ -0,0 +1,89 @@
+package batmudgoalsplugin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+import batmudgoalsplugin.data.BatMUDGoalsPluginData;
+
+public class ProcessingStatsTest {
+
+    @Test
+    public void testLatenciesGoToPowerOfTwoBuckets() {
+        assertEquals(0, ProcessingStats.bucket(0));
+        assertEquals(1, ProcessingStats.bucket(1));
+        assertEquals(2, ProcessingStats.bucket(3));
+        assertEquals(3, ProcessingStats.bucket(4));
+        assertEquals(ProcessingStats.BUCKETS - 1, ProcessingStats.bucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testPercentilesAndTotalsAreEstimatedFromSamples() {
+        ProcessingStats.Counters counters = new ProcessingStats.Counters("Test");
+        for (int i = 0; i < 99; i++) {
+            counters.record(i % 2 == 0, 100, 8);
+        }
+        counters.record(true, 5000, 8);
+        for (int i = 0; i < 100; i++) {
+            counters.count(false);
+        }
+
+        assertEquals(200, counters.getSeen());
+        assertEquals(51, counters.getMatched());
+        assertEquals(128, counters.percentileNanos(99));
+        assertEquals(8192, counters.percentileNanos(100));
+        assertEquals(2 * (99 * 100 + 5000), counters.getNanos());
+        assertEquals(2 * 100 * 8, counters.getAllocatedBytes());
+
+        counters.reset();
+        assertEquals(0, counters.getSeen());
+        assertEquals(0, counters.percentileNanos(99));
+    }
+
+    @Test
+    public void testProcessorsAreCountedByName() {
+        ProcessingStats stats = new ProcessingStats(System::nanoTime);
+        ProcessingStats.Counters counters = stats.processor(new PlayerLevelOutputProcessor(new BatMUDGoalsPluginData()).getName());
+        assertSame(counters, stats.processor(new PlayerLevelOutputProcessor(new BatMUDGoalsPluginData()).getName()));
+        assertEquals("PlayerLevelOutputProcessor", counters.getName());
+        assertEquals(1, stats.processors().size());
+    }
+
+    @Test
+    public void testSessionCommandsAreCountedApart() {
+        ProcessingStats stats = new ProcessingStats(System::nanoTime);
+        ProcessingStats.Counters cost = stats.processor(
+                new SessionCommandProcessor("cost", ParsingSession.COST, session -> {
+                }).getName());
+        ProcessingStats.Counters train = stats.processor(
+                new SessionCommandProcessor("train", ParsingSession.TRAIN, session -> {
+                }).getName());
+
+        assertNotSame(cost, train);
+        assertEquals("SessionCommandProcessor COST", cost.getName());
+    }
+
+    @Test
+    public void testOnlyTimeMeasuredIsCounted() {
+        long[] now = { 0 };
+        ProcessingStats stats = new ProcessingStats(() -> now[0]);
+        assertFalse(stats.isEnabled());
+
+        now[0] = 1000;
+        stats.setEnabled(true);
+        now[0] = 1500;
+        stats.setEnabled(false);
+        now[0] = 5000;
+        assertEquals(500, stats.elapsedNanos());
+
+        stats.setEnabled(true);
+        now[0] = 5100;
+        assertEquals(600, stats.elapsedNanos());
+
+        stats.reset();
+        assertEquals(0, stats.elapsedNanos());
+    }
+}
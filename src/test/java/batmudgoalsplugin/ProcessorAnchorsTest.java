@@ -0,0 +1,97 @@
+package batmudgoalsplugin;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+
+import org.junit.jupiter.api.Test;
+
+import batmudgoalsplugin.data.BatMUDGoalsPluginData;
+
+/**
+ * Keeps the anchors of the output processors consistent with their regular
+ * expressions: every anchor must occur in every line the processor matches.
+ * An anchor missing from a line the processor should match would make
+ * {@link OutputDispatchIndex} skip the processor for that line.
+ */
+public class ProcessorAnchorsTest {
+
+    /** Lines the processor tests expect to be matched */
+    private static final String[] PROCESSOR_TEST_LINES = {
+            "Exp: 1300 Money: 0.00 Bank: 644404.00 Exp pool: 0",
+            " May train skill Attack to 20%",
+            " May train skill Looting and burning to 100%",
+            "May study spell Cleanse weapon to 100%",
+            "May train skill Throw weight to 40%",
+            "Abilities gained when joining:",
+            "Level 2:",
+            "Level 20:",
+            "Has trained Combat sense to 17%",
+            "Has trained Stunned maneuvers to 5%",
+            "Studied total 1% of the spell.",
+            "This costs you 4830 experience points.",
+            "Welcome back, Jogo.\n",
+            "Welcome to BatMUD, Alt!",
+            "With current bonuses it is at 151%. Current maximum without bonuses is 100%.",
+            "You feel like you just got slightly better in Looting and burning",
+            "Player [chat] You feel like you just got slightly better in Attack",
+            "You now have 'Cast Generic' at 51% without special bonuses.",
+            "Your level: 1",
+            "|    1% =            80  |   51% =          9046  |",
+            "|    15% =            840  |   56% =          19046  |",
+            "| Attack                        |   0 |  85 | 10  |       22015 |",
+            "| Bladed fury | 93 | 85 | 100 | 968645 | (partially trained)",
+            "| Brawling \t\t\t\t\t\t|  15 |  85 | 10  |       (n/a) |",
+            "| Cure critical wounds | 93 | 85 | 100 | 968645 | (partially studied)",
+            "| Spells available at level 35  | Cur | Rac | Max | Exp         |" };
+
+    private static List<String> sampleLines() throws IOException {
+        List<String> lines = new ArrayList<>(Arrays.asList(PROCESSOR_TEST_LINES));
+        try (Reader in = new InputStreamReader(
+                ProcessorAnchorsTest.class.getResourceAsStream("sessions/ranger.session"), StandardCharsets.UTF_8)) {
+            for (SessionReplay.Entry entry : SessionReplay.read(in)) {
+                if (!entry.command) {
+                    lines.add(entry.text);
+                }
+            }
+        }
+        lines.addAll(new OutputCorpus(7).lines(20000));
+        return lines;
+    }
+
+    private static boolean matches(AbstractOutputProcessor processor, String line) {
+        Matcher matcher = processor.getPattern().matcher(line);
+        return processor.matchesWholeLine() ? matcher.matches() : matcher.find();
+    }
+
+    @Test
+    public void testAnchorsOccurInEveryMatchedLine() throws Exception {
+        List<String> lines = sampleLines();
+        BatMUDGoalsController controller = new BatMUDGoalsController(Logger.getAnonymousLogger(),
+                new BatMUDGoalsPluginData(), mock(ClientGUIModel.class));
+        for (AbstractOutputProcessor processor : controller.getOutputProcessors()) {
+            int matched = 0;
+            for (String line : lines) {
+                if (matches(processor, line)) {
+                    matched++;
+                    String lowerCase = line.toLowerCase(Locale.ROOT);
+                    for (String anchor : processor.getAnchors()) {
+                        assertTrue(lowerCase.contains(anchor.toLowerCase(Locale.ROOT)),
+                                () -> processor.getName() + " anchor '" + anchor + "' is not in: " + line);
+                    }
+                }
+            }
+            assertTrue(matched > 0, processor.getName() + " matched no sample line");
+        }
+    }
+}
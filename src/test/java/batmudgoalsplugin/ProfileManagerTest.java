@@ -0,0 +1,111 @@
+package batmudgoalsplugin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import batmudgoalsplugin.data.BatMUDGoalsPluginData;
+import batmudgoalsplugin.data.CostLibrary;
+import batmudgoalsplugin.data.DataFormat;
+
+public class ProfileManagerTest {
+
+    private final Logger logger = Logger.getLogger(getClass().getName());
+    private File directory;
+    private CostLibrary library;
+
+    @BeforeEach
+    public void createDirectory() throws Exception {
+        logger.setLevel(Level.OFF);
+        directory = Files.createTempDirectory("profiles").toFile();
+        library = CostLibrary.open(new File(directory, "costs.lib"));
+    }
+
+    @AfterEach
+    public void deleteDirectory() throws Exception {
+        library.close();
+        Files.walk(directory.toPath()).map(Path::toFile).sorted((a, b) -> b.compareTo(a))
+                .forEach(File::delete);
+    }
+
+    private ProfileManager manager(int capacity) {
+        return new ProfileManager(logger, directory, DataFormat.BINARY, library, capacity, () -> {
+        });
+    }
+
+    @Test
+    public void testFirstCharacterStartsFromDataKeptBeforeProfiles() throws Exception {
+        ProfileManager profiles = manager(4);
+        BatMUDGoalsPluginData kept = profiles.switchTo(ProfileManager.DEFAULT_PROFILE).getData();
+        kept.setSkillStatus("attack", 12);
+
+        BatMUDGoalsPluginData jogo = profiles.switchTo("jogo").getData();
+        BatMUDGoalsPluginData alt = profiles.switchTo("alt").getData();
+        profiles.close();
+
+        assertNotSame(kept, jogo);
+        assertEquals(12, jogo.getCurrentSkillStatus("attack"));
+        assertThrows(NoSuchElementException.class, () -> alt.getCurrentSkillStatus("attack"));
+    }
+
+    @Test
+    public void testResidentProfilesAreNotLoadedAgain() throws Exception {
+        ProfileManager profiles = manager(2);
+        BatMUDGoalsPluginData jogo = profiles.switchTo("jogo").getData();
+        profiles.switchTo("alt");
+        assertSame(jogo, profiles.switchTo("jogo").getData());
+        assertEquals("jogo", profiles.current().getCharacter());
+        assertEquals(Arrays.asList("alt", "jogo"), profiles.residentCharacters());
+        profiles.close();
+    }
+
+    @Test
+    public void testLeastRecentlyUsedProfileIsSavedWhenEvicted() throws Exception {
+        ProfileManager profiles = manager(2);
+        profiles.switchTo("jogo").getData().setGuildLevel("ranger", 5);
+        profiles.switchTo("alt").getData().setGuildLevel("barbarian", 3);
+        profiles.switchTo("third");
+        assertEquals(Arrays.asList("alt", "third"), profiles.residentCharacters());
+
+        // Another client reads what was saved on eviction
+        ProfileManager other = manager(2);
+        assertEquals(5, other.switchTo("jogo").getData().getGuildLevel("ranger"));
+        other.close();
+
+        BatMUDGoalsPluginData reloaded = profiles.switchTo("jogo").getData();
+        assertEquals(5, reloaded.getGuildLevel("ranger"));
+        assertEquals(Arrays.asList("third", "jogo"), profiles.residentCharacters());
+        profiles.close();
+        other = manager(2);
+        assertEquals(3, other.switchTo("alt").getData().getGuildLevel("barbarian"));
+        other.close();
+    }
+
+    @Test
+    public void testProfileIsLoadedBeforeBeingUsed() throws Exception {
+        ProfileManager profiles = manager(1);
+        ProfileManager.Profile jogo = profiles.switchTo("jogo");
+        ProfileManager.Profile alt = profiles.get("alt");
+        assertSame(jogo, profiles.current());
+        assertEquals(Arrays.asList("jogo", "alt"), profiles.residentCharacters());
+
+        profiles.setCurrent(alt);
+        profiles.evict();
+        assertSame(alt, profiles.current());
+        assertEquals(Arrays.asList("alt"), profiles.residentCharacters());
+        profiles.close();
+    }
+}
@@ -0,0 +1,14 @@
+package batmudgoalsplugin;
+
+import batmudgoalsplugin.BatMUDGoalsController.DispatchEngine;
+
+/**
+ * Runs the integration tests with the sequential dispatch engine
+ */
+public class SequentialDispatchControllerTest extends BatMUDGoalsControllerTest {
+
+    @Override
+    protected DispatchEngine dispatchEngine() {
+        return DispatchEngine.SEQUENTIAL;
+    }
+}
@@ -0,0 +1,305 @@
+package batmudgoalsplugin;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.mythicscape.batclient.interfaces.ParsedResult;
+
+import batmudgoalsplugin.BatMUDGoalsController.DispatchEngine;
+import batmudgoalsplugin.data.BatMUDGoalsPluginData;
+import batmudgoalsplugin.data.DataFormat;
+
+/**
+ * Replays a recorded session against {@link BatMUDGoalsController} the way the
+ * client drives it: commands typed by the player go to
+ * {@link BatMUDGoalsController#trigger(String)} and lines of output to
+ * {@link BatMUDGoalsController#trigger(ParsedResult)}, in the order they were
+ * recorded. Messages printed by the plugin are collected instead of shown.
+ * <p>
+ * A session file has one entry per line:
+ *
+ * <pre>
+ * # comment
+ * &gt; command typed by the player
+ * &lt; line of output
+ * </pre>
+ *
+ * The single space after the marker is not part of the entry. Empty lines are
+ * skipped.
+ * <p>
+ * The report tells how fast the session was processed, and {@link #dump()}
+ * gives the messages printed and the data left behind, so a recorded session
+ * serves both as a benchmark and as a golden file test. Run with
+ * <code>gradle replay -Preplay.args='session [--engine COMBINED] [--repeat 100] [--dump file]'</code>.
+ */
+public class SessionReplay {
+
+    /** Entry of a session */
+    static final class Entry {
+        final boolean command;
+        final String text;
+
+        Entry(boolean command, String text) {
+            this.command = command;
+            this.text = text;
+        }
+    }
+
+    /** Model of a client which collects the messages instead of showing them */
+    private static final class RecordingGUIModel extends ClientGUIModel {
+        private final List<String> messages = new ArrayList<>();
+
+        RecordingGUIModel(BatMUDGoalsPlugin plugin) {
+            super(plugin);
+        }
+
+        @Override
+        protected void printMessage(String message) {
+            messages.add(message);
+        }
+
+        @Override
+        protected void printMessages(List<String> messages) {
+            this.messages.addAll(messages);
+        }
+    }
+
+    /** Only needed for the model of the client, shared by all the replays */
+    private static BatMUDGoalsPlugin plugin;
+
+    private final List<Entry> entries;
+    private final BatMUDGoalsPluginData data = new BatMUDGoalsPluginData();
+    private final RecordingGUIModel guiModel;
+    private final BatMUDGoalsController controller;
+    private final Map<String, Long> matches = new TreeMap<>();
+    private long[] outputNanos = new long[0];
+    private long[] commandNanos = new long[0];
+    private long elapsedNanos;
+
+    /**
+     * @param entries of the session
+     * @param engine  used by the controller
+     * @throws IOException
+     */
+    public SessionReplay(List<Entry> entries, DispatchEngine engine) throws IOException {
+        this.entries = entries;
+        guiModel = new RecordingGUIModel(plugin());
+        Logger logger = Logger.getLogger(getClass().getName());
+        logger.setLevel(Level.OFF);
+        controller = new BatMUDGoalsController(logger, data, guiModel);
+        controller.setDispatchEngine(engine);
+        controller.setMatchListener((processor, line) -> matches.merge(processor.getClass().getSimpleName(), 1L,
+                Long::sum));
+    }
+
+    private static synchronized BatMUDGoalsPlugin plugin() throws IOException {
+        if (plugin == null) {
+            plugin = new BatMUDGoalsPlugin();
+        }
+        return plugin;
+    }
+
+    /**
+     * @param in session file
+     * @return entries of the session
+     * @throws IOException
+     * @throws IllegalArgumentException if a line is not an entry
+     */
+    public static List<Entry> read(Reader in) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(in);
+        int number = 0;
+        for (String line; (line = reader.readLine()) != null;) {
+            number++;
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            char marker = line.charAt(0);
+            if ((marker != '>' && marker != '<') || (line.length() > 1 && line.charAt(1) != ' ')) {
+                throw new IllegalArgumentException("Line " + number + " is not an entry: " + line);
+            }
+            entries.add(new Entry(marker == '>', line.length() > 1 ? line.substring(2) : ""));
+        }
+        return entries;
+    }
+
+    /**
+     * Replays the session, timing every entry
+     *
+     * @return this
+     */
+    public SessionReplay replay() {
+        List<Long> output = new ArrayList<>();
+        List<Long> commands = new ArrayList<>();
+        long start = System.nanoTime();
+        for (Entry entry : entries) {
+            long before = System.nanoTime();
+            if (entry.command) {
+                controller.trigger(entry.text);
+                commands.add(System.nanoTime() - before);
+            } else {
+                controller.trigger(new ParsedResult(entry.text));
+                output.add(System.nanoTime() - before);
+            }
+        }
+        elapsedNanos = System.nanoTime() - start;
+        outputNanos = sorted(output);
+        commandNanos = sorted(commands);
+        return this;
+    }
+
+    private static long[] sorted(List<Long> nanos) {
+        long[] array = nanos.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(array);
+        return array;
+    }
+
+    /**
+     * @return number of lines matched by each output processor
+     */
+    public Map<String, Long> getMatches() {
+        return Collections.unmodifiableMap(matches);
+    }
+
+    /**
+     * @return counters of the controller, to be enabled before replaying
+     */
+    ProcessingStats getStats() {
+        return controller.getStats();
+    }
+
+    /**
+     * @return messages printed by the plugin
+     */
+    public List<String> getMessages() {
+        return Collections.unmodifiableList(guiModel.messages);
+    }
+
+    /**
+     * @return throughput, latency percentiles and match counts of the last
+     *         replay
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        long entriesProcessed = outputNanos.length + commandNanos.length;
+        report.append(String.format("Replayed %d lines of output and %d commands in %.3f ms, %.0f lines/s%n",
+                outputNanos.length, commandNanos.length, elapsedNanos / 1e6,
+                elapsedNanos == 0 ? 0.0 : entriesProcessed * 1e9 / elapsedNanos));
+        report.append(percentiles("Output", outputNanos));
+        report.append(percentiles("Commands", commandNanos));
+        report.append(String.format("Matches by processor:%n"));
+        matches.forEach((processor, count) -> report.append(String.format("  %-40s %8d%n", processor, count)));
+        return report.toString();
+    }
+
+    private static String percentiles(String title, long[] nanos) {
+        if (nanos.length == 0) {
+            return String.format("%s: none%n", title);
+        }
+        return String.format("%s latency ns: p50 %d p90 %d p99 %d p99.9 %d max %d%n", title,
+                percentile(nanos, 50), percentile(nanos, 90), percentile(nanos, 99), percentile(nanos, 99.9),
+                nanos[nanos.length - 1]);
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    /**
+     * The data is given in the text format with the lines of its unordered
+     * sections sorted, so the dump of a session never changes unless the
+     * plugin's behaviour does.
+     *
+     * @return messages printed and the data left behind
+     * @throws IOException
+     */
+    public String dump() throws IOException {
+        StringBuilder dump = new StringBuilder();
+        dump.append("# Messages\n");
+        for (String message : guiModel.messages) {
+            dump.append(message).append('\n');
+        }
+        dump.append("# Data\n");
+        File file = File.createTempFile("replay", ".data");
+        try {
+            BatMUDGoalsPluginData.persistToFile(data, file, DataFormat.TEXT);
+            List<String> section = null;
+            for (String line : Files.readAllLines(file.toPath())) {
+                if (line.equals(">Skill maxes") || line.equals(">Partial trains")) {
+                    dump.append(line).append('\n');
+                    section = new ArrayList<>();
+                } else if (section != null && line.startsWith("<")) {
+                    Collections.sort(section);
+                    section.forEach(sorted -> dump.append(sorted).append('\n'));
+                    dump.append(line).append('\n');
+                    section = null;
+                } else if (section != null) {
+                    section.add(line);
+                } else {
+                    dump.append(line).append('\n');
+                }
+            }
+        } finally {
+            file.delete();
+        }
+        return dump.toString();
+    }
+
+    /**
+     * @param args session file, then optionally --engine SEQUENTIAL, INDEXED
+     *             or COMBINED, --repeat rounds of which only the last is
+     *             reported, --dump file to write the dump to
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0 || args.length % 2 != 1) {
+            System.err.println("Usage: SessionReplay session [--engine engine] [--repeat rounds] [--dump file]");
+            System.exit(2);
+        }
+        DispatchEngine engine = DispatchEngine.INDEXED;
+        int rounds = 1;
+        File dumpFile = null;
+        for (int i = 1; i < args.length; i += 2) {
+            switch (args[i]) {
+            case "--engine":
+                engine = DispatchEngine.valueOf(args[i + 1]);
+                break;
+            case "--repeat":
+                rounds = Math.max(1, Integer.parseInt(args[i + 1]));
+                break;
+            case "--dump":
+                dumpFile = new File(args[i + 1]);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        List<Entry> entries;
+        try (Reader in = new InputStreamReader(Files.newInputStream(new File(args[0]).toPath()),
+                StandardCharsets.UTF_8)) {
+            entries = read(in);
+        }
+        SessionReplay replay = null;
+        for (int round = 0; round < rounds; round++) {
+            replay = new SessionReplay(entries, engine).replay();
+        }
+        System.out.print(replay.report());
+        if (dumpFile != null) {
+            Files.write(dumpFile.toPath(), replay.dump().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
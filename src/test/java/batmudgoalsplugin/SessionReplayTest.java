@@ -0,0 +1,54 @@
+package batmudgoalsplugin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import batmudgoalsplugin.BatMUDGoalsController.DispatchEngine;
+
+/**
+ * Golden file test: a recorded session must leave behind the messages and the
+ * data it did when the golden file was written. After an intended change of
+ * behaviour, write the golden file again with
+ * <code>gradle replay -Preplay.args='src/test/resources/batmudgoalsplugin/sessions/ranger.session --dump src/test/resources/batmudgoalsplugin/sessions/ranger.golden'</code>
+ * and review the difference.
+ */
+public class SessionReplayTest {
+
+    private static String resource(String name) throws IOException {
+        try (InputStream in = SessionReplayTest.class.getResourceAsStream("sessions/" + name)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static List<SessionReplay.Entry> session(String name) throws IOException {
+        try (Reader in = new InputStreamReader(SessionReplayTest.class.getResourceAsStream("sessions/" + name),
+                StandardCharsets.UTF_8)) {
+            return SessionReplay.read(in);
+        }
+    }
+
+    @Test
+    public void testRecordedSessionMatchesGoldenFile() throws Exception {
+        for (DispatchEngine engine : DispatchEngine.values()) {
+            SessionReplay replay = new SessionReplay(session("ranger.session"), engine).replay();
+            assertEquals(resource("ranger.golden"), replay.dump(), engine.name());
+            assertEquals(Long.valueOf(5), replay.getMatches().get("PercentCostOutputProcessor"), engine.name());
+        }
+    }
+
+    @Test
+    public void testLinesWhichAreNotEntriesAreRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> SessionReplay.read(new StringReader("> goal\n<no space\n")));
+    }
+}
@@ -0,0 +1,44 @@
+package batmudgoalsplugin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+public class SkillNamesTest {
+
+    @Test
+    public void testWhitespaceIsCollapsed() {
+        assertEquals("looting and burning", SkillNames.normalize("  Looting \t and\r\nBurning \n"));
+    }
+
+    @Test
+    public void testEmptyName() {
+        assertEquals("", SkillNames.normalize(" \t "));
+        assertEquals("", SkillNames.normalize(""));
+    }
+
+    @Test
+    public void testNormalizesRange() {
+        assertEquals("attack", SkillNames.normalize("| Attack    |  1 |", 1, 11));
+    }
+
+    @Test
+    public void testSameRawTextGivesSameInstance() {
+        String first = SkillNames.normalize(new StringBuilder("Cast Generic"));
+        assertSame(first, SkillNames.normalize(new StringBuilder("Cast Generic")));
+    }
+
+    @Test
+    public void testDifferentRawTextsOfSameSkillGiveSameInstance() {
+        assertSame(SkillNames.normalize("Essence  Eye"), SkillNames.normalize(" essence eye "));
+    }
+
+    @Test
+    public void testCollidingRawTextsAreNotMixedUp() {
+        // "Aa" and "BB" have the same hash code
+        assertEquals("aa", SkillNames.normalize("Aa"));
+        assertEquals("bb", SkillNames.normalize("BB"));
+        assertEquals("aa", SkillNames.normalize("Aa"));
+    }
+}
@@ -0,0 +1,71 @@
+package batmudgoalsplugin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import org.junit.jupiter.api.Test;
+
+public class SnapshotSchedulerTest {
+
+    private static final long LONG = TimeUnit.HOURS.toMillis(1);
+
+    private final Logger logger = Logger.getLogger(getClass().getName());
+    private final AtomicLong version = new AtomicLong();
+    private final Semaphore snapshots = new Semaphore(0);
+
+    private long snapshot() {
+        long saved = version.get();
+        snapshots.release();
+        return saved;
+    }
+
+    @Test
+    public void testSnapshotIsTakenWhenChangedDataIsIdle() throws Exception {
+        SnapshotScheduler scheduler = new SnapshotScheduler(logger, version::get, this::snapshot, LONG, 50, 10);
+        try {
+            assertFalse(snapshots.tryAcquire(200, TimeUnit.MILLISECONDS));
+            version.incrementAndGet();
+            assertTrue(snapshots.tryAcquire(5, TimeUnit.SECONDS));
+            // Nothing changed since
+            assertFalse(snapshots.tryAcquire(200, TimeUnit.MILLISECONDS));
+            assertEquals(1, scheduler.getSnapshotCount());
+        } finally {
+            scheduler.shutdown(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testSnapshotIsTakenAfterIntervalWhileDataKeepsChanging() throws Exception {
+        SnapshotScheduler scheduler = new SnapshotScheduler(logger, version::get, this::snapshot, 100, LONG, 10);
+        try {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            boolean taken = false;
+            while (!taken && System.nanoTime() < deadline) {
+                version.incrementAndGet();
+                taken = snapshots.tryAcquire(5, TimeUnit.MILLISECONDS);
+            }
+            assertTrue(taken);
+        } finally {
+            scheduler.shutdown(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testRequestedSnapshotIsTakenImmediately() throws Exception {
+        SnapshotScheduler scheduler = new SnapshotScheduler(logger, version::get, this::snapshot, LONG, LONG, LONG);
+        try {
+            scheduler.requestSnapshot();
+            assertTrue(snapshots.tryAcquire(5, TimeUnit.SECONDS));
+        } finally {
+            assertTrue(scheduler.shutdown(5, TimeUnit.SECONDS));
+        }
+        scheduler.requestSnapshot();
+        assertEquals(1, scheduler.getSnapshotCount());
+    }
+}
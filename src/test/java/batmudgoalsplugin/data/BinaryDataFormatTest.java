@@ -0,0 +1,350 @@
+package batmudgoalsplugin.data;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+public class BinaryDataFormatTest {
+
+    private static BatMUDGoalsPluginData sampleData() {
+        BatMUDGoalsPluginData data = new BatMUDGoalsPluginData();
+        for (int percent = 1; percent <= 100; percent++) {
+            data.setSkillCostForLevel("attack", percent, 80 + percent * percent * 120);
+        }
+        data.setSkillCostForLevel("camping", 5, 1000);
+        data.setSkillCostForLevel("camping", 3, 3000);
+        data.setSkillStatus("attack", 37);
+        data.setSkillStatus("camping", 0);
+        data.setGuildLevel("ranger", 12);
+        data.setGuildLevel("barbarian", 1);
+        data.setSkillMaxInfo("ranger", "camping", 1, 20);
+        data.setSkillMaxInfo("ranger", "camping", 12, 60);
+        data.setSkillMaxInfo("barbarian", "attack", 3, 25);
+        data.setGoalSkill("attack");
+        data.trainPartially("attack");
+        data.trainPartially("attack");
+        return data;
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        BatMUDGoalsPluginData read = roundTrip(sampleData());
+
+        assertEquals("attack", read.getGoalSkill());
+        assertEquals(80 + 38 * 38 * 120 - 2 * 250000, read.getImproveGoalSkillCost());
+        assertEquals(3000, read.getSkillCost("camping", 3));
+        assertEquals(1000, read.getSkillCost("camping", 5));
+        assertEquals(0, read.getCurrentSkillStatus("camping"));
+        assertEquals(12, read.getGuildLevel("ranger"));
+        assertEquals(2, read.getPartialTrains().get("attack").intValue());
+        assertEquals(sampleData().getSkillMaxes(), read.getSkillMaxes());
+        assertEquals(12, read.getLevelForSkillMax("ranger", "camping", 21));
+    }
+
+    @Test
+    public void testEmptyData() throws Exception {
+        BatMUDGoalsPluginData read = roundTrip(new BatMUDGoalsPluginData());
+        assertFalse(read.isGoalSet());
+        assertTrue(read.getStoredSkills().isEmpty());
+    }
+
+    @Test
+    public void testFileFormatIsDetected() throws Exception {
+        File binary = File.createTempFile("testdata", "bin");
+        File text = File.createTempFile("testdata", "data");
+        BatMUDGoalsPluginData.persistToFile(sampleData(), binary, DataFormat.BINARY);
+        BatMUDGoalsPluginData.persistToFile(sampleData(), text, DataFormat.TEXT);
+
+        assertEquals(DataFormat.BINARY, DataFormat.of(binary));
+        assertEquals(DataFormat.TEXT, DataFormat.of(text));
+        assertEquals(BatMUDGoalsPluginData.fromFile(text).getSkillMaxes(),
+                BatMUDGoalsPluginData.fromFile(binary).getSkillMaxes());
+        assertTrue(binary.length() < text.length() / 2);
+    }
+
+    @Test
+    public void testEmptyFileGivesEmptyData() throws Exception {
+        File file = File.createTempFile("testdata", "data");
+        assertEquals(DataFormat.TEXT, DataFormat.of(file));
+        assertFalse(BatMUDGoalsPluginData.fromFile(file).isGoalSet());
+    }
+
+    @Test
+    public void testUnsupportedVersion() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new DataOutputStream(out).writeInt(BinaryDataFormat.MAGIC);
+        out.write(BinaryDataFormat.VERSION + 1);
+        assertThrows(IOException.class, () -> BinaryDataFormat.read(new ByteArrayInputStream(out.toByteArray())));
+    }
+
+    @Test
+    public void testCostsAndSkillMaxesAreDecodedOnFirstAccess() throws Exception {
+        BatMUDGoalsPluginData read = roundTrip(sampleData());
+        long version = read.getVersion();
+        assertFalse(read.isFullyLoaded());
+        assertEquals(37, read.getCurrentSkillStatus("attack"));
+        assertEquals(12, read.getGuildLevel("ranger"));
+        assertFalse(read.isFullyLoaded());
+
+        read.setMutationListener(new IMutationListener() {
+            @Override
+            public void goalSkillSet(String skill) {
+                fail();
+            }
+
+            @Override
+            public void skillStatusSet(String skill, int percent) {
+                fail();
+            }
+
+            @Override
+            public void skillCostSet(String skill, int percent, int cost) {
+                fail();
+            }
+
+            @Override
+            public void partialTrainsSet(String skill, int partialTrains) {
+                fail();
+            }
+
+            @Override
+            public void guildLevelSet(String guild, int level) {
+                fail();
+            }
+
+            @Override
+            public void skillMaxAdded(String guild, String skill, int level, int max) {
+                fail();
+            }
+        });
+        assertEquals(3000, read.getSkillCost("camping", 3));
+        assertEquals(60, read.getHighestSkillMax("ranger", "camping", 20));
+        assertTrue(read.isFullyLoaded());
+        assertEquals(version, read.getVersion());
+    }
+
+    @Test
+    public void testChangesBeforeDecodingAreKept() throws Exception {
+        BatMUDGoalsPluginData read = roundTrip(sampleData());
+        read.setSkillCostForLevel("camping", 3, 3500);
+        read.setSkillMaxInfo("ranger", "camping", 20, 80);
+        BatMUDGoalsPluginData copy = roundTrip(sampleData()).copy();
+
+        assertEquals(3500, read.getSkillCost("camping", 3));
+        assertEquals(1000, read.getSkillCost("camping", 5));
+        assertEquals(80, read.getHighestSkillMax("ranger", "camping", 20));
+        assertEquals(3000, copy.getSkillCost("camping", 3));
+        assertEquals(sampleData().getSkillMaxes(), copy.getSkillMaxes());
+    }
+
+    @Test
+    public void testUnknownSectionIsSkipped() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryDataFormat.write(sampleData(), out);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+        in.readInt();
+        in.readUnsignedByte();
+        int count = in.readUnsignedByte();
+        byte[] sections = in.readAllBytes();
+
+        // Same sections with an extra one in front of them
+        ByteArrayOutputStream extended = new ByteArrayOutputStream();
+        DataOutputStream dout = new DataOutputStream(extended);
+        dout.writeInt(BinaryDataFormat.MAGIC);
+        dout.writeByte(BinaryDataFormat.VERSION);
+        dout.writeByte(count + 1);
+        DataInputStream directory = new DataInputStream(new ByteArrayInputStream(sections));
+        for (int i = 0; i < count; i++) {
+            dout.writeByte(directory.readUnsignedByte());
+            dout.writeInt(directory.readInt() + 9 + 3);
+            dout.writeInt(directory.readInt());
+        }
+        int start = 6 + (count + 1) * 9;
+        dout.writeByte(99);
+        dout.writeInt(start);
+        dout.writeInt(3);
+        dout.write(new byte[] { 1, 2, 3 });
+        dout.write(sections, count * 9, sections.length - count * 9);
+
+        BatMUDGoalsPluginData read = BinaryDataFormat.read(new ByteArrayInputStream(extended.toByteArray()));
+        assertEquals(3000, read.getSkillCost("camping", 3));
+        assertEquals(sampleData().getSkillMaxes(), read.getSkillMaxes());
+    }
+
+    @Test
+    public void testTruncatedSectionIsRejected() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryDataFormat.write(sampleData(), out);
+        byte[] bytes = out.toByteArray();
+        assertThrows(IOException.class,
+                () -> BinaryDataFormat.read(new ByteArrayInputStream(bytes, 0, bytes.length - 1)));
+    }
+
+    @Test
+    public void testVersionWithoutDirectoryIsRead() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream dout = new DataOutputStream(out);
+        dout.writeInt(BinaryDataFormat.MAGIC);
+        dout.writeByte(1);
+        dout.write(new byte[] {
+                // skills attack and camping, guild ranger
+                2, 0, 6, 'a', 't', 't', 'a', 'c', 'k', 0, 7, 'c', 'a', 'm', 'p', 'i', 'n', 'g', 1, 0, 6, 'r', 'a',
+                'n', 'g', 'e', 'r',
+                // goal attack, status of attack 37, ranger level 12, no partials
+                1, 1, 0, 37, 1, 0, 12, 0,
+                // camping costs 3% 3000, 5% 1000
+                1, 1, 2, 3, (byte) 0xF0, 0x2E, 2, (byte) 0x9F, 0x1F,
+                // ranger camping max 20 at level 1
+                1, 1, 0, 1, 1, 20 });
+
+        BatMUDGoalsPluginData read = BinaryDataFormat.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals("attack", read.getGoalSkill());
+        assertEquals(37, read.getCurrentSkillStatus("attack"));
+        assertEquals(12, read.getGuildLevel("ranger"));
+        assertEquals(3000, read.getSkillCost("camping", 3));
+        assertEquals(1000, read.getSkillCost("camping", 5));
+        assertEquals(20, read.getHighestSkillMax("ranger", "camping", 1));
+        assertTrue(read.isFullyLoaded());
+    }
+
+    @Test
+    public void testCorruptIdsAreRejected() throws Exception {
+        // Same data as above with one id beyond the names
+        byte[] names = { 2, 0, 6, 'a', 't', 't', 'a', 'c', 'k', 0, 7, 'c', 'a', 'm', 'p', 'i', 'n', 'g', 1, 0, 6, 'r',
+                'a', 'n', 'g', 'e', 'r' };
+        byte[][] corrupt = {
+                // goal skill 3
+                { 4, 1, 0, 37, 1, 0, 12, 0, 0, 0 },
+                // status of skill 2
+                { 1, 1, 2, 37, 1, 0, 12, 0, 0, 0 },
+                // costs of skill 9
+                { 1, 1, 0, 37, 1, 0, 12, 0, 1, 9, 1, 3, 2, 0 },
+                // maxes of guild 1
+                { 1, 1, 0, 37, 1, 0, 12, 0, 0, 1, 1, 1, 1, 1, 20 },
+                // costs at a negative percent
+                { 1, 1, 0, 37, 1, 0, 12, 0, 1, 1, 1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F, 2 } };
+        for (byte[] sections : corrupt) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            DataOutputStream dout = new DataOutputStream(out);
+            dout.writeInt(BinaryDataFormat.MAGIC);
+            dout.writeByte(1);
+            dout.write(names);
+            dout.write(sections);
+            assertThrows(StreamCorruptedException.class,
+                    () -> BinaryDataFormat.read(new ByteArrayInputStream(out.toByteArray())));
+        }
+    }
+
+    @Test
+    public void testNameCountBeyondTheBytesLeftIsRejected() throws Exception {
+        byte[][] corrupt = {
+                // Integer.MAX_VALUE skills
+                { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07, 0, 6, 'a', 't', 't', 'a', 'c', 'k' },
+                // 5 skills in 9 bytes
+                { 5, 0, 1, 'a', 0, 1, 'b', 0, 0, 0 } };
+        for (byte[] names : corrupt) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            DataOutputStream dout = new DataOutputStream(out);
+            dout.writeInt(BinaryDataFormat.MAGIC);
+            dout.writeByte(1);
+            dout.write(names);
+            assertThrows(StreamCorruptedException.class,
+                    () -> BinaryDataFormat.read(new ByteArrayInputStream(out.toByteArray())));
+        }
+    }
+
+    @Test
+    public void testCorruptFileIsNotReadAsData() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryDataFormat.write(sampleData(), out);
+        byte[] bytes = out.toByteArray();
+        // First entry of the statuses refers to a skill beyond the names
+        bytes[section(bytes, BinaryDataFormat.SKILL_STATUSES)[0] + 1] = 100;
+        File file = File.createTempFile("testdata", "bin");
+        Files.write(file.toPath(), bytes);
+
+        RuntimeException e = assertThrows(RuntimeException.class, () -> BatMUDGoalsPluginData.fromFile(file));
+        assertTrue(e.getCause() instanceof StreamCorruptedException);
+    }
+
+    @Test
+    public void testCorruptCostsAreKeptAsTheyWere() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryDataFormat.write(sampleData(), out);
+        byte[] bytes = out.toByteArray();
+        // First curve is of a skill beyond the names
+        int[] costs = section(bytes, BinaryDataFormat.SKILL_COSTS);
+        bytes[costs[0] + 1] = 100;
+
+        BatMUDGoalsPluginData read = BinaryDataFormat.read(new ByteArrayInputStream(bytes));
+        assertEquals(37, read.getCurrentSkillStatus("attack"));
+        assertTrue(read.getStoredSkills().isEmpty());
+        assertEquals(25, read.getHighestSkillMax("barbarian", "attack", 3));
+
+        out.reset();
+        BinaryDataFormat.write(read, out);
+        byte[] written = out.toByteArray();
+        int[] rewritten = section(written, BinaryDataFormat.SKILL_COSTS);
+        assertArrayEquals(Arrays.copyOfRange(bytes, costs[0], costs[0] + costs[1]),
+                Arrays.copyOfRange(written, rewritten[0], rewritten[0] + rewritten[1]));
+
+        // Learned again once changed
+        read.setSkillCostForLevel("camping", 5, 1000);
+        assertEquals(1000, roundTrip(read).getSkillCost("camping", 5));
+    }
+
+    @Test
+    public void testVarints() throws Exception {
+        int[] values = { 0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE, -1, Integer.MIN_VALUE };
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream dout = new DataOutputStream(out);
+        for (int value : values) {
+            BinaryDataFormat.writeVarint(dout, value);
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+        for (int value : values) {
+            assertEquals(value, BinaryDataFormat.readVarint(in));
+        }
+        assertEquals(-1, in.read());
+    }
+
+    /**
+     * @param bytes of a file
+     * @param id    of a section
+     * @return offset and length of the section
+     */
+    private static int[] section(byte[] bytes, int id) throws IOException {
+        DataInputStream directory = new DataInputStream(new ByteArrayInputStream(bytes));
+        directory.skipBytes(6);
+        for (int i = 0; i < bytes[5]; i++) {
+            int entry = directory.readUnsignedByte();
+            int offset = directory.readInt();
+            int length = directory.readInt();
+            if (entry == id) {
+                return new int[] { offset, length };
+            }
+        }
+        throw new AssertionError("No section " + id);
+    }
+
+    private static BatMUDGoalsPluginData roundTrip(BatMUDGoalsPluginData data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryDataFormat.write(data, out);
+        return BinaryDataFormat.read(new ByteArrayInputStream(out.toByteArray()));
+    }
+}
@@ -0,0 +1,140 @@
+package batmudgoalsplugin.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class CostLibraryTest {
+
+    private File file;
+
+    @BeforeEach
+    public void createFile() throws Exception {
+        file = File.createTempFile("testdata", "lib");
+        file.delete();
+        file.deleteOnExit();
+    }
+
+    private static BatMUDGoalsPluginData learned(String skill, int... percentsAndCosts) {
+        BatMUDGoalsPluginData data = new BatMUDGoalsPluginData();
+        for (int i = 0; i < percentsAndCosts.length; i += 2) {
+            data.setSkillCostForLevel(skill, percentsAndCosts[i], percentsAndCosts[i + 1]);
+        }
+        return data;
+    }
+
+    @Test
+    public void testMergedCostsAreLookedUpAfterReopening() throws Exception {
+        try (CostLibrary library = CostLibrary.open(file)) {
+            assertEquals(1, library.merge(learned("attack", 1, 100, 2, 200, 3, 300)));
+            library.merge(learned("camping", 50, 5000));
+        }
+        try (CostLibrary library = CostLibrary.open(file)) {
+            assertEquals(200, library.getCost("attack", 2));
+            assertEquals(5000, library.getCost("camping", 50));
+            assertEquals(SymbolTable.NONE, library.getCost("attack", 4));
+            assertEquals(SymbolTable.NONE, library.getCost("looting and burning", 1));
+            assertTrue(library.contains("camping"));
+            assertEquals(2, library.getSkills().size());
+        }
+    }
+
+    @Test
+    public void testNewCostsOverrideAndExtendEarlierOnes() throws Exception {
+        try (CostLibrary library = CostLibrary.open(file)) {
+            library.merge(learned("attack", 1, 100, 2, 200));
+            int generation = library.getGeneration();
+            assertEquals(0, library.merge(learned("attack", 2, 200)));
+            assertEquals(generation, library.getGeneration());
+
+            assertEquals(1, library.merge(learned("attack", 2, 250, 3, 300)));
+            assertTrue(library.getGeneration() > generation);
+            assertEquals(100, library.getCost("attack", 1));
+            assertEquals(250, library.getCost("attack", 2));
+            assertEquals(300, library.getCost("attack", 3));
+        }
+    }
+
+    @Test
+    public void testAppendsOfAnotherClientAreSeenOnMerge() throws Exception {
+        try (CostLibrary first = CostLibrary.open(file); CostLibrary second = CostLibrary.open(file)) {
+            first.merge(learned("attack", 1, 100));
+            assertFalse(second.contains("attack"));
+            second.merge(learned("camping", 1, 10));
+            assertEquals(100, second.getCost("attack", 1));
+            first.merge(new BatMUDGoalsPluginData());
+            assertEquals(10, first.getCost("camping", 1));
+        }
+    }
+
+    @Test
+    public void testTornRecordIsIgnoredAndWrittenOver() throws Exception {
+        try (CostLibrary library = CostLibrary.open(file)) {
+            library.merge(learned("attack", 1, 100));
+            library.merge(learned("camping", 1, 10));
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+        try (CostLibrary library = CostLibrary.open(file)) {
+            assertTrue(library.contains("attack"));
+            assertFalse(library.contains("camping"));
+            library.merge(learned("tumbling", 7, 70));
+        }
+        try (CostLibrary library = CostLibrary.open(file)) {
+            assertEquals(100, library.getCost("attack", 1));
+            assertEquals(70, library.getCost("tumbling", 7));
+        }
+    }
+
+    @Test
+    public void testFileOfSomethingElseIsNotOpened() throws Exception {
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.writeBytes("Not costs at all");
+        }
+
+        assertThrows(IOException.class, () -> CostLibrary.open(file));
+    }
+
+    @Test
+    public void testCostsStayWithDataWithoutLibrary() throws Exception {
+        BatMUDGoalsPluginData data = learned("attack", 1, 100);
+
+        data.moveCostsToLibrary();
+
+        assertEquals(100, data.getSkillCost("attack", 1));
+    }
+
+    @Test
+    public void testCharacterDataKeepsOnlyCostsNotInLibrary() throws Exception {
+        File saved = File.createTempFile("testdata", "bin");
+        try (CostLibrary library = CostLibrary.open(file)) {
+            BatMUDGoalsPluginData data = learned("attack", 1, 100, 2, 200);
+            data.setSkillStatus("attack", 1);
+            data.setGoalSkill("attack");
+            data.setCostLibrary(library);
+            data.moveCostsToLibrary();
+            data.setSkillCostForLevel("camping", 1, 10);
+            assertEquals(200, data.getImproveGoalSkillCost());
+            assertTrue(data.isSkillInCostLibrary("attack"));
+            BatMUDGoalsPluginData.persistToFile(data, saved, DataFormat.BINARY);
+
+            BatMUDGoalsPluginData read = BatMUDGoalsPluginData.fromFile(saved);
+            assertEquals(1, read.getStoredSkills().size());
+            assertEquals(10, read.getSkillCost("camping", 1));
+            read.setCostLibrary(library);
+            assertEquals(200, read.getImproveGoalSkillCost());
+            assertEquals(2, read.getStoredSkills().size());
+        } finally {
+            saved.delete();
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package batmudgoalsplugin.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class MutationJournalTest {
+
+    private static final long NO_AUTOMATIC_FLUSH = 3600000;
+
+    private File snapshot;
+    private File journalFile;
+
+    @BeforeEach
+    public void createFiles() throws Exception {
+        snapshot = File.createTempFile("testdata", "data");
+        journalFile = File.createTempFile("testdata", "journal");
+        journalFile.delete();
+    }
+
+    @Test
+    public void testChangesAreReplayedOverSnapshot() throws Exception {
+        BatMUDGoalsPluginData data = new BatMUDGoalsPluginData();
+        data.setSkillStatus("attack", 10);
+        BatMUDGoalsPluginData.persistToFile(data, snapshot, DataFormat.BINARY);
+
+        try (MutationJournal journal = MutationJournal.open(journalFile, NO_AUTOMATIC_FLUSH, 1000, () -> {
+        })) {
+            data.setMutationListener(journal);
+            data.setSkillStatus("attack", 11);
+            data.setSkillCostForLevel("attack", 12, 4000);
+            data.setGuildLevel("ranger", 3);
+            data.setSkillMaxInfo("ranger", "attack", 3, 40);
+            data.setGoalSkill("attack");
+            data.trainPartially("attack");
+            data.trainPartially("attack");
+            assertEquals(7, journal.getRecordCount());
+        }
+
+        BatMUDGoalsPluginData read = BatMUDGoalsPluginData.fromFile(snapshot, journalFile);
+        assertEquals(11, read.getCurrentSkillStatus("attack"));
+        assertEquals(4000 - 2 * 250000, read.getImproveGoalSkillCost());
+        assertEquals(3, read.getGuildLevel("ranger"));
+        assertEquals(40, read.getHighestSkillMax("ranger", "attack", 3));
+    }
+
+    @Test
+    public void testReplayingTwiceGivesSameState() throws Exception {
+        BatMUDGoalsPluginData data = new BatMUDGoalsPluginData();
+        try (MutationJournal journal = MutationJournal.open(journalFile, NO_AUTOMATIC_FLUSH, 1000, () -> {
+        })) {
+            data.setMutationListener(journal);
+            data.trainPartially("attack");
+            data.clearPartialTrains("attack");
+            data.trainPartially("attack");
+        }
+
+        BatMUDGoalsPluginData read = new BatMUDGoalsPluginData();
+        MutationJournal.replay(journalFile, read);
+        MutationJournal.replay(journalFile, read);
+        assertEquals(1, read.getPartialTrains().get("attack").intValue());
+    }
+
+    @Test
+    public void testRecordsAreWrittenOnFlush() throws Exception {
+        BatMUDGoalsPluginData data = new BatMUDGoalsPluginData();
+        try (MutationJournal journal = MutationJournal.open(journalFile, NO_AUTOMATIC_FLUSH, 1000, () -> {
+        })) {
+            long empty = journalFile.length();
+            data.setMutationListener(journal);
+            for (int percent = 1; percent <= 100; percent++) {
+                data.setSkillCostForLevel("attack", percent, percent * 100);
+            }
+            assertEquals(empty, journalFile.length());
+            journal.flush();
+            assertTrue(journalFile.length() > empty);
+        }
+    }
+
+    @Test
+    public void testTornRecordIsCutOff() throws Exception {
+        BatMUDGoalsPluginData data = new BatMUDGoalsPluginData();
+        try (MutationJournal journal = MutationJournal.open(journalFile, NO_AUTOMATIC_FLUSH, 1000, () -> {
+        })) {
+            data.setMutationListener(journal);
+            data.setSkillStatus("attack", 1);
+            data.setSkillStatus("camping", 2);
+        }
+        try (RandomAccessFile file = new RandomAccessFile(journalFile, "rw")) {
+            file.setLength(file.length() - 1);
+        }
+
+        BatMUDGoalsPluginData read = new BatMUDGoalsPluginData();
+        assertEquals(1, MutationJournal.replay(journalFile, read));
+        assertFalse(read.getStoredSkills().contains("camping"));
+
+        try (MutationJournal journal = MutationJournal.open(journalFile, NO_AUTOMATIC_FLUSH, 1000, () -> {
+        })) {
+            assertEquals(1, journal.getRecordCount());
+            read.setMutationListener(journal);
+            read.setSkillStatus("looting and burning", 3);
+        }
+        BatMUDGoalsPluginData reread = new BatMUDGoalsPluginData();
+        assertEquals(2, MutationJournal.replay(journalFile, reread));
+        assertEquals(3, reread.getCurrentSkillStatus("looting and burning"));
+    }
+
+    @Test
+    public void testRecordOfUnknownTypeEndsReplay() throws Exception {
+        BatMUDGoalsPluginData data = new BatMUDGoalsPluginData();
+        try (MutationJournal journal = MutationJournal.open(journalFile, NO_AUTOMATIC_FLUSH, 1000, () -> {
+        })) {
+            data.setMutationListener(journal);
+            data.setSkillStatus("attack", 1);
+            data.setSkillStatus("camping", 2);
+        }
+        long known = journalFile.length();
+        // Two records of a newer version, with valid checksums
+        byte[] payload = { 99, 1, 2, 3 };
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteArrayOutputStream newer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(newer);
+        out.writeByte(payload.length);
+        out.write(payload);
+        out.writeInt((int) crc.getValue());
+        try (RandomAccessFile file = new RandomAccessFile(journalFile, "rw")) {
+            file.seek(file.length());
+            file.write(newer.toByteArray());
+            file.write(newer.toByteArray());
+        }
+
+        List<Long> offsets = new ArrayList<>();
+        BatMUDGoalsPluginData read = new BatMUDGoalsPluginData();
+        assertEquals(2, MutationJournal.replay(journalFile, read, (offset, problem) -> offsets.add(offset)));
+        assertEquals(2, read.getCurrentSkillStatus("camping"));
+        assertEquals(List.of(known), offsets);
+        try (MutationJournal journal = MutationJournal.open(journalFile, NO_AUTOMATIC_FLUSH, 1000, () -> {
+        })) {
+            assertEquals(2, journal.getRecordCount());
+        }
+    }
+
+    @Test
+    public void testChangesAreAppendedWhileFlushing() throws Exception {
+        BatMUDGoalsPluginData data = new BatMUDGoalsPluginData();
+        AtomicBoolean done = new AtomicBoolean();
+        try (MutationJournal journal = MutationJournal.open(journalFile, NO_AUTOMATIC_FLUSH, 100000, () -> {
+        })) {
+            data.setMutationListener(journal);
+            Thread flusher = new Thread(() -> {
+                while (!done.get()) {
+                    try {
+                        journal.flush();
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+            flusher.start();
+            for (int i = 0; i < 5000; i++) {
+                data.setSkillStatus("attack", i);
+            }
+            done.set(true);
+            flusher.join();
+        }
+
+        BatMUDGoalsPluginData read = new BatMUDGoalsPluginData();
+        assertEquals(5000, MutationJournal.replay(journalFile, read));
+        assertEquals(4999, read.getCurrentSkillStatus("attack"));
+    }
+
+    @Test
+    public void testCompactionHandlerIsCalledAtThreshold() throws Exception {
+        BatMUDGoalsPluginData data = new BatMUDGoalsPluginData();
+        AtomicInteger compactions = new AtomicInteger();
+        MutationJournal[] journal = new MutationJournal[1];
+        journal[0] = MutationJournal.open(journalFile, NO_AUTOMATIC_FLUSH, 10, () -> {
+            compactions.incrementAndGet();
+            BatMUDGoalsPluginData.persistToFile(data, snapshot, DataFormat.BINARY);
+            try {
+                journal[0].truncate();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        data.setMutationListener(journal[0]);
+        for (int percent = 1; percent <= 25; percent++) {
+            data.setSkillCostForLevel("attack", percent, percent * 100);
+        }
+        journal[0].close();
+
+        assertEquals(2, compactions.get());
+        assertEquals(5, MutationJournal.replay(journalFile, new BatMUDGoalsPluginData()));
+        BatMUDGoalsPluginData read = BatMUDGoalsPluginData.fromFile(snapshot, journalFile);
+        assertEquals(2500, read.getSkillCost("attack", 25));
+    }
+
+    @Test
+    public void testRotatedRecordsAreReplayedBeforeNewOnes() throws Exception {
+        File rotated = new File(journalFile.getPath() + ".old");
+        rotated.deleteOnExit();
+        BatMUDGoalsPluginData data = new BatMUDGoalsPluginData();
+        try (MutationJournal journal = MutationJournal.open(journalFile, NO_AUTOMATIC_FLUSH, 1000, () -> {
+        })) {
+            data.setMutationListener(journal);
+            data.setSkillStatus("attack", 1);
+            journal.rotate(rotated);
+            assertEquals(0, journal.getRecordCount());
+            data.setSkillStatus("attack", 2);
+            data.setSkillStatus("camping", 5);
+            // A snapshot which never got saved leaves the earlier records
+            journal.rotate(rotated);
+            data.setSkillStatus("attack", 3);
+        }
+
+        assertEquals(3, MutationJournal.replay(rotated, new BatMUDGoalsPluginData()));
+        assertEquals(1, MutationJournal.replay(journalFile, new BatMUDGoalsPluginData()));
+        BatMUDGoalsPluginData read = BatMUDGoalsPluginData.fromFile(snapshot, rotated, journalFile);
+        assertEquals(3, read.getCurrentSkillStatus("attack"));
+        assertEquals(5, read.getCurrentSkillStatus("camping"));
+    }
+
+    @Test
+    public void testRecordsAppendedDuringRotationStayInJournal() throws Exception {
+        File rotated = new File(journalFile.getPath() + ".old");
+        rotated.deleteOnExit();
+        BatMUDGoalsPluginData data = new BatMUDGoalsPluginData();
+        try (MutationJournal journal = MutationJournal.open(journalFile, NO_AUTOMATIC_FLUSH, 1000, () -> {
+        })) {
+            data.setMutationListener(journal);
+            data.setSkillStatus("attack", 1);
+            journal.flush();
+            data.setSkillStatus("attack", 2);
+            journal.startRotation();
+            data.setSkillStatus("attack", 3);
+            data.setSkillStatus("camping", 5);
+            // Held back until the earlier records have been moved aside
+            journal.flush();
+            assertEquals(0, MutationJournal.replay(rotated, new BatMUDGoalsPluginData()));
+            assertEquals(1, MutationJournal.replay(journalFile, new BatMUDGoalsPluginData()));
+            journal.finishRotation(rotated);
+            assertEquals(2, journal.getRecordCount());
+            journal.flush();
+        }
+
+        BatMUDGoalsPluginData old = new BatMUDGoalsPluginData();
+        assertEquals(2, MutationJournal.replay(rotated, old));
+        assertEquals(2, old.getCurrentSkillStatus("attack"));
+        assertEquals(2, MutationJournal.replay(journalFile, new BatMUDGoalsPluginData()));
+        BatMUDGoalsPluginData read = BatMUDGoalsPluginData.fromFile(snapshot, rotated, journalFile);
+        assertEquals(3, read.getCurrentSkillStatus("attack"));
+        assertEquals(5, read.getCurrentSkillStatus("camping"));
+    }
+}
@@ -0,0 +1,54 @@
+package batmudgoalsplugin.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.NoSuchElementException;
+
+import org.junit.jupiter.api.Test;
+
+public class SkillCostTableTest {
+
+    @Test
+    public void testSetAndGet() {
+        SkillCostTable table = new SkillCostTable();
+        table.set(1, 80);
+        table.set(100, 1200000);
+        table.set(1, 85);
+        assertEquals(85, table.get(1));
+        assertEquals(1200000, table.get(100));
+        assertEquals(2, table.size());
+    }
+
+    @Test
+    public void testZeroCostIsKnown() {
+        SkillCostTable table = new SkillCostTable();
+        table.set(5, 0);
+        assertTrue(table.contains(5));
+        assertFalse(table.contains(6));
+        assertThrows(NoSuchElementException.class, () -> table.get(6));
+        assertThrows(NoSuchElementException.class, () -> table.get(-1));
+    }
+
+    @Test
+    public void testPercentsBeyondInitialCapacity() {
+        SkillCostTable table = new SkillCostTable();
+        table.set(300, 7);
+        assertEquals(7, table.get(300));
+        assertFalse(table.contains(299));
+    }
+
+    @Test
+    public void testNextPercent() {
+        SkillCostTable table = new SkillCostTable();
+        table.set(3, 1);
+        table.set(64, 2);
+        table.set(127, 3);
+        assertEquals(3, table.nextPercent(0));
+        assertEquals(64, table.nextPercent(4));
+        assertEquals(127, table.nextPercent(65));
+        assertEquals(-1, table.nextPercent(128));
+    }
+}
@@ -0,0 +1,79 @@
+package batmudgoalsplugin.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class SkillMaxIndexTest {
+
+    private static final int RANGER = 0;
+    private static final int BARBARIAN = 1;
+    private static final int ATTACK = 0;
+
+    @Test
+    public void testRowsAreKeptSortedByLevel() {
+        SkillMaxIndex index = new SkillMaxIndex();
+        index.add(RANGER, ATTACK, 10, 50);
+        index.add(RANGER, ATTACK, 1, 10);
+        index.add(RANGER, ATTACK, 5, 30);
+
+        SkillMaxIndex.Rows rows = index.rows(ATTACK, RANGER);
+        assertEquals(3, rows.size());
+        assertEquals(1, rows.level(0));
+        assertEquals(5, rows.level(1));
+        assertEquals(10, rows.level(2));
+        assertEquals(30, rows.max(1));
+    }
+
+    @Test
+    public void testHighestMaxAtLevel() {
+        SkillMaxIndex index = new SkillMaxIndex();
+        index.add(RANGER, ATTACK, 3, 20);
+        index.add(RANGER, ATTACK, 6, 15);
+        index.add(RANGER, ATTACK, 9, 40);
+
+        SkillMaxIndex.Rows rows = index.rows(ATTACK, RANGER);
+        assertEquals(0, rows.highestMax(2));
+        assertEquals(20, rows.highestMax(3));
+        assertEquals(20, rows.highestMax(8));
+        assertEquals(40, rows.highestMax(35));
+    }
+
+    @Test
+    public void testLevelForMax() {
+        SkillMaxIndex index = new SkillMaxIndex();
+        index.add(RANGER, ATTACK, 9, 40);
+        index.add(RANGER, ATTACK, 3, 20);
+        index.add(RANGER, ATTACK, 6, 15);
+
+        SkillMaxIndex.Rows rows = index.rows(ATTACK, RANGER);
+        assertEquals(3, rows.levelFor(1));
+        assertEquals(3, rows.levelFor(20));
+        assertEquals(9, rows.levelFor(21));
+        assertEquals(SymbolTable.NONE, rows.levelFor(41));
+    }
+
+    @Test
+    public void testGuildsAreSeparate() {
+        SkillMaxIndex index = new SkillMaxIndex();
+        index.add(RANGER, ATTACK, 1, 10);
+        index.add(BARBARIAN, ATTACK, 1, 50);
+
+        assertEquals(2, index.rowsOf(ATTACK).length);
+        assertEquals(10, index.rows(ATTACK, RANGER).highestMax(1));
+        assertEquals(50, index.rows(ATTACK, BARBARIAN).highestMax(1));
+        assertNull(index.rows(1, RANGER));
+        assertEquals(0, index.rowsOf(1).length);
+    }
+
+    @Test
+    public void testDuplicatesAreIgnored() {
+        SkillMaxIndex index = new SkillMaxIndex();
+        assertTrue(index.add(RANGER, ATTACK, 1, 10));
+        assertFalse(index.add(RANGER, ATTACK, 1, 10));
+        assertEquals(1, index.size());
+    }
+}
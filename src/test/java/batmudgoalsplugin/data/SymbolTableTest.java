@@ -0,0 +1,27 @@
+package batmudgoalsplugin.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+public class SymbolTableTest {
+
+    @Test
+    public void testIdsAreDenseInOrderOfFirstSight() {
+        SymbolTable table = new SymbolTable();
+        assertEquals(0, table.id("attack"));
+        assertEquals(1, table.id("camping"));
+        assertEquals(0, table.id("attack"));
+        assertEquals(2, table.size());
+        assertEquals("camping", table.name(1));
+    }
+
+    @Test
+    public void testFindDoesNotAssignIds() {
+        SymbolTable table = new SymbolTable();
+        assertEquals(SymbolTable.NONE, table.find("attack"));
+        assertEquals(0, table.size());
+        table.id("attack");
+        assertEquals(0, table.find("attack"));
+    }
+}
@@ -2,9 +2,11 @@ package batmudgoalsplugin.data;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.File;
+import java.util.NoSuchElementException;
 
 import org.junit.jupiter.api.Test;
 
@@ -25,6 +27,46 @@ public class TestBatMUDGoalsPluginData {
         assertEquals(90, read.getSkillMaxes().stream().filter(info -> info.guild.equals("Ranger")).findFirst().get().max);
     }
 
+    @Test
+    public void testPersistReplacesFileWithoutLeavingTemporaryFile() throws Exception {
+        File file = File.createTempFile("testdata", "data");
+        BatMUDGoalsPluginData data = new BatMUDGoalsPluginData();
+        data.setSkillStatus("attack", 10);
+        BatMUDGoalsPluginData.persistToFile(data, file, DataFormat.BINARY);
+        data.setSkillStatus("attack", 11);
+        BatMUDGoalsPluginData.persistToFile(data, file, DataFormat.BINARY);
+
+        assertEquals(11, BatMUDGoalsPluginData.fromFile(file).getCurrentSkillStatus("attack"));
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void testCopyIsIndependent() {
+        BatMUDGoalsPluginData data = new BatMUDGoalsPluginData();
+        data.setGoalSkill("attack");
+        data.setSkillStatus("attack", 10);
+        data.setSkillCostForLevel("attack", 11, 1000);
+        data.setGuildLevel("ranger", 3);
+        data.setSkillMaxInfo("ranger", "attack", 3, 40);
+        data.trainPartially("attack");
+
+        BatMUDGoalsPluginData copy = data.copy();
+        assertEquals(data.getVersion(), copy.getVersion());
+        data.setSkillStatus("attack", 20);
+        data.setSkillCostForLevel("attack", 11, 2000);
+        data.setGuildLevel("ranger", 4);
+        data.setSkillMaxInfo("ranger", "attack", 4, 60);
+        data.setSkillMaxInfo("ranger", "camping", 4, 60);
+        data.clearPartialTrains("attack");
+
+        assertEquals(10, copy.getCurrentSkillStatus("attack"));
+        assertEquals(1000, copy.getSkillCost("attack", 11));
+        assertEquals(3, copy.getGuildLevel("ranger"));
+        assertEquals(40, copy.getHighestSkillMax("ranger", "attack", 4));
+        assertEquals(1, copy.getSkillMaxes().size());
+        assertEquals(1, copy.getPartialTrains().get("attack").intValue());
+        assertFalse(copy.getStoredSkills().contains("camping"));
+    }
 
     @Test
     public void testIsGoalSetFalse() {
@@ -129,4 +171,32 @@ public class TestBatMUDGoalsPluginData {
         assertEquals(skillCost, data.getImproveGoalSkillCost());
     }
 
+    @Test
+    public void testSerializationOfAllSections() throws Exception {
+        File file = File.createTempFile("testdata", "data");
+        BatMUDGoalsPluginData data = new BatMUDGoalsPluginData();
+        data.setSkillCostForLevel("attack", 2, 100);
+        data.setSkillCostForLevel("attack", 3, 200);
+        data.setSkillStatus("attack", 1);
+        data.setGuildLevel("ranger", 12);
+        data.setGoalSkill("attack");
+        BatMUDGoalsPluginData.persistToFile(data, file);
+
+        BatMUDGoalsPluginData read = BatMUDGoalsPluginData.fromFile(file);
+        assertEquals(200, read.getSkillCost("attack", 3));
+        assertEquals(100, read.getImproveGoalSkillCost());
+        assertEquals(12, read.getGuildLevel("ranger"));
+        assertTrue(read.isSkillInCostLibrary("attack"));
+    }
+
+    @Test
+    public void testUnknownValues() throws Exception {
+        BatMUDGoalsPluginData data = new BatMUDGoalsPluginData();
+        data.setSkillStatus("attack", 1);
+        assertFalse(data.isSkillInCostLibrary("attack"));
+        assertFalse(data.isGoalSkill("attack"));
+        assertThrows(NoSuchElementException.class, () -> data.getCurrentSkillStatus("camping"));
+        assertThrows(NoSuchElementException.class, () -> data.getSkillCost("attack", 2));
+        assertThrows(NoSuchElementException.class, () -> data.getGuildLevel("ranger"));
+    }
 }
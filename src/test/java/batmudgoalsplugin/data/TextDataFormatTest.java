@@ -0,0 +1,139 @@
+package batmudgoalsplugin.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class TextDataFormatTest {
+
+    private final List<Long> offsets = new ArrayList<>();
+    private final List<String> problems = new ArrayList<>();
+
+    private BatMUDGoalsPluginData read(String text) throws IOException {
+        return read(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private BatMUDGoalsPluginData read(byte[] bytes) throws IOException {
+        return TextDataFormat.read(new ByteArrayInputStream(bytes), (offset, problem) -> {
+            offsets.add(offset);
+            problems.add(problem);
+        });
+    }
+
+    private static byte[] write(BatMUDGoalsPluginData data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TextDataFormat.write(data, out);
+        return out.toByteArray();
+    }
+
+    private static BatMUDGoalsPluginData sampleData() {
+        BatMUDGoalsPluginData data = new BatMUDGoalsPluginData();
+        for (int percent = 1; percent <= 30; percent++) {
+            data.setSkillCostForLevel("attack", percent, percent * 1000);
+            data.setSkillCostForLevel("looting and burning", percent, percent * 700);
+        }
+        data.setSkillStatus("attack", 12);
+        data.setGuildLevel("ranger", 4);
+        data.setSkillMaxInfo("ranger", "attack", 4, 35);
+        data.setGoalSkill("attack");
+        data.trainPartially("attack");
+        return data;
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        BatMUDGoalsPluginData read = read(write(sampleData()));
+        assertEquals(Arrays.asList(), problems);
+        assertEquals(12, read.getCurrentSkillStatus("attack"));
+        assertEquals(21000, read.getSkillCost("looting and burning", 30));
+        assertEquals(13000 - 250000, read.getImproveGoalSkillCost());
+        assertEquals(4, read.getGuildLevel("ranger"));
+        assertEquals(sampleData().getSkillMaxes(), read.getSkillMaxes());
+    }
+
+    @Test
+    public void testNoGoalIsWrittenAsNull() throws Exception {
+        BatMUDGoalsPluginData read = read(write(new BatMUDGoalsPluginData()));
+        assertFalse(read.isGoalSet());
+        assertEquals(Arrays.asList(), problems);
+    }
+
+    @Test
+    public void testSectionsInAnyOrderAndMissing() throws Exception {
+        BatMUDGoalsPluginData read = read(">Guild levels\nranger,4\n<Guild levels\n"
+                + ">Skill statuses\nattack,12\n<Skill statuses\n");
+        assertEquals(Arrays.asList(), problems);
+        assertEquals(4, read.getGuildLevel("ranger"));
+        assertEquals(12, read.getCurrentSkillStatus("attack"));
+        assertTrue(read.getStoredSkills().isEmpty());
+    }
+
+    @Test
+    public void testMissingEndMarkerDoesNotLoseFollowingSections() throws Exception {
+        String costs = ">Skill costs\n>attack\n1,1000\n";
+        BatMUDGoalsPluginData read = read(costs + ">Skill statuses\nattack,12\n");
+        assertEquals(1000, read.getSkillCost("attack", 1));
+        assertEquals(12, read.getCurrentSkillStatus("attack"));
+        assertEquals(Arrays.asList(0L, (long) costs.length()), offsets);
+    }
+
+    @Test
+    public void testTruncatedLineIsReportedWithItsOffset() throws Exception {
+        String statuses = ">Skill statuses\nattack,12\n";
+        BatMUDGoalsPluginData read = read(statuses + "camping,1");
+        assertEquals(12, read.getCurrentSkillStatus("attack"));
+        assertFalse(read.getPartialTrains().containsKey("camping"));
+        assertEquals((long) statuses.length(), offsets.get(0).longValue());
+        assertEquals("File ends in the middle of a line", problems.get(0));
+    }
+
+    @Test
+    public void testBadLinesAreSkipped() throws Exception {
+        BatMUDGoalsPluginData read = read(">Skill statuses\r\nattack,x\r\ncamping,5\r\n,3\r\nnocomma\r\n"
+                + "<Skill statuses\r\n>Skill costs\r\n>attack\r\n2000000000,1\r\n3,-5\r\n4,400\r\n<\r\n<Skill costs\r\n");
+        assertEquals(5, read.getCurrentSkillStatus("camping"));
+        assertEquals(400, read.getSkillCost("attack", 4));
+        assertEquals(1, read.getStoredSkills().size());
+        assertEquals(5, problems.size());
+        assertEquals(Long.valueOf(">Skill statuses\r\n".length()), offsets.get(0));
+    }
+
+    @Test
+    public void testRandomlyTruncatedAndMutatedFilesAreReadQuickly() {
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            byte[] original = write(sampleData());
+            byte[] noise = ">\n<,-0123456789 abcSkill".getBytes(StandardCharsets.UTF_8);
+            Random random = new Random(1234);
+            for (int round = 0; round < 5000; round++) {
+                byte[] bytes = Arrays.copyOf(original, random.nextInt(original.length + 1));
+                for (int mutations = random.nextInt(8); mutations > 0 && bytes.length > 0; mutations--) {
+                    int position = random.nextInt(bytes.length);
+                    bytes[position] = random.nextBoolean() ? (byte) random.nextInt(256)
+                            : noise[random.nextInt(noise.length)];
+                }
+                BatMUDGoalsPluginData read = read(bytes);
+                for (long offset : offsets) {
+                    assertTrue(offset >= 0 && offset <= bytes.length);
+                }
+                offsets.clear();
+                problems.clear();
+                // Whatever was recovered can be saved again
+                read(write(read));
+                assertEquals(Arrays.asList(), problems);
+            }
+        });
+    }
+}